@@ -0,0 +1,402 @@
+package net.pocrd.executable;
+
+import net.pocrd.annotation.ConsoleArgument;
+import net.pocrd.annotation.ConsoleJoinPoint;
+import net.pocrd.annotation.ConsoleOption;
+import net.pocrd.define.ConstField;
+import net.pocrd.util.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 统计 AccessLogger 输出的 access 日志, 日志文件按固定大小分块后内存映射, 多线程并行解析, 解析过程中不为每行创建字符串。
+ * 每行格式为 [日志前缀 ]costTime ␣\1 method ␣\1 returnCode ␣\1 originCode ␣\1 resultLen ␣\1 message ␣\1 startTime:serviceLog[ ␣\1 ...]
+ */
+@ConsoleJoinPoint(command = "access-log-stat", desc = "统计access日志中各接口的qps、耗时分布、返回值分布及返回数据长度")
+public class AccessLogAnalyzer {
+    private static final int  CHUNK_SIZE   = 64 * 1024 * 1024;
+    private static final int  MAX_LINE     = 1024 * 1024;
+    private static final byte SPLIT        = 1;
+    static final         int  FIELD_COUNT  = 7;
+    private static final int  TABLE_SIZE   = 1024;
+
+    /**
+     * 单个接口的统计数据, 每个分块独立统计后再合并
+     */
+    static final class Stats {
+        final byte[]             name;
+        final long[]             costs   = new long[LatencyHistogram.BUCKET_COUNT];
+        final long[]             lengths = new long[LatencyHistogram.BUCKET_COUNT];
+        final Map<Integer, long[]> codes = new HashMap<Integer, long[]>();
+        long count;
+        long costSum;
+        long costMax;
+        long lengthSum;
+        long lengthMax;
+        long errors;
+        long firstStart = Long.MAX_VALUE;
+        long lastStart  = Long.MIN_VALUE;
+
+        Stats(byte[] name) {
+            this.name = name;
+        }
+
+        void add(int cost, int code, int length, long start) {
+            count++;
+            costSum += cost;
+            costMax = Math.max(costMax, cost);
+            costs[LatencyHistogram.indexOf(Math.min(Math.max(cost, 0), LatencyHistogram.MAX_VALUE))]++;
+            lengthSum += length;
+            lengthMax = Math.max(lengthMax, length);
+            lengths[LatencyHistogram.indexOf(Math.min(Math.max(length, 0), LatencyHistogram.MAX_VALUE))]++;
+            if (code != 0) {
+                errors++;
+            }
+            long[] c = codes.get(code);
+            if (c == null) {
+                codes.put(code, c = new long[1]);
+            }
+            c[0]++;
+            if (start > 0) {
+                firstStart = Math.min(firstStart, start);
+                lastStart = Math.max(lastStart, start);
+            }
+        }
+
+        void merge(Stats o) {
+            count += o.count;
+            costSum += o.costSum;
+            costMax = Math.max(costMax, o.costMax);
+            lengthSum += o.lengthSum;
+            lengthMax = Math.max(lengthMax, o.lengthMax);
+            errors += o.errors;
+            firstStart = Math.min(firstStart, o.firstStart);
+            lastStart = Math.max(lastStart, o.lastStart);
+            for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+                costs[i] += o.costs[i];
+                lengths[i] += o.lengths[i];
+            }
+            for (Map.Entry<Integer, long[]> e : o.codes.entrySet()) {
+                long[] c = codes.get(e.getKey());
+                if (c == null) {
+                    codes.put(e.getKey(), c = new long[1]);
+                }
+                c[0] += e.getValue()[0];
+            }
+        }
+
+        static long percentile(long[] buckets, long count, long max, double q) {
+            long rank = Math.max(1, (long)Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(LatencyHistogram.upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * 单个分块的解析结果, 接口名到统计数据的开放寻址表以接口名的字节内容为键, 避免创建字符串。
+     * 表的使用率超过一半时扩容, 格式错误的行产生的大量接口名不会导致探测无法结束
+     */
+    static final class ChunkResult {
+        Stats[] table  = new Stats[TABLE_SIZE];
+        int[]   hashes = new int[TABLE_SIZE];
+        int     size;
+        long    lines;
+        long    malformed;
+
+        Stats get(byte[] buf, int off, int len, int hash) {
+            int mask = table.length - 1;
+            int i = hash & mask;
+            while (true) {
+                Stats s = table[i];
+                if (s == null) {
+                    s = new Stats(Arrays.copyOfRange(buf, off, off + len));
+                    table[i] = s;
+                    hashes[i] = hash;
+                    if (++size * 2 > table.length) {
+                        resize();
+                    }
+                    return s;
+                }
+                if (hashes[i] == hash && equals(s.name, buf, off, len)) {
+                    return s;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        private void resize() {
+            Stats[] oldTable = table;
+            int[] oldHashes = hashes;
+            table = new Stats[oldTable.length * 2];
+            hashes = new int[oldTable.length * 2];
+            int mask = table.length - 1;
+            for (int j = 0; j < oldTable.length; j++) {
+                if (oldTable[j] != null) {
+                    int i = oldHashes[j] & mask;
+                    while (table[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = oldTable[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
+
+        private static boolean equals(byte[] name, byte[] buf, int off, int len) {
+            if (name.length != len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (name[i] != buf[off + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 解析文件中 [start, end) 范围内开始的行, 最后一行可以越过 end
+     */
+    static ChunkResult parseChunk(File file, long start, long end) throws IOException {
+        ChunkResult result = new ChunkResult();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long mapEnd = Math.min(size, end + MAX_LINE);
+            // 从前一个字节开始映射, 用于判断分块起始位置是否恰好是行首
+            long mapStart = start > 0 ? start - 1 : 0;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            int limit = (int)(mapEnd - mapStart);
+            int stop = (int)(end - mapStart);
+            byte[] line = new byte[MAX_LINE];
+            int[] fields = new int[FIELD_COUNT + 1];
+            int pos = 0;
+            if (start > 0) {
+                // 跳过上一分块中开始的行
+                while (pos < limit && mapped.get(pos) != '\n') {
+                    pos++;
+                }
+                pos++;
+            }
+            while (pos < stop && pos < limit) {
+                int len = 0;
+                byte b;
+                while (pos < limit && (b = mapped.get(pos)) != '\n') {
+                    if (len < MAX_LINE) {
+                        line[len++] = b;
+                    }
+                    pos++;
+                }
+                pos++;
+                if (len > 0) {
+                    result.lines++;
+                    if (!parseLine(line, len, fields, result)) {
+                        result.malformed++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * fields[i] 为第 i 个字段的起始位置, fields[i + 1] - 2 为其结束位置
+     */
+    static boolean parseLine(byte[] line, int len, int[] fields, ChunkResult result) {
+        int n = 1;
+        fields[0] = 0;
+        for (int i = 1; i < len && n < FIELD_COUNT; i++) {
+            if (line[i] == SPLIT && line[i - 1] == ' ') {
+                fields[n++] = i + 1;
+            }
+        }
+        if (n < FIELD_COUNT) {
+            return false;
+        }
+        // costTime 是第一个字段中最后一个以空格分隔的数字
+        int costEnd = fields[1] - 2;
+        int costStart = costEnd;
+        while (costStart > 0 && line[costStart - 1] != ' ') {
+            costStart--;
+        }
+        long cost = parseLong(line, costStart, costEnd);
+        long code = parseLong(line, fields[2], fields[3] - 2);
+        long length = parseLong(line, fields[4], fields[5] - 2);
+        int startEnd = fields[6];
+        while (startEnd < len && line[startEnd] != ':' && line[startEnd] != ' ') {
+            startEnd++;
+        }
+        long start = parseLong(line, fields[6], startEnd);
+        if (cost == Long.MIN_VALUE || code == Long.MIN_VALUE || length == Long.MIN_VALUE) {
+            return false;
+        }
+        int nameStart = fields[1];
+        int nameEnd = fields[2] - 2;
+        int hash = 1;
+        for (int i = nameStart; i < nameEnd; i++) {
+            hash = 31 * hash + line[i];
+        }
+        result.get(line, nameStart, nameEnd - nameStart, hash).add((int)cost, (int)code, (int)length,
+                start == Long.MIN_VALUE ? 0 : start);
+        return true;
+    }
+
+    /**
+     * 解析十进制整数, 格式错误时返回 Long.MIN_VALUE
+     */
+    private static long parseLong(byte[] buf, int start, int end) {
+        if (start >= end) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = buf[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i >= end || end - i > 18) {
+            return Long.MIN_VALUE;
+        }
+        long v = 0;
+        for (; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) {
+                return Long.MIN_VALUE;
+            }
+            v = v * 10 + d;
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * 并行解析所有文件并合并结果
+     */
+    static Map<String, Stats> analyze(List<File> files, int threads, long[] lineCounter) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ChunkResult>> futures = new ArrayList<Future<ChunkResult>>();
+            for (final File file : files) {
+                long size = file.length();
+                for (long start = 0; start < size; start += CHUNK_SIZE) {
+                    final long s = start;
+                    final long e = Math.min(size, start + CHUNK_SIZE);
+                    futures.add(pool.submit(() -> parseChunk(file, s, e)));
+                }
+            }
+            Map<String, Stats> merged = new HashMap<String, Stats>();
+            for (Future<ChunkResult> future : futures) {
+                ChunkResult r = future.get();
+                lineCounter[0] += r.lines;
+                lineCounter[1] += r.malformed;
+                for (Stats s : r.table) {
+                    if (s != null) {
+                        String name = new String(s.name, ConstField.UTF8);
+                        Stats m = merged.get(name);
+                        if (m == null) {
+                            merged.put(name, s);
+                        } else {
+                            m.merge(s);
+                        }
+                    }
+                }
+            }
+            return merged;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static void report(Map<String, Stats> stats, long[] lineCounter, PrintStream out) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        long total = 0;
+        for (Stats s : stats.values()) {
+            first = Math.min(first, s.firstStart);
+            last = Math.max(last, s.lastStart);
+            total += s.count;
+        }
+        double seconds = last > first ? (last - first) / 1000.0 : 1;
+        List<Map.Entry<String, Stats>> list = new ArrayList<Map.Entry<String, Stats>>(stats.entrySet());
+        Collections.sort(list, new Comparator<Map.Entry<String, Stats>>() {
+            @Override
+            public int compare(Map.Entry<String, Stats> o1, Map.Entry<String, Stats> o2) {
+                return Long.compare(o2.getValue().count, o1.getValue().count);
+            }
+        });
+        out.println(String.format("lines:%d malformed:%d calls:%d duration:%.0fs qps:%.2f", lineCounter[0], lineCounter[1], total, seconds,
+                total / seconds));
+        out.println(String.format("%-48s %10s %9s %8s %7s %7s %7s %7s %7s %7s %9s %9s", "api", "count", "qps", "avg(ms)", "p50", "p90", "p99",
+                "p999", "max", "err%", "avgLen", "maxLen"));
+        for (Map.Entry<String, Stats> e : list) {
+            Stats s = e.getValue();
+            out.println(String.format("%-48s %10d %9.2f %8.1f %7d %7d %7d %7d %7d %7.2f %9d %9d", e.getKey(), s.count, s.count / seconds,
+                    (double)s.costSum / s.count, Stats.percentile(s.costs, s.count, s.costMax, 0.5),
+                    Stats.percentile(s.costs, s.count, s.costMax, 0.9), Stats.percentile(s.costs, s.count, s.costMax, 0.99),
+                    Stats.percentile(s.costs, s.count, s.costMax, 0.999), s.costMax, s.errors * 100.0 / s.count, s.lengthSum / s.count,
+                    s.lengthMax));
+        }
+        out.println();
+        out.println("return code distribution:");
+        for (Map.Entry<String, Stats> e : list) {
+            Stats s = e.getValue();
+            List<Map.Entry<Integer, long[]>> codes = new ArrayList<Map.Entry<Integer, long[]>>(s.codes.entrySet());
+            Collections.sort(codes, new Comparator<Map.Entry<Integer, long[]>>() {
+                @Override
+                public int compare(Map.Entry<Integer, long[]> o1, Map.Entry<Integer, long[]> o2) {
+                    return Long.compare(o2.getValue()[0], o1.getValue()[0]);
+                }
+            });
+            StringBuilder sb = new StringBuilder(e.getKey()).append(' ');
+            for (Map.Entry<Integer, long[]> c : codes) {
+                sb.append(' ').append(c.getKey()).append(':').append(c.getValue()[0]);
+            }
+            out.println(sb.toString());
+        }
+    }
+
+    public static void execute(
+            @ConsoleOption(name = "t", desc = "解析线程数, 默认为cpu核数") String threads,
+            @ConsoleArgument(name = "path", desc = "access日志文件或目录", sample = "/var/log/apigw/access.log") String path) throws Exception {
+        File root = new File(path);
+        List<File> files = new ArrayList<File>();
+        if (root.isDirectory()) {
+            File[] fs = root.listFiles();
+            if (fs != null) {
+                Arrays.sort(fs);
+                for (File f : fs) {
+                    if (f.isFile()) {
+                        files.add(f);
+                    }
+                }
+            }
+        } else if (root.isFile()) {
+            files.add(root);
+        } else {
+            throw new IllegalArgumentException("file not found. path:" + path);
+        }
+        int n = threads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads);
+        long begin = System.currentTimeMillis();
+        long[] lineCounter = new long[2];
+        Map<String, Stats> stats = analyze(files, Math.max(1, n), lineCounter);
+        report(stats, lineCounter, System.out);
+        System.out.println();
+        System.out.println("analyzed " + files.size() + " files in " + (System.currentTimeMillis() - begin) + "ms");
+    }
+}
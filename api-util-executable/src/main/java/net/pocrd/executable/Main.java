@@ -62,7 +62,10 @@ public class Main {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
-        Class<?>[] cs = ClassUtil.getAllClassesInPackage("net.pocrd.core.generator");
+        Class<?>[] generators = ClassUtil.getAllClassesInPackage("net.pocrd.core.generator");
+        Class<?>[] tools = ClassUtil.getAllClassesInPackage("net.pocrd.executable");
+        Class<?>[] cs = Arrays.copyOf(generators, generators.length + tools.length);
+        System.arraycopy(tools, 0, cs, generators.length, tools.length);
         String cmd = null;
         Map<String, String> options = new HashMap<String, String>();
         List<String> arguments = new LinkedList<String>();
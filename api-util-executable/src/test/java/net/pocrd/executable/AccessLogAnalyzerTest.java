@@ -0,0 +1,144 @@
+package net.pocrd.executable;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AccessLogAnalyzerTest {
+    private static final String SPLIT = " \u0001";
+
+    private static String line(String prefix, int cost, String method, int code, int length) {
+        return prefix + cost + SPLIT + method + SPLIT + code + SPLIT + code + SPLIT + length + SPLIT + "msg" + SPLIT
+                + "1500000000000:log\n";
+    }
+
+    private static boolean parse(String line, AccessLogAnalyzer.ChunkResult result) {
+        byte[] bs = line.getBytes(StandardCharsets.UTF_8);
+        return AccessLogAnalyzer.parseLine(bs, bs.length, new int[AccessLogAnalyzer.FIELD_COUNT + 1], result);
+    }
+
+    private static Map<String, AccessLogAnalyzer.Stats> stats(AccessLogAnalyzer.ChunkResult... results) {
+        Map<String, AccessLogAnalyzer.Stats> map = new HashMap<String, AccessLogAnalyzer.Stats>();
+        for (AccessLogAnalyzer.ChunkResult r : results) {
+            for (AccessLogAnalyzer.Stats s : r.table) {
+                if (s != null) {
+                    String name = new String(s.name, StandardCharsets.UTF_8);
+                    AccessLogAnalyzer.Stats total = map.get(name);
+                    if (total == null) {
+                        map.put(name, total = new AccessLogAnalyzer.Stats(s.name));
+                    }
+                    total.merge(s);
+                }
+            }
+        }
+        return map;
+    }
+
+    private static File write(String content) throws IOException {
+        File file = File.createTempFile("access", ".log");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    /**
+     * costTime 取第一个字段中 logback 前缀之后的数字
+     */
+    @Test
+    public void testLogbackPrefix() {
+        AccessLogAnalyzer.ChunkResult result = new AccessLogAnalyzer.ChunkResult();
+        assertTrue(parse(line("2017-07-14 10:00:00.123 [http-nio-8080-exec-1] INFO  access - ", 35, "user.get", 0, 120), result));
+        assertTrue(parse(line("", 7, "user.get", -100, 20), result));
+        AccessLogAnalyzer.Stats s = stats(result).get("user.get");
+        assertEquals(2, s.count);
+        assertEquals(42, s.costSum);
+        assertEquals(35, s.costMax);
+        assertEquals(140, s.lengthSum);
+        assertEquals(1, s.errors);
+        assertEquals(1, s.codes.get(-100)[0]);
+        assertEquals(1500000000000L, s.firstStart);
+    }
+
+    /**
+     * 字段不足或数字格式错误的行不计入统计
+     */
+    @Test
+    public void testMalformed() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append(line("", 10, "user.get", 0, 1));
+        sb.append("garbage line without splitter\n");
+        sb.append("1" + SPLIT + "user.get" + SPLIT + "0\n");
+        sb.append(line("", 10, "user.get", 0, 1).replace(SPLIT + "0" + SPLIT, SPLIT + "x" + SPLIT));
+        sb.append("abc" + SPLIT + "user.get" + SPLIT + "0" + SPLIT + "0" + SPLIT + "1" + SPLIT + "m" + SPLIT + "0:\n");
+        sb.append("\n");
+        File file = write(sb.toString());
+        AccessLogAnalyzer.ChunkResult result = AccessLogAnalyzer.parseChunk(file, 0, file.length());
+        assertEquals(5, result.lines);
+        assertEquals(4, result.malformed);
+        assertEquals(1, stats(result).get("user.get").count);
+    }
+
+    /**
+     * 任意位置分块的统计结果与整个文件一次解析相同, 跨越分块边界的行只由起始所在的分块解析
+     */
+    @Test
+    public void testChunkBoundary() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append(line(i % 2 == 0 ? "INFO - " : "", i, "api." + (i % 7), i % 3, i * 2));
+        }
+        File file = write(sb.toString());
+        long size = file.length();
+        AccessLogAnalyzer.ChunkResult whole = AccessLogAnalyzer.parseChunk(file, 0, size);
+        assertEquals(200, whole.lines);
+        assertEquals(0, whole.malformed);
+        Map<String, AccessLogAnalyzer.Stats> expected = stats(whole);
+        int lineLength = line("", 0, "api.0", 0, 0).length();
+        long[] splits = {1, lineLength - 1, lineLength, lineLength + 1, size / 3, size / 2 + 5, size - 1};
+        for (long split : splits) {
+            AccessLogAnalyzer.ChunkResult a = AccessLogAnalyzer.parseChunk(file, 0, split);
+            AccessLogAnalyzer.ChunkResult b = AccessLogAnalyzer.parseChunk(file, split, size);
+            assertEquals("split at " + split, 200, a.lines + b.lines);
+            assertEquals("split at " + split, 0, a.malformed + b.malformed);
+            Map<String, AccessLogAnalyzer.Stats> actual = stats(a, b);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<String, AccessLogAnalyzer.Stats> e : expected.entrySet()) {
+                AccessLogAnalyzer.Stats s = actual.get(e.getKey());
+                assertEquals(e.getValue().count, s.count);
+                assertEquals(e.getValue().costSum, s.costSum);
+                assertEquals(e.getValue().lengthSum, s.lengthSum);
+                assertEquals(e.getValue().errors, s.errors);
+            }
+        }
+    }
+
+    /**
+     * 接口名数量超过初始表大小时扩容
+     */
+    @Test(timeout = 10000)
+    public void testManyNames() {
+        AccessLogAnalyzer.ChunkResult result = new AccessLogAnalyzer.ChunkResult();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(parse(line("", i, "api.m" + i, 0, 1), result));
+            }
+        }
+        assertEquals(5000, result.size);
+        Map<String, AccessLogAnalyzer.Stats> map = stats(result);
+        assertEquals(5000, map.size());
+        for (int i = 0; i < 5000; i++) {
+            AccessLogAnalyzer.Stats s = map.get("api.m" + i);
+            assertEquals(2, s.count);
+            assertEquals(2L * i, s.costSum);
+        }
+    }
+}
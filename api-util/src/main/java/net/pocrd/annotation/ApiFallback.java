@@ -0,0 +1,17 @@
+package net.pocrd.annotation;
+
+import net.pocrd.define.MockApiReturnObject;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 熔断打开时代替错误返回的降级返回值
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ApiFallback {
+    Class<? extends MockApiReturnObject> value();
+}
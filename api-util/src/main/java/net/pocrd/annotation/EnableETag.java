@@ -0,0 +1,15 @@
+package net.pocrd.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记接口的响应输出 ETag, 调用方通过 If-None-Match 发起条件请求时, 内容未变化则返回 304 且不输出响应体。
+ * 合并调用时只有所有接口都启用时才生效
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EnableETag {
+}
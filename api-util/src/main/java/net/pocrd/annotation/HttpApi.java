@@ -1,6 +1,7 @@
 package net.pocrd.annotation;
 
 import net.pocrd.define.ApiOpenState;
+import net.pocrd.define.ApiPriority;
 import net.pocrd.define.SecurityType;
 
 import java.lang.annotation.ElementType;
@@ -45,4 +46,14 @@ public @interface HttpApi {
      * SecurityType.Integrated 级别接口是否需要apigw进行签名验证,false:验证由服务提供方完成,true:apigw负责签名验证
      */
     boolean needVerify() default true;
+
+    /**
+     * 接口是否幂等(重复调用没有副作用), 幂等接口在网关开启对冲请求时可能被同时调用两次
+     */
+    boolean idempotent() default false;
+
+    /**
+     * 接口的优先级, 网关过载时优先拒绝低优先级的请求
+     */
+    ApiPriority priority() default ApiPriority.NORMAL;
 }
@@ -0,0 +1,15 @@
+package net.pocrd.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记返回值为 Collection 的接口采用流式输出, 采用尾部状态布局的客户端单接口请求时元素逐个序列化并分批写入
+ * http 输出流(chunked), 不在网关中缓存完整的序列化结果。其他情况下与普通的集合返回值相同
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamingOutput {
+}
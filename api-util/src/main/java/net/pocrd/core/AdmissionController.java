@@ -0,0 +1,110 @@
+package net.pocrd.core;
+
+import net.pocrd.define.ApiPriority;
+import net.pocrd.define.SecurityType;
+import net.pocrd.entity.ApiContext;
+import net.pocrd.entity.ApiMethodCall;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按优先级的请求准入控制: 正在处理的请求数或网关前的排队时间超过各优先级的阈值时拒绝该优先级的请求,
+ * 优先级越低阈值越低, 因此过载时最先拒绝低优先级的请求。
+ * 请求的优先级优先取调用方(应用编号、安全级别)的配置, 未配置时取请求中优先级最高的接口的优先级
+ */
+final class AdmissionController {
+    /**
+     * 各优先级允许的并发请求数占上限的比例
+     */
+    private static final double[] IN_FLIGHT_RATIO = { 1.0, 0.9, 0.75, 0.5 };
+    /**
+     * 各优先级允许的排队时间相对目标值的倍数, 核心业务不因排队时间被拒绝
+     */
+    private static final double[] DELAY_RATIO     = { Double.MAX_VALUE, 4, 2, 1 };
+
+    private final int                                      maxInFlight;
+    private final long                                     queueTarget;
+    private final HashMap<String, ApiPriority>             appPriorities;
+    private final LinkedHashMap<SecurityType, ApiPriority> securityPriorities;
+    private final AtomicInteger                            inFlight = new AtomicInteger();
+    private final LongAdder[]                              admitted = new LongAdder[ApiPriority.values().length];
+    private final LongAdder[]                              shed     = new LongAdder[ApiPriority.values().length];
+
+    /**
+     * @param maxInFlight 并发请求数上限, 不大于0时不限制
+     * @param queueTarget 排队时间的目标值(毫秒), 不大于0时不检查
+     */
+    AdmissionController(int maxInFlight, long queueTarget, HashMap<String, ApiPriority> appPriorities,
+                        LinkedHashMap<SecurityType, ApiPriority> securityPriorities) {
+        this.maxInFlight = maxInFlight;
+        this.queueTarget = queueTarget;
+        this.appPriorities = appPriorities;
+        this.securityPriorities = securityPriorities;
+        for (int i = 0; i < admitted.length; i++) {
+            admitted[i] = new LongAdder();
+            shed[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 确定请求的优先级, 需要在接口解析完成后调用
+     */
+    ApiPriority classify(ApiContext context) {
+        if (context.appid != null) {
+            ApiPriority p = appPriorities.get(context.appid);
+            if (p != null) {
+                return p;
+            }
+        }
+        for (Map.Entry<SecurityType, ApiPriority> e : securityPriorities.entrySet()) {
+            if (e.getKey() == SecurityType.None ? SecurityType.isNone(context.requiredSecurity) : e.getKey().check(context.requiredSecurity)) {
+                return e.getValue();
+            }
+        }
+        ApiPriority priority = ApiPriority.LOW;
+        for (ApiMethodCall call : context.apiCalls) {
+            if (call.method.priority.ordinal() < priority.ordinal()) {
+                priority = call.method.priority;
+            }
+        }
+        return priority;
+    }
+
+    /**
+     * 尝试准入请求, 返回 true 时必须在请求结束后调用 release
+     *
+     * @param queueDelay 请求的排队时间(毫秒), 小于0表示未知
+     */
+    boolean tryAdmit(ApiPriority priority, long queueDelay) {
+        int p = priority.ordinal();
+        int current = inFlight.incrementAndGet();
+        if ((maxInFlight > 0 && current > maxInFlight * IN_FLIGHT_RATIO[p])
+                || (queueTarget > 0 && queueDelay > queueTarget * DELAY_RATIO[p])) {
+            inFlight.decrementAndGet();
+            shed[p].increment();
+            return false;
+        }
+        admitted[p].increment();
+        return true;
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getAdmittedCount(ApiPriority priority) {
+        return admitted[priority.ordinal()].sum();
+    }
+
+    long getShedCount(ApiPriority priority) {
+        return shed[priority.ordinal()].sum();
+    }
+}
@@ -54,6 +54,26 @@ public final class ApiManager {
                     }
                 }
                 api.serviceInstance = serviceInstance;
+                ApiPriority priority = CommonConfig.getInstance().getApiPriorities().get(api.methodName);
+                if (priority != null) {
+                    api.priority = priority;
+                }
+                Integer limit = CommonConfig.getInstance().getConcurrencyLimits().get(api.methodName);
+                api.bulkhead.setLimit(limit == null ? CommonConfig.getInstance().getDefaultConcurrencyLimit() : limit);
+                if (api.dubboInterface != null) {
+                    api.serviceBulkhead = Bulkhead.forService(api.dubboInterface.getName());
+                    if (CommonConfig.getInstance().isAdaptiveLimit()) {
+                        api.serviceLimiter = AdaptiveLimiter.forService(api.dubboInterface.getName());
+                    }
+                    if (CommonConfig.getInstance().isCircuitBreaker()) {
+                        api.circuitBreaker = CommonConfig.getInstance().isCircuitBreakerPerService() ? CircuitBreaker.forService(
+                                api.dubboInterface.getName()) : CircuitBreaker.create();
+                    }
+                    if (api.idempotent && CommonConfig.getInstance().isHedge()) {
+                        api.hedge = HedgePolicy.create(api.stats);
+                    }
+                    api.lastKnownGood = CommonConfig.getInstance().getLastKnownGoodApis().contains(api.methodName);
+                }
                 if (api.state == ApiOpenState.OPEN || api.state == ApiOpenState.DEPRECATED) {
                     apiInfos.put(api.methodName, api);
                     switch (api.type) {
@@ -84,6 +104,23 @@ public final class ApiManager {
         return methodInfo;
     }
 
+    /**
+     * 运行时调整接口或 dubbo 接口(服务)的并发调用数上限, 不大于0时不限制, 名称不存在时返回 false
+     */
+    public boolean setConcurrencyLimit(String name, int limit) {
+        ApiMethodInfo info = apiInfos.get(name);
+        if (info != null) {
+            info.bulkhead.setLimit(limit);
+            return true;
+        }
+        Bulkhead bulkhead = Bulkhead.getServices().get(name);
+        if (bulkhead != null) {
+            bulkhead.setLimit(limit);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * 获取已注册接口
      */
@@ -223,6 +260,14 @@ public final class ApiManager {
                             throw new RuntimeException("short circuit data type error " + clazz.getName() + " " + api.name());
                         }
                     }
+                    ApiFallback af = mInfo.getAnnotation(ApiFallback.class);
+                    if (af != null) {
+                        apiInfo.fallbackValue = af.value().newInstance();
+                        if (!mInfo.getReturnType().isInstance(apiInfo.fallbackValue) || !MockApiReturnObject.class
+                                .isInstance(apiInfo.fallbackValue)) {
+                            throw new RuntimeException("fallback data type error " + clazz.getName() + " " + api.name());
+                        }
+                    }
                     EncryptTransfer et = mInfo.getAnnotation(EncryptTransfer.class);
                     if (et != null) {
                         apiInfo.encryptionOnly = et.encryptionOnly();
@@ -541,12 +586,23 @@ public final class ApiManager {
                         throw new RuntimeException("duplicate param , groupName: " + apiInfo.groupName + ", methodName: " + apiInfo.methodName);
                     }
                     parseReturnType(apiInfo, mInfo, clazz);//返回结果解析,设置apiInfo.seriliazer,apiInfo.returnType, apiInfo.actuallyGenericType
+                    if (mInfo.getAnnotation(StreamingOutput.class) != null) {
+                        if (apiInfo.wrapper != ResponseWrapper.objectCollectionWrapper) {
+                            throw new RuntimeException("streaming output only supports collection of described object, " + clazz.getName() + " " + api.name());
+                        }
+                        apiInfo.streamingOutput = true;
+                        apiInfo.serializer = Serializer.getObjectStreamRespSerializer();
+                        apiInfo.wrapper = ResponseWrapper.objectStreamWrapper;
+                    }
+                    apiInfo.etagEnabled = mInfo.getAnnotation(EnableETag.class) != null;
                     //递归检查返回结果类型
                     TypeCheckUtil.recursiveCheckReturnType(clazz.getName(), apiInfo.returnType, apiInfo.actuallyGenericReturnType,
                             new SerializableImplChecker(), new DescriptionAnnotationChecker(),
                             new PublicFieldChecker());
                     apiInfo.dubboInterface = clazz;
                     apiInfo.securityLevel = api.security();
+                    apiInfo.idempotent = api.idempotent();
+                    apiInfo.priority = api.priority();
                     //对于Integrated级别接口需要指定可访问该接口的第三方编号
                     if (SecurityType.Integrated.check(apiInfo.securityLevel)) {
                         if (api.needVerify()) {
@@ -667,10 +723,10 @@ public final class ApiManager {
             apiInfo.serializer = POJOSerializerProvider.getSerializer(StringArrayResp.class);
             apiInfo.wrapper = ResponseWrapper.stringArrayWrapper;
         } else if (Date.class == apiInfo.returnType) {
-            apiInfo.serializer = POJOSerializerProvider.getSerializer(StringResp.class);
+            apiInfo.serializer = POJOSerializerProvider.getSerializer(DateResp.class);
             apiInfo.wrapper = ResponseWrapper.dateWrapper;
         } else if (Date[].class == apiInfo.returnType) {
-            apiInfo.serializer = POJOSerializerProvider.getSerializer(StringArrayResp.class);
+            apiInfo.serializer = POJOSerializerProvider.getSerializer(DateArrayResp.class);
             apiInfo.wrapper = ResponseWrapper.dateArrayWrapper;
         } else if (boolean.class == apiInfo.returnType) {
             apiInfo.serializer = POJOSerializerProvider.getSerializer(BoolResp.class);
@@ -0,0 +1,165 @@
+package net.pocrd.core;
+
+import net.pocrd.define.ConstField;
+import net.pocrd.define.SerializeType;
+import net.pocrd.define.Serializer;
+import net.pocrd.entity.AbstractReturnCode;
+import net.pocrd.entity.ApiReturnCode;
+import net.pocrd.responseEntity.CallState;
+import net.pocrd.responseEntity.KeyValuePair;
+import net.pocrd.responseEntity.Response;
+import net.pocrd.util.POJOSerializerProvider;
+import net.pocrd.util.ValueEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 请求被拒绝(没有任何接口调用结果)时的预序列化响应, 输出时只需要填入 cid 和 systime。
+ * 响应模板按对外暴露的返回码缓存, 启动时预先生成 ApiReturnCode 中定义的返回码, 其余返回码在首次使用时生成
+ */
+final class ErrorEnvelopeCache {
+    private static final Logger logger = LoggerFactory.getLogger(ErrorEnvelopeCache.class);
+
+    private static final String MARKER_CID     = "POCRDCIDMARKER";
+    private static final long   MARKER_SYSTIME = 1357924680135792468L;
+
+    private static final Serializer<Response>                   serializer = POJOSerializerProvider.getSerializer(Response.class);
+    private static final ConcurrentHashMap<Integer, Template[]> templates  = new ConcurrentHashMap<Integer, Template[]>();
+
+    static {
+        for (Field f : ApiReturnCode.class.getFields()) {
+            if (Modifier.isStatic(f.getModifiers()) && AbstractReturnCode.class.isAssignableFrom(f.getType())) {
+                try {
+                    AbstractReturnCode code = (AbstractReturnCode)f.get(null);
+                    if (code != null) {
+                        getTemplates(code.getDisplay().getCode());
+                    }
+                } catch (Exception e) {
+                    logger.warn("build error envelope failed. " + f.getName(), e);
+                }
+            }
+        }
+    }
+
+    private ErrorEnvelopeCache() {}
+
+    /**
+     * 响应模板, 由固定的字节片段与 cid/systime 两个可变字段交替组成
+     */
+    private static final class Template {
+        final byte[][]  parts;
+        final boolean[] cidSlots;
+
+        Template(byte[][] parts, boolean[] cidSlots) {
+            this.parts = parts;
+            this.cidSlots = cidSlots;
+        }
+    }
+
+    /**
+     * 按 [xml/json][有无cid] 生成的模板
+     */
+    private static Template[] getTemplates(int displayCode) {
+        Template[] ts = templates.get(displayCode);
+        if (ts == null) {
+            ts = new Template[] {
+                    build(displayCode, SerializeType.XML, true),
+                    build(displayCode, SerializeType.XML, false),
+                    build(displayCode, SerializeType.JSON, true),
+                    build(displayCode, SerializeType.JSON, false)
+            };
+            templates.putIfAbsent(displayCode, ts);
+        }
+        return ts;
+    }
+
+    private static Template build(int displayCode, SerializeType format, boolean withCid) {
+        Response response = new Response();
+        response.code = displayCode;
+        response.cid = withCid ? MARKER_CID : null;
+        response.systime = MARKER_SYSTIME;
+        response.stateList = new ArrayList<CallState>(0);
+        response.notificationList = new ArrayList<KeyValuePair>(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            if (format == SerializeType.XML) {
+                out.write(ConstField.XML_START);
+                serializer.toXml(response, out, true);
+                out.write(ConstField.XML_END);
+            } else {
+                out.write(ConstField.JSON_START);
+                serializer.toJson(response, out, true);
+                out.write(ConstField.JSON_CONTENT);
+                out.write(ConstField.JSON_END);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        String text = new String(out.toByteArray(), ConstField.UTF8);
+        String systime = String.valueOf(MARKER_SYSTIME);
+        int s = text.indexOf(systime);
+        int c = withCid ? text.indexOf(MARKER_CID) : -1;
+        if (s < 0 || (withCid && c < 0)) {
+            throw new RuntimeException("build error envelope failed. " + text);
+        }
+        if (c < 0) {
+            return new Template(new byte[][] {
+                    text.substring(0, s).getBytes(ConstField.UTF8),
+                    text.substring(s + systime.length()).getBytes(ConstField.UTF8)
+            }, new boolean[] { false });
+        }
+        int first = Math.min(s, c);
+        int second = Math.max(s, c);
+        int firstEnd = first + (first == c ? MARKER_CID.length() : systime.length());
+        int secondEnd = second + (second == c ? MARKER_CID.length() : systime.length());
+        return new Template(new byte[][] {
+                text.substring(0, first).getBytes(ConstField.UTF8),
+                text.substring(firstEnd, second).getBytes(ConstField.UTF8),
+                text.substring(secondEnd).getBytes(ConstField.UTF8)
+        }, new boolean[] { first == c, second == c });
+    }
+
+    /**
+     * cid 仅包含无需转义的可见 ascii 字符时才可直接填入模板
+     */
+    private static boolean isPlainCid(String cid) {
+        for (int i = 0; i < cid.length(); i++) {
+            char ch = cid.charAt(i);
+            if (ch < 0x20 || ch > 0x7e || ch == '"' || ch == '\\' || ch == '<' || ch == '>' || ch == '&' || ch == ']') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否可以使用预序列化的响应, 仅支持 xml/json 格式以及无需转义的 cid
+     */
+    static boolean accept(SerializeType format, String cid) {
+        return (format == SerializeType.XML || format == SerializeType.JSON) && (cid == null || isPlainCid(cid));
+    }
+
+    /**
+     * 输出预序列化的响应, 调用前需通过 accept 检查
+     */
+    static void write(AbstractReturnCode code, SerializeType format, String cid, long systime, OutputStream out) throws IOException {
+        Template t = getTemplates(code.getDisplay().getCode())[(format == SerializeType.XML ? 0 : 2) + (cid == null ? 1 : 0)];
+        out.write(t.parts[0]);
+        for (int i = 0; i < t.cidSlots.length; i++) {
+            if (t.cidSlots[i]) {
+                out.write(cid.getBytes(ConstField.UTF8));
+            } else {
+                ValueEncoder.writeBytes(systime, out);
+            }
+            out.write(t.parts[i + 1]);
+        }
+    }
+}
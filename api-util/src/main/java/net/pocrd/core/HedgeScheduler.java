@@ -0,0 +1,71 @@
+package net.pocrd.core;
+
+import java.util.concurrent.Future;
+
+/**
+ * 一次请求中各幂等调用的对冲计时。调用分发时登记其对冲时间, 全部分发完成后由请求线程等待最早到期的一个,
+ * 原请求完成时通过 future 回调提前唤醒, 因此每个调用都在各自的对冲时间发起对冲, 不受其他调用等待的影响。
+ * 对冲请求依赖请求线程中的 RpcContext 及调用上下文, 因此只计时而不在定时器线程中发起
+ */
+final class HedgeScheduler {
+    private final int[]       indexes;
+    private final long[]      deadlines;
+    private final Future<?>[] futures;
+    private       int         size;
+
+    HedgeScheduler(int capacity) {
+        indexes = new int[capacity];
+        deadlines = new long[capacity];
+        futures = new Future<?>[capacity];
+    }
+
+    /**
+     * 登记调用的原请求及对冲时间(毫秒时间戳)
+     */
+    void schedule(int index, Future<?> future, long deadline) {
+        synchronized (this) {
+            indexes[size] = index;
+            deadlines[size] = deadline;
+            futures[size] = future;
+            size++;
+        }
+        HedgeWaiter.onDone(future, new Runnable() {
+            @Override
+            public void run() {
+                wake();
+            }
+        });
+    }
+
+    private synchronized void wake() {
+        notifyAll();
+    }
+
+    /**
+     * 等待下一个到期且原请求仍未完成的调用并返回其序号, 所有登记的调用都已完成或已返回过时返回-1
+     */
+    synchronized int next() throws InterruptedException {
+        while (true) {
+            int earliest = -1;
+            for (int i = 0; i < size; i++) {
+                if (futures[i] == null) {
+                    continue;
+                }
+                if (futures[i].isDone()) {
+                    futures[i] = null;
+                } else if (earliest < 0 || deadlines[i] < deadlines[earliest]) {
+                    earliest = i;
+                }
+            }
+            if (earliest < 0) {
+                return -1;
+            }
+            long wait = deadlines[earliest] - System.currentTimeMillis();
+            if (wait <= 0) {
+                futures[earliest] = null;
+                return indexes[earliest];
+            }
+            wait(wait);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.pocrd.core;
+
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+/**
+ * 等待原请求与对冲请求中先完成(包括失败)的一个, 通过在 dubbo future 上追加回调实现, 不影响已有的回调
+ */
+final class HedgeWaiter {
+    private final    CountDownLatch done = new CountDownLatch(1);
+    private volatile Future<?>      winner;
+
+    void watch(final Future<?> future) {
+        onDone(future, new Runnable() {
+            @Override
+            public void run() {
+                complete(future);
+            }
+        });
+    }
+
+    /**
+     * dubbo future 完成(包括失败)时执行 action, 保留已有的回调
+     */
+    static void onDone(Future<?> future, final Runnable action) {
+        ResponseFuture rf = ((FutureAdapter<?>)future).getFuture();
+        final ResponseCallback previous = rf.getCallback();
+        rf.setCallback(new ResponseCallback() {
+            @Override
+            public void done(Object response) {
+                if (previous != null) {
+                    previous.done(response);
+                }
+                action.run();
+            }
+
+            @Override
+            public void caught(Throwable exception) {
+                if (previous != null) {
+                    previous.caught(exception);
+                }
+                action.run();
+            }
+        });
+    }
+
+    private synchronized void complete(Future<?> future) {
+        if (winner == null) {
+            winner = future;
+            done.countDown();
+        }
+    }
+
+    /**
+     * 两个请求都会在 dubbo 超时后完成, 因此这里不会无限等待
+     */
+    Future<?> await() throws InterruptedException {
+        done.await();
+        return winner;
+    }
+}
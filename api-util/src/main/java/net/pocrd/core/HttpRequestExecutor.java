@@ -14,12 +14,11 @@ import net.pocrd.entity.*;
 import net.pocrd.responseEntity.AuthenticationResult;
 import net.pocrd.responseEntity.CallState;
 import net.pocrd.responseEntity.KeyValuePair;
+import net.pocrd.responseEntity.ObjectStreamResp;
 import net.pocrd.responseEntity.Response;
 import net.pocrd.util.*;
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -30,6 +29,10 @@ import java.io.OutputStream;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 
 /**
@@ -42,6 +45,8 @@ public class HttpRequestExecutor {
     private static final String               DEBUG_DUBBOVERSION      = "DUBBO-VERSION";
     //debug 模式下识别http header中dubbo.service.ip参数,将请求路由到指定的dubbo服务上
     private static final String               DEBUG_DUBBOSERVICE_URL  = "DUBBO-SERVICE-URL";
+    //前端代理写入的请求到达时间, 用于计算请求在网关前的排队时间
+    private static final String               REQUEST_START           = "X-Request-Start";
     private static final ApiMethodCall[]      EMPTY_METHOD_CALL_ARRAY = new ApiMethodCall[0];
     private static final String               FORMAT_XML              = "xml";
     private static final String               FORMAT_JSON             = "json";
@@ -59,6 +64,11 @@ public class HttpRequestExecutor {
     private static final String               USER_AGENT              = "User-Agent";
     private static final String               REFERER                 = "Referer";
     private static final String               DEBUG_AGENT             = "pocrd.tester";
+    private static final String               ACCEPT_ENCODING         = "Accept-Encoding";
+    private static final String               CONTENT_ENCODING        = "Content-Encoding";
+    private static final String               VARY                    = "Vary";
+    private static final String               ETAG                    = "ETag";
+    private static final String               IF_NONE_MATCH           = "If-None-Match";
     private static final Serializer<Response> apiResponseSerializer   = POJOSerializerProvider.getSerializer(Response.class);
 
     private final ApiContext apiContext = new ApiContext();
@@ -71,10 +81,40 @@ public class HttpRequestExecutor {
     private AESTokenHelper aesTokenHelper   = null;
     private ApiManager     apiManager       = null;
 
+    /**
+     * 是否统计网关侧各阶段的CPU时间及内存分配, 以及统计开始时当前线程的读数
+     */
+    private boolean resourceAccounting = false;
+    private long    meterCpuNanos;
+    private long    meterAllocBytes;
+
     protected HttpRequestExecutor() {
     }
 
     private static final ThreadLocal<HttpRequestExecutor> executor = new ThreadLocal<HttpRequestExecutor>();
+
+    /**
+     * 响应压缩使用的压缩器缓冲池
+     */
+    private static final DeflaterPool deflaterPool = new DeflaterPool(CommonConfig.getInstance().getCompressLevel(),
+            CommonConfig.getInstance().getCompressPoolSize());
+
+    /**
+     * 每分钟耗时最长的请求
+     */
+    static final SlowRequestSampler slowRequestSampler = new SlowRequestSampler(CommonConfig.getInstance().getSlowRequestSampleSize());
+    static final QueueDelayShedder  queueDelayShedder  = CommonConfig.getInstance().getShedQueueTarget() > 0 ? new QueueDelayShedder(
+            CommonConfig.getInstance().getShedQueueTarget(), CommonConfig.getInstance().getShedQueueInterval()) : null;
+    static final RequestRateLimiter rateLimiter        = RequestRateLimiter.parse(CommonConfig.getInstance().getRateLimits(),
+            CommonConfig.getInstance().getRateLimitTableSize());
+    static final LastKnownGoodStore lastKnownGood      = CommonConfig.getInstance().getLastKnownGoodApis().isEmpty() ? null
+            : new LastKnownGoodStore(CommonConfig.getInstance().getLastKnownGoodSize(), CommonConfig.getInstance().getLastKnownGoodMaxBytes(),
+            CommonConfig.getInstance().getLastKnownGoodTtl());
+    static final AdmissionController admission          = CommonConfig.getInstance().getAdmissionMaxInFlight() > 0
+            || CommonConfig.getInstance().getAdmissionQueueTarget() > 0 ? new AdmissionController(CommonConfig.getInstance().getAdmissionMaxInFlight(),
+            CommonConfig.getInstance().getAdmissionQueueTarget(), CommonConfig.getInstance().getAppPriorities(),
+            CommonConfig.getInstance().getSecurityPriorities()) : null;
+
     private static String ZkAddress;
 
     public static HttpRequestExecutor get() {
@@ -96,6 +136,8 @@ public class HttpRequestExecutor {
             }
             exe.aesTokenHelper = new AESTokenHelper(config.getTokenAes());
             exe.apiManager = apiManager;
+            exe.resourceAccounting = config.getResourceAccounting() && ThreadResourceMeter.isSupported();
+            MetricsServlet.setApiManager(apiManager);
             executor.set(exe);
             return true;
         }
@@ -106,17 +148,34 @@ public class HttpRequestExecutor {
      * 执行web请求
      */
     public void processRequest(HttpServletRequest request, HttpServletResponse response) {
-        CommonConfig config = CommonConfig.getInstance();
         boolean fatalError = false;
+        boolean admitted = false;
         AbstractReturnCode parseResult = null;
         long current = System.currentTimeMillis();
         try {
-            MDC.clear();
+            LogContext.bind(apiContext.logContext);
             apiContext.clear();
             apiContext.startTime = current;
+            apiContext.timeline.start(CommonConfig.getInstance().getSlowRequestThreshold() > 0);
             parseCommonParameter(request, response);
+            apiContext.timeline.mark(RequestTimeline.COMMON_PARSED, null);
             setResponseHeader(request, response);
-            parseResult = parseMethodInfo(request);
+            if (queueDelayShedder != null && queueDelayShedder.shouldShed(getQueueDelay(request, current), current)) {
+                // 网关排队时间过长, 不再解析和执行接口调用
+                parseResult = ApiReturnCode.REQUEST_SHED;
+            } else if (rateLimiter != null && !rateLimiter.allowClient(apiContext)) {
+                parseResult = ApiReturnCode.RATE_LIMITED;
+            } else {
+                parseResult = parseMethodInfo(request);
+                apiContext.timeline.mark(RequestTimeline.METHOD_PARSED, null);
+            }
+            if (parseResult == ApiReturnCode.SUCCESS && admission != null) {
+                // 确定请求的优先级后进行准入检查, 过载时先拒绝低优先级的请求
+                admitted = admission.tryAdmit(admission.classify(apiContext), getQueueDelay(request, current));
+                if (!admitted) {
+                    parseResult = ApiReturnCode.PRIORITY_SHED;
+                }
+            }
             // 验证token是否过期
             if (parseResult == ApiReturnCode.SUCCESS && apiContext.caller != null
                     && SecurityType.expirable(apiContext.requiredSecurity)) {
@@ -129,15 +188,15 @@ public class HttpRequestExecutor {
             logger.error("init request failed.", e);
             fatalError = true;
         }
+        AccessLogger access = AccessLogger.getInstance();
+        List<ApiMethodCall> lv1ApiCalls = null;
         try {
-            AccessLogger access = AccessLogger.getInstance();
             // 参数解析失败
             if (fatalError) {
                 access.logRequest("with fatal error", String.valueOf(ApiReturnCode.FATAL_ERROR.getCode()));
             } else if (parseResult != ApiReturnCode.SUCCESS) {
                 access.logRequest("with error", String.valueOf(parseResult.getCode()));
             } else { // 参数解析成功
-                List<ApiMethodCall> lv1ApiCalls = null;
                 try {
                     if (apiContext.lv2ApiCalls == null) {
                         lv1ApiCalls = apiContext.apiCalls;
@@ -156,32 +215,15 @@ public class HttpRequestExecutor {
                     if (apiContext.lv3ApiCalls != null) {
                         executeAllApiCall(apiContext.lv3ApiCalls, request, response);
                     }
-                    for (ApiMethodCall call : apiContext.apiCalls) {
-                        serializeCallResult(call);
-                    }
+                    serializeAllCallResults(apiContext.apiCalls, response);
                 } finally {
                     apiContext.costTime = (int)(System.currentTimeMillis() - apiContext.startTime);
-                    for (ApiMethodCall call : lv1ApiCalls) {
-                        MDC.put(CommonParameter.method, call.method.methodName);
-                        // access log
-                        access.logAccess(call);
-                    }
-                    if (apiContext.lv2ApiCalls != null) {
-                        for (ApiMethodCall call : apiContext.lv2ApiCalls) {
-                            MDC.put(CommonParameter.method, call.method.methodName);
-                            // access log
-                            access.logAccess(call);
-                        }
-                    }
-                    if (apiContext.lv3ApiCalls != null) {
-                        for (ApiMethodCall call : apiContext.lv3ApiCalls) {
-                            MDC.put(CommonParameter.method, call.method.methodName);
-                            // access log
-                            access.logAccess(call);
+                    // 执行异常时释放尚未归还的并发许可
+                    if (apiContext.apiCalls != null) {
+                        for (ApiMethodCall call : apiContext.apiCalls) {
+                            releasePermits(call, false);
                         }
                     }
-                    MDC.remove(CommonParameter.method);
-                    access.logRequest();
                 }
             }
         } catch (Throwable t) {
@@ -189,61 +231,23 @@ public class HttpRequestExecutor {
             fatalError = true;
         } finally {
             try {
-                // token 解析失败，删除 token 以及标志位
-                if (apiContext.clearUserToken) {
-                    HashMap<String, String> map = config.getOriginWhiteList();
-                    // 删除 cookie 中的 user token
-                    Cookie tk_cookie = new Cookie(apiContext.appid + CommonParameter.token, "");
-                    tk_cookie.setMaxAge(0);
-                    tk_cookie.setHttpOnly(true);
-                    tk_cookie.setSecure(false);
-                    tk_cookie.setPath("/");
-
-                    // 删除 cookie 中的 secret user token
-                    Cookie stk_cookie = new Cookie(apiContext.appid + CommonParameter.stoken, "");
-                    stk_cookie.setMaxAge(0);
-                    stk_cookie.setHttpOnly(true);
-                    stk_cookie.setSecure(true);
-                    stk_cookie.setPath("/");
-
-                    // 删除 cookie 中的 登录标志位
-                    Cookie ct_cookie = new Cookie(apiContext.appid + "_ct", "");
-                    ct_cookie.setMaxAge(0);
-                    ct_cookie.setHttpOnly(false);
-                    ct_cookie.setSecure(false);
-                    ct_cookie.setPath("/");
-
-                    // 删除 用户信息
-                    Cookie userInfo_cookie = new Cookie(apiContext.appid + "_uinfo", "");
-                    userInfo_cookie.setMaxAge(0);
-                    userInfo_cookie.setHttpOnly(false);
-                    userInfo_cookie.setSecure(false);
-                    userInfo_cookie.setPath("/");
-                    if (apiContext.host != null && map.containsKey(apiContext.host)) {
-                        String domain = map.get(apiContext.host);
-                        tk_cookie.setDomain(domain);
-                        ct_cookie.setDomain(domain);
-                        userInfo_cookie.setDomain(domain);
+                if (apiContext.directOutput == null) {
+                    writeTokenCookies(response);
+                }
+                if (fatalError && apiContext.directOutput != null) {
+                    // 尾部状态布局下响应已经开始输出, 丢弃未输出的数据并以错误状态结束响应。
+                    // 返回值已输出的调用保留各自的状态, 以便客户端按长度拆分, 其余调用标记为失败
+                    apiContext.outputStream.reset();
+                    ApiMethodCall[] calls = apiContext.apiCalls.toArray(new ApiMethodCall[apiContext.apiCalls.size()]);
+                    for (int i = apiContext.drainedCallCount; i < calls.length; i++) {
+                        calls[i].resultLen = 0;
+                        calls[i].replaceReturnCode(ApiReturnCode.FATAL_ERROR);
                     }
-                    response.addCookie(tk_cookie);
-                    response.addCookie(stk_cookie);
-                    response.addCookie(ct_cookie);
-                    response.addCookie(userInfo_cookie);
-                } else if (apiContext.clearExpiredUserToken) {
-                    // token 过期，删除标志位，将客户端 token 标记为失效
-                    HashMap<String, String> map = config.getOriginWhiteList();
-                    // 删除 cookie 标志位
-                    Cookie ct_cookie = new Cookie(apiContext.appid + "_ct", "");
-                    ct_cookie.setMaxAge(0);
-                    ct_cookie.setHttpOnly(false);
-                    ct_cookie.setSecure(false);
-                    ct_cookie.setPath("/");
-                    if (apiContext.host != null && map.containsKey(apiContext.host)) {
-                        ct_cookie.setDomain(map.get(apiContext.host));
+                    Exception e = output(ApiReturnCode.FATAL_ERROR, calls, response);
+                    if (e != null) {
+                        logger.error("output failed.", e);
                     }
-                    response.addCookie(ct_cookie);
-                }
-                if (fatalError) {
+                } else if (fatalError) {
                     // 错误请求
                     response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Bad Request");
                 } else if (parseResult != ApiReturnCode.SUCCESS) {
@@ -261,11 +265,163 @@ public class HttpRequestExecutor {
             } catch (Exception e) {
                 logger.error("output failed.", e);
             } finally {
+                apiContext.timeline.mark(RequestTimeline.OUTPUT, null);
+                // 流式输出的返回值长度在输出完成后才能确定, 因此 access log 在输出之后记录
+                if (lv1ApiCalls != null) {
+                    logAccess(access, lv1ApiCalls);
+                }
+                if (apiContext.timeline.isEnabled()) {
+                    sampleSlowRequest();
+                }
+                if (admitted) {
+                    admission.release();
+                }
                 apiContext.clear();
             }
         }
     }
 
+    /**
+     * token 解析失败时删除 token 以及标志位
+     */
+    private void writeTokenCookies(HttpServletResponse response) {
+        CommonConfig config = CommonConfig.getInstance();
+        if (apiContext.clearUserToken) {
+            HashMap<String, String> map = config.getOriginWhiteList();
+            // 删除 cookie 中的 user token
+            Cookie tk_cookie = new Cookie(apiContext.appid + CommonParameter.token, "");
+            tk_cookie.setMaxAge(0);
+            tk_cookie.setHttpOnly(true);
+            tk_cookie.setSecure(false);
+            tk_cookie.setPath("/");
+
+            // 删除 cookie 中的 secret user token
+            Cookie stk_cookie = new Cookie(apiContext.appid + CommonParameter.stoken, "");
+            stk_cookie.setMaxAge(0);
+            stk_cookie.setHttpOnly(true);
+            stk_cookie.setSecure(true);
+            stk_cookie.setPath("/");
+
+            // 删除 cookie 中的 登录标志位
+            Cookie ct_cookie = new Cookie(apiContext.appid + "_ct", "");
+            ct_cookie.setMaxAge(0);
+            ct_cookie.setHttpOnly(false);
+            ct_cookie.setSecure(false);
+            ct_cookie.setPath("/");
+
+            // 删除 用户信息
+            Cookie userInfo_cookie = new Cookie(apiContext.appid + "_uinfo", "");
+            userInfo_cookie.setMaxAge(0);
+            userInfo_cookie.setHttpOnly(false);
+            userInfo_cookie.setSecure(false);
+            userInfo_cookie.setPath("/");
+            if (apiContext.host != null && map.containsKey(apiContext.host)) {
+                String domain = map.get(apiContext.host);
+                tk_cookie.setDomain(domain);
+                ct_cookie.setDomain(domain);
+                userInfo_cookie.setDomain(domain);
+            }
+            response.addCookie(tk_cookie);
+            response.addCookie(stk_cookie);
+            response.addCookie(ct_cookie);
+            response.addCookie(userInfo_cookie);
+        } else if (apiContext.clearExpiredUserToken) {
+            // token 过期，删除标志位，将客户端 token 标记为失效
+            HashMap<String, String> map = config.getOriginWhiteList();
+            // 删除 cookie 标志位
+            Cookie ct_cookie = new Cookie(apiContext.appid + "_ct", "");
+            ct_cookie.setMaxAge(0);
+            ct_cookie.setHttpOnly(false);
+            ct_cookie.setSecure(false);
+            ct_cookie.setPath("/");
+            if (apiContext.host != null && map.containsKey(apiContext.host)) {
+                ct_cookie.setDomain(map.get(apiContext.host));
+            }
+            response.addCookie(ct_cookie);
+        }
+    }
+
+    private void logAccess(AccessLogger access, List<ApiMethodCall> lv1ApiCalls) {
+        for (ApiMethodCall call : lv1ApiCalls) {
+            apiContext.logContext.put(CommonParameter.method, call.method.methodName);
+            // access log
+            access.logAccess(call);
+            recordStats(call);
+        }
+        if (apiContext.lv2ApiCalls != null) {
+            for (ApiMethodCall call : apiContext.lv2ApiCalls) {
+                apiContext.logContext.put(CommonParameter.method, call.method.methodName);
+                // access log
+                access.logAccess(call);
+                recordStats(call);
+            }
+        }
+        if (apiContext.lv3ApiCalls != null) {
+            for (ApiMethodCall call : apiContext.lv3ApiCalls) {
+                apiContext.logContext.put(CommonParameter.method, call.method.methodName);
+                // access log
+                access.logAccess(call);
+                recordStats(call);
+            }
+        }
+        apiContext.logContext.remove(CommonParameter.method);
+        access.logRequest();
+    }
+
+    /**
+     * 记录接口的耗时分布及返回值代码, 服务调用耗时只有毫秒精度
+     */
+    private void recordStats(ApiMethodCall call) {
+        call.method.stats.recordCall(call.getReturnCode(), call.costTime * 1000L, call.serializeNanos / 1000);
+        if (call.providerMicros >= 0) {
+            call.method.stats.recordProvider(call.costTime * 1000L, call.providerMicros);
+        }
+        if (resourceAccounting) {
+            call.method.stats.recordResource(call.cpuNanos, call.allocBytes);
+        }
+    }
+
+    /**
+     * 耗时超过阈值的请求交给慢请求采样器, 只有可能进入本分钟记录的请求才格式化时间线
+     */
+    private void sampleSlowRequest() {
+        long cost = apiContext.timeline.getElapsedNanos();
+        slowRequestSampler.tick();
+        if (cost < CommonConfig.getInstance().getSlowRequestThreshold() * 1000000L || !slowRequestSampler.accept(cost)) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("cost:").append(cost / 1000).append("us cid:").append(apiContext.cid).append(" method:");
+        if (apiContext.apiCalls != null) {
+            for (ApiMethodCall call : apiContext.apiCalls) {
+                sb.append(call.method.methodName).append(':').append(call.getReturnCode()).append(',');
+            }
+        }
+        sb.append(' ');
+        apiContext.timeline.appendTo(sb);
+        slowRequestSampler.add(cost, sb.toString());
+    }
+
+    /**
+     * 开始统计当前线程在网关侧的资源消耗, 未开启统计时不做任何操作
+     */
+    private void beginMeter() {
+        if (resourceAccounting) {
+            meterCpuNanos = ThreadResourceMeter.cpuNanos();
+            meterAllocBytes = ThreadResourceMeter.allocatedBytes();
+        }
+    }
+
+    /**
+     * 将 beginMeter 之后当前线程的资源消耗累加到调用上
+     */
+    private void endMeter(ApiMethodCall call) {
+        if (resourceAccounting) {
+            call.cpuNanos += ThreadResourceMeter.cpuNanos() - meterCpuNanos;
+            call.allocBytes += ThreadResourceMeter.allocatedBytes() - meterAllocBytes;
+        }
+    }
+
     /**
      * 子类中可以扩展验证用户权限的方式
      */
@@ -304,7 +460,7 @@ public class HttpRequestExecutor {
                 if (context.token != null && context.token.length() > 0) {
                     context.caller = aesTokenHelper.parseToken(context.token);
                     if (context.caller != null && context.caller.uid != 0) {
-                        MDC.put(CommonParameter.userId, String.valueOf(context.caller.uid));
+                        context.logContext.put(CommonParameter.userId, String.valueOf(context.caller.uid));
                     }
                 }
             }
@@ -437,6 +593,7 @@ public class HttpRequestExecutor {
         for (int m = 0; m < length; m++) {
             ApiMethodCall call = apiCallList.get(m);
             ApiMethodInfo method = call.method;
+            beginMeter();
             // 验证当前调用的接口与调用者身份中的子系统标识是否一致(子系统标识为0的接口可被所有用户访问)
             // 如果当前调用依赖于一个授权接口, 则不验证子系统匹配, 转而在后面验证认证结果中是否包含对该接口的授权
             // TODO 加入zk权限树检测 不再简单使用接口上的标记来做这个判断
@@ -580,6 +737,7 @@ public class HttpRequestExecutor {
                 }
             }
             call.parameters = parameters;
+            endMeter(call);
         }
 
         // 调试环境下为带有特殊标识的访问者赋予测试者身份
@@ -612,6 +770,7 @@ public class HttpRequestExecutor {
         } else if (!checkSignature(apiContext.caller, apiContext.requiredSecurity, request)) {
             return ApiReturnCode.SIGNATURE_ERROR;
         }
+        apiContext.timeline.mark(RequestTimeline.SIGNATURE_CHECKED, null);
 
         code = checkAuthorization(apiContext, apiContext.requiredSecurity, request);
         if (code != ApiReturnCode.SUCCESS) {
@@ -716,6 +875,24 @@ public class HttpRequestExecutor {
             }
         }
 
+        // 条件请求
+        {
+            String method = request.getMethod();
+            if ("GET".equals(method) || "HEAD".equals(method)) {
+                apiContext.ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+            }
+        }
+
+        // 协商响应压缩方式
+        if (CommonConfig.getInstance().getCompressEnable()) {
+            response.addHeader(VARY, ACCEPT_ENCODING);
+            apiContext.contentEncoding = CompressOutputStream.negotiate(request.getHeader(ACCEPT_ENCODING));
+        }
+
+        // 响应布局
+        apiContext.trailingState = apiContext.format != SerializeType.PAILNTEXT
+                && CommonConfig.getInstance().isTrailingStateClient(apiContext.appid, apiContext.versionCode);
+
         {
             if (apiContext.deviceIdStr != null && apiContext.deviceIdStr.length() > 0) {
                 try {
@@ -742,7 +919,7 @@ public class HttpRequestExecutor {
         }
         apiContext.deviceId = -(1_000_000_000_000_000L + ((long)(Math.random() * 9_000_000_000_000_000L)));
         apiContext.deviceIdStr = String.valueOf(apiContext.deviceId);
-        MDC.put(CommonParameter.deviceId, apiContext.deviceIdStr);
+        apiContext.logContext.put(CommonParameter.deviceId, apiContext.deviceIdStr);
         HashMap<String, String> map = CommonConfig.getInstance().getOriginWhiteList();
         Cookie deviceId_cookie = new Cookie(CommonParameter.cookieDeviceId, apiContext.deviceIdStr);
         deviceId_cookie.setMaxAge(Integer.MAX_VALUE);
@@ -756,11 +933,23 @@ public class HttpRequestExecutor {
 
     @SuppressWarnings("unchecked")
     private void serializeCallResult(ApiMethodCall call) throws IOException {
+        // 尾部状态布局下单接口请求的流式返回值推迟到输出阶段直接写入http输出流, 返回值长度随尾部状态输出。
+        // 其他情况下返回状态位于返回值之前, 需要先确定长度, 因此仍然完整序列化到缓冲区
+        if (call.method.streamingOutput && apiContext.trailingState && apiContext.apiCalls.size() == 1 && call.staleResult == null
+                && call.result != null && ((ObjectStreamResp)call.result).value != null) {
+            apiContext.streamingCall = call;
+            apiContext.serializeCount++;
+            return;
+        }
         int oldSize = apiContext.outputStream.size();
+        long start = System.nanoTime();
+        beginMeter();
         try {
             switch (apiContext.format) {
                 case XML:
-                    if (call.result == null) {
+                    if (call.staleResult != null) {
+                        apiContext.outputStream.write(call.staleResult);
+                    } else if (call.result == null) {
                         if (call.method.returnType != RawString.class) {
                             apiContext.outputStream.write(ConstField.XML_EMPTY);
                         }
@@ -772,7 +961,9 @@ public class HttpRequestExecutor {
                     if (apiContext.serializeCount > 0) {
                         apiContext.outputStream.write(ConstField.JSON_SPLIT);
                     }
-                    if (call.result == null) {
+                    if (call.staleResult != null) {
+                        apiContext.outputStream.write(call.staleResult);
+                    } else if (call.result == null) {
                         if (call.method.returnType != RawString.class) {
                             apiContext.outputStream.write(ConstField.JSON_EMPTY);
                         }
@@ -782,30 +973,193 @@ public class HttpRequestExecutor {
                     break;
             }
             call.resultLen = apiContext.outputStream.size() - oldSize;
+            saveLastKnownGood(call, apiContext.format == SerializeType.JSON && apiContext.serializeCount > 0 ? oldSize
+                    + ConstField.JSON_SPLIT.length : oldSize);
         } catch (Exception e) {
-            //序列化失败,重置输出流（Tips：writeTo函数实现 out.write(this.buffer, 0, this.count)，故重置index即完成重置）
-            apiContext.outputStream.setWriteIndex(oldSize);
-            //回写空数据节点
-            switch (apiContext.format) {
-                case XML:
-                    apiContext.outputStream.write(ConstField.XML_EMPTY);
-                    break;
-                case JSON:
-                    if (apiContext.serializeCount > 0) {
-                        apiContext.outputStream.write(ConstField.JSON_SPLIT);
-                    }
-                    apiContext.outputStream.write(ConstField.JSON_EMPTY);
-                    break;
+            serializeFailed(call, oldSize, e);
+        } finally {
+            call.serializeNanos += System.nanoTime() - start;
+            endMeter(call);
+            apiContext.timeline.mark(RequestTimeline.SERIALIZED, call.method.methodName);
+            apiContext.serializeCount++;
+        }
+    }
+
+    /**
+     * 保存接口本次成功调用的序列化结果, from 为结果在输出缓冲区中的起始位置
+     */
+    private void saveLastKnownGood(ApiMethodCall call, int from) {
+        if (!call.method.lastKnownGood || lastKnownGood == null || call.staleResult != null || call.substituted || call.method.mocked
+                || call.result == null || call.getOriginCode() != ApiReturnCode.SUCCESS.getCode()
+                || apiContext.format == SerializeType.PAILNTEXT || !lastKnownGood.accept(apiContext.outputStream.size() - from)) {
+            return;
+        }
+        lastKnownGood.put(LastKnownGoodStore.key(apiContext, call), apiContext.outputStream.toByteArray(from), System.currentTimeMillis());
+    }
+
+    private void serializeFailed(ApiMethodCall call, int oldSize, Exception e) throws IOException {
+        //序列化失败,重置输出流（Tips：writeTo函数实现 out.write(this.buffer, 0, this.count)，故重置index即完成重置）
+        apiContext.outputStream.setWriteIndex(oldSize);
+        //回写空数据节点
+        switch (apiContext.format) {
+            case XML:
+                apiContext.outputStream.write(ConstField.XML_EMPTY);
+                break;
+            case JSON:
+                if (apiContext.serializeCount > 0) {
+                    apiContext.outputStream.write(ConstField.JSON_SPLIT);
+                }
+                apiContext.outputStream.write(ConstField.JSON_EMPTY);
+                break;
+        }
+        //设置序列化异常错误码
+        call.resultLen = 0;
+        call.replaceReturnCode(ApiReturnCode.SERIALIZE_FAILED);
+        logger.error("serialize object failed.", e);
+    }
+
+    /**
+     * 并行序列化使用的线程池, 首次使用时创建
+     */
+    private static final class SerializePoolHolder {
+        static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, CommonConfig.getInstance().getParallelSerializeThreads()));
+    }
+
+    /**
+     * 序列化所有接口的返回值, 合并调用的接口数较多时第一个接口在当前线程中序列化, 其余接口在线程池中序列化到各自的缓冲区,
+     * 再按声明顺序拼接到输出缓冲区中
+     */
+    private void serializeAllCallResults(List<ApiMethodCall> calls, HttpServletResponse response) throws IOException {
+        CommonConfig config = CommonConfig.getInstance();
+        int size = calls.size();
+        if (!config.getParallelSerialize() || size < Math.max(2, config.getParallelSerializeMinCalls())
+                || apiContext.format == SerializeType.PAILNTEXT) {
+            for (ApiMethodCall call : calls) {
+                serializeCallResult(call);
+                drainCallResults(response);
+            }
+            return;
+        }
+        List<ForkJoinTask<SegmentedByteOutputStream>> tasks = new ArrayList<ForkJoinTask<SegmentedByteOutputStream>>(size);
+        tasks.add(null);
+        for (int i = 1; i < size; i++) {
+            tasks.add(SerializePoolHolder.pool.submit(new SerializeTask(calls.get(i), apiContext.format, resourceAccounting)));
+        }
+        serializeCallResult(calls.get(0));
+        drainCallResults(response);
+        for (int i = 1; i < size; i++) {
+            spliceCallResult(calls.get(i), tasks.get(i));
+            drainCallResults(response);
+        }
+    }
+
+    /**
+     * 尾部状态布局下, 已序列化的数据超过阈值时开始向客户端输出并清空序列化缓冲区, 网关不再缓存完整的响应。
+     * 只在接口之间进行, 保证单个接口序列化失败时仍可回退
+     */
+    private void drainCallResults(HttpServletResponse response) throws IOException {
+        if (!apiContext.trailingState || apiContext.outputStream.size() < CommonConfig.getInstance().getTrailingCommitSize()) {
+            return;
+        }
+        if (apiContext.apiCalls.size() == 1 && apiContext.apiCalls.get(0).method.returnType == RawString.class) {
+            return;
+        }
+        if (apiContext.directOutput == null) {
+            // 响应头在首次输出前提交
+            writeTokenCookies(response);
+            OutputStream output = response.getOutputStream();
+            if (apiContext.contentEncoding != CompressOutputStream.NONE) {
+                response.setHeader(CONTENT_ENCODING, CompressOutputStream.getName(apiContext.contentEncoding));
+                output = new CompressOutputStream(output, deflaterPool, apiContext.contentEncoding);
             }
-            //设置序列化异常错误码
-            call.resultLen = 0;
-            call.replaceReturnCode(ApiReturnCode.SERIALIZE_FAILED);
-            logger.error("serialize object failed.", e);
+            apiContext.directOutput = output;
+            writeTrailingPrefix(output);
+        }
+        apiContext.outputStream.writeTo(apiContext.directOutput);
+        apiContext.outputStream.reset();
+        apiContext.drainedCallCount = apiContext.serializeCount;
+    }
+
+    private void spliceCallResult(ApiMethodCall call, ForkJoinTask<SegmentedByteOutputStream> task) throws IOException {
+        int oldSize = apiContext.outputStream.size();
+        SegmentedByteOutputStream buffer = null;
+        long start = System.nanoTime();
+        beginMeter();
+        try {
+            try {
+                buffer = task.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+            }
+            if (apiContext.format == SerializeType.JSON && apiContext.serializeCount > 0) {
+                apiContext.outputStream.write(ConstField.JSON_SPLIT);
+            }
+            int from = apiContext.outputStream.size();
+            buffer.writeTo(apiContext.outputStream);
+            call.resultLen = apiContext.outputStream.size() - oldSize;
+            saveLastKnownGood(call, from);
+        } catch (Exception e) {
+            serializeFailed(call, oldSize, e);
         } finally {
+            if (buffer != null) {
+                buffer.reset();
+            }
+            // 线程池中的序列化耗时已由 SerializeTask 记录, 这里只累加等待及拼接的耗时
+            call.serializeNanos += System.nanoTime() - start;
+            endMeter(call);
+            apiContext.timeline.mark(RequestTimeline.SERIALIZED, call.method.methodName);
             apiContext.serializeCount++;
         }
     }
 
+    /**
+     * 将单个接口的返回值序列化到独立的缓冲区中, 缓冲区在拼接完成后归还缓冲池
+     */
+    private static final class SerializeTask implements Callable<SegmentedByteOutputStream> {
+        private final ApiMethodCall call;
+        private final SerializeType format;
+        private final boolean       resourceAccounting;
+
+        SerializeTask(ApiMethodCall call, SerializeType format, boolean resourceAccounting) {
+            this.call = call;
+            this.format = format;
+            this.resourceAccounting = resourceAccounting;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public SegmentedByteOutputStream call() throws Exception {
+            SegmentedByteOutputStream buffer = new SegmentedByteOutputStream(ApiContext.getBufferPool(), 0);
+            long start = System.nanoTime();
+            long cpu = resourceAccounting ? ThreadResourceMeter.cpuNanos() : 0;
+            long alloc = resourceAccounting ? ThreadResourceMeter.allocatedBytes() : 0;
+            try {
+                if (call.staleResult != null) {
+                    buffer.write(call.staleResult);
+                } else if (call.result == null) {
+                    if (call.method.returnType != RawString.class) {
+                        buffer.write(format == SerializeType.XML ? ConstField.XML_EMPTY : ConstField.JSON_EMPTY);
+                    }
+                } else if (format == SerializeType.XML) {
+                    ((Serializer<Object>)call.method.serializer).toXml(call.result, buffer, true);
+                } else {
+                    ((Serializer<Object>)call.method.serializer).toJson(call.result, buffer, true);
+                }
+            } catch (Exception e) {
+                buffer.reset();
+                throw e;
+            } finally {
+                call.serializeNanos = System.nanoTime() - start;
+                if (resourceAccounting) {
+                    // 在拼接前完成, 与请求线程中的累加不会并发
+                    call.cpuNanos += ThreadResourceMeter.cpuNanos() - cpu;
+                    call.allocBytes += ThreadResourceMeter.allocatedBytes() - alloc;
+                }
+            }
+            return buffer;
+        }
+    }
+
     /**
      * 解析参数以及cookie中的信息，这里返回任何预定义的错误信息
      */
@@ -837,17 +1191,17 @@ public class HttpRequestExecutor {
                     logger.error("unsupported callback name : " + jsonpCallback);
                 }
             }
-            MDC.put(CommonParameter.callId, apiContext.cid);
-            MDC.put("_cip", apiContext.clientIP);
+            apiContext.logContext.put(CommonParameter.callId, apiContext.cid);
+            apiContext.logContext.put(LogContext.CLIENT_IP, apiContext.clientIP);
             if (apiContext.deviceIdStr != null) {
-                MDC.put(CommonParameter.deviceId, apiContext.deviceIdStr);
+                apiContext.logContext.put(CommonParameter.deviceId, apiContext.deviceIdStr);
             }
         }
 
         //应用编号,
         {
             apiContext.appid = request.getParameter(CommonParameter.applicationId);
-            MDC.put(CommonParameter.applicationId, apiContext.appid);
+            apiContext.logContext.put(CommonParameter.applicationId, apiContext.appid);
         }
 
         {
@@ -878,7 +1232,7 @@ public class HttpRequestExecutor {
                     } else if (CommonParameter.cookieDeviceId.equals(c.getName())) {
                         if (apiContext.deviceIdStr == null) {
                             apiContext.deviceIdStr = c.getValue();
-                            MDC.put(CommonParameter.deviceId, apiContext.deviceIdStr);
+                            apiContext.logContext.put(CommonParameter.deviceId, apiContext.deviceIdStr);
                         }
                     } else {
                         apiContext.addCookie(c.getName(), c.getValue());
@@ -910,6 +1264,7 @@ public class HttpRequestExecutor {
         // 解析调用者身份(在验证签名正确前此身份不受信任)
         {
             parseCallerInfo(apiContext);
+            apiContext.timeline.mark(RequestTimeline.CALLER_PARSED, null);
         }
     }
 
@@ -917,15 +1272,8 @@ public class HttpRequestExecutor {
      * 构造请求字符串用于日志记录
      */
     private void parseRequestInfo(HttpServletRequest request) {
-        Map<String, String[]> map = request.getParameterMap();
-        apiContext.requestInfo = new HashMap<String, String>();
-        for (String key : map.keySet()) {
-            String[] values = map.get(key);
-            if (values.length > 1) {
-                logger.error("parameter " + key + " has " + values.length + " values " + StringUtils.join(values, "|||"));
-            }
-            apiContext.requestInfo.put(key, (values == null || values.length == 0) ? "" : values[0]);
-        }
+        // 只保留参数表的引用, 输出日志时才拼接请求字符串
+        apiContext.requestParameters = request.getParameterMap();
     }
 
     /**
@@ -952,11 +1300,14 @@ public class HttpRequestExecutor {
         CommonConfig config = CommonConfig.getInstance();
         Future<?>[] futures = new Future[calls.size()];
         RpcContext rpcContext = RpcContext.getContext();
+        AbstractReturnCode rejectCode;
+        HedgeScheduler hedges = null;
         for (int count = 0; count < futures.length; count++) {
             ApiMethodCall call = calls.get(count);
             apiContext.currentCall = call;
-            MDC.put(CommonParameter.method, call.method.methodName);
+            apiContext.logContext.put(CommonParameter.method, call.method.methodName);
             call.startTime = System.currentTimeMillis();
+            beginMeter();
             // 填装服务端隐式传递的参数
             if (call.dependencies != null) {
                 for (int i = 0; i < call.parameters.length; i++) {
@@ -1019,32 +1370,80 @@ public class HttpRequestExecutor {
                     }
                 }
             }
+            apiContext.timeline.mark(RequestTimeline.INJECTED, call.method.methodName);
             // dubbo 在调用结束后不会清除 Future 为了避免拿到之前接口对应的 Future 在这里统一清除
             rpcContext.setFuture(null);
             // 当前接口依赖的授权调用如果失败则将当前接口标记为调用失败
             if (call.dependsAuthCall != null && (call.dependsAuthCall != apiContext.authCall || apiContext.authResult == null)) {
                 call.setReturnCode(ApiReturnCode.SUBSYSTEM_AUTHENTICATION_FAILED);
                 call.costTime = (int)(System.currentTimeMillis() - call.startTime);
+            } else if ((rejectCode = acquirePermits(call)) != null) {
+                if (rejectCode == ApiReturnCode.CIRCUIT_OPEN && call.method.fallbackValue != null) {
+                    // 熔断打开时与静态 mock 一样直接使用声明的降级返回值
+                    call.result = call.method.fallbackValue;
+                    call.substituted = true;
+                    call.setReturnCode(ApiReturnCode.SUCCESS);
+                    call.message.append("fallback&");
+                } else {
+                    // 接口或服务的并发调用数已达上限或熔断打开, 不再等待直接返回
+                    call.setReturnCode(rejectCode);
+                }
+                call.costTime = (int)(System.currentTimeMillis() - call.startTime);
             } else {
                 executeApiCall(rpcContext, call, request, response, null);
                 // 即使打开异步, 该接口还可能被 mock 或被短路
                 if (config.getDubboAsync()) {
                     // 如果配置为异步执行时，该接口恰好短路结果或mock, 此处获得的future为null
                     futures[count] = rpcContext.getFuture();
+                    if (futures[count] == null) {
+                        releasePermits(call, true);
+                    } else if (call.method.hedge != null && rpcContext.getUrl() != null) {
+                        // 分发时即登记对冲时间, 所有调用分发完成后统一计时
+                        call.method.hedge.deposit();
+                        long delay = call.method.hedge.getDelay();
+                        if (delay > 0) {
+                            call.providerAddress = rpcContext.getUrl().getAddress();
+                            if (hedges == null) {
+                                hedges = new HedgeScheduler(futures.length);
+                            }
+                            hedges.schedule(count, futures[count], call.startTime + delay);
+                        }
+                    }
                 } else {
                     call.costTime = (int)(System.currentTimeMillis() - call.startTime);
+                    releasePermits(call, true);
                 }
             }
+            apiContext.timeline.mark(RequestTimeline.DISPATCHED, call.method.methodName);
+            endMeter(call);
         }
+        HedgeWaiter[] waiters = hedges == null ? null : hedgeAll(rpcContext, calls, futures, hedges);
         for (int count = 0; count < futures.length; count++) {
             ApiMethodCall call = calls.get(count);
             ApiMethodInfo info = call.method;
-            MDC.put(CommonParameter.method, info.methodName);
+            apiContext.logContext.put(CommonParameter.method, info.methodName);
+            beginMeter();
             // 等待异步执行返回
             if (futures[count] != null) {
+                if (waiters != null && waiters[count] != null) {
+                    futures[count] = awaitHedge(call, futures[count], waiters[count]);
+                }
                 executeApiCall(rpcContext, call, request, response, futures[count]);
                 // TODO: 通过 future 回调来设置costtime
                 call.costTime = (int)(System.currentTimeMillis() - call.startTime);
+                releasePermits(call, true);
+            }
+            if (info.lastKnownGood && lastKnownGood != null && call.getReturnCode() != ApiReturnCode.SUCCESS.getCode()
+                    && isStaleServable(call.getOriginCode())) {
+                LastKnownGoodStore.Entry entry = lastKnownGood.get(LastKnownGoodStore.key(apiContext, call), System.currentTimeMillis());
+                if (entry != null) {
+                    // 服务不可用时返回最近一次成功的结果, 原始返回值代码仍计入统计和熔断
+                    call.result = null;
+                    call.staleResult = entry.data;
+                    call.staleTime = entry.time;
+                    call.replaceReturnCode(ApiReturnCode.SUCCESS);
+                    call.message.append("stale&");
+                }
             }
             int display = call.getReturnCode();
             if (display > 0) {
@@ -1063,6 +1462,160 @@ public class HttpRequestExecutor {
                     }
                 }
             }
+            apiContext.timeline.mark(RequestTimeline.COMPLETED, info.methodName);
+            endMeter(call);
+        }
+    }
+
+    /**
+     * 依次检查接口的调用速率, 占用接口、所属服务及服务自适应限流的并发许可并检查熔断器, 成功时返回 null, 否则释放已占用的许可并返回对应的返回值代码
+     */
+    private static AbstractReturnCode acquirePermits(ApiMethodCall call) {
+        ApiMethodInfo info = call.method;
+        if (rateLimiter != null && !rateLimiter.allowApi(info.methodName)) {
+            return ApiReturnCode.RATE_LIMITED;
+        }
+        if (!info.bulkhead.tryAcquire()) {
+            return ApiReturnCode.SERVICE_BUSY;
+        }
+        if (info.serviceBulkhead != null && !info.serviceBulkhead.tryAcquire()) {
+            info.bulkhead.release();
+            return ApiReturnCode.SERVICE_BUSY;
+        }
+        if (info.serviceLimiter != null && !info.serviceLimiter.tryAcquire()) {
+            info.bulkhead.release();
+            if (info.serviceBulkhead != null) {
+                info.serviceBulkhead.release();
+            }
+            return ApiReturnCode.ADAPTIVE_LIMITED;
+        }
+        if (info.circuitBreaker != null && (call.circuitPermit = info.circuitBreaker.acquire()) == CircuitBreaker.REJECTED) {
+            info.bulkhead.release();
+            if (info.serviceBulkhead != null) {
+                info.serviceBulkhead.release();
+            }
+            if (info.serviceLimiter != null) {
+                info.serviceLimiter.release(-1);
+            }
+            return ApiReturnCode.CIRCUIT_OPEN;
+        }
+        call.permitAcquired = true;
+        call.dispatchNanos = System.nanoTime();
+        return null;
+    }
+
+    /**
+     * 释放调用占用的并发许可并向熔断器报告调用结果, completed 为 false 时(调用被异常中断)耗时不计入自适应限流, 对熔断器视为失败
+     */
+    private static void releasePermits(ApiMethodCall call, boolean completed) {
+        if (call.permitAcquired) {
+            call.permitAcquired = false;
+            ApiMethodInfo info = call.method;
+            info.bulkhead.release();
+            if (info.serviceBulkhead != null) {
+                info.serviceBulkhead.release();
+            }
+            if (info.serviceLimiter != null) {
+                info.serviceLimiter.release(completed ? System.nanoTime() - call.dispatchNanos : -1);
+            }
+            if (info.circuitBreaker != null) {
+                info.circuitBreaker.record(call.circuitPermit, !completed || isServiceFailure(call.getOriginCode()),
+                        (System.nanoTime() - call.dispatchNanos) / 1000000);
+            }
+        }
+    }
+
+    /**
+     * 是否为服务本身的故障(超时、服务不可用等), 业务返回的错误码不计入熔断
+     */
+    private static boolean isServiceFailure(int code) {
+        return code == ApiReturnCode.DUBBO_SERVICE_TIMEOUT_ERROR.getCode() || code == ApiReturnCode.DUBBO_SERVICE_ERROR.getCode()
+                || code == ApiReturnCode.DUBBO_SERVICE_NOTFOUND_ERROR.getCode() || code == ApiReturnCode.INTERNAL_SERVER_ERROR.getCode();
+    }
+
+    /**
+     * 可以用最近一次成功结果代替的返回值代码: 服务超时、服务异常及熔断打开
+     */
+    private static boolean isStaleServable(int code) {
+        return code == ApiReturnCode.DUBBO_SERVICE_TIMEOUT_ERROR.getCode() || code == ApiReturnCode.DUBBO_SERVICE_ERROR.getCode()
+                || code == ApiReturnCode.CIRCUIT_OPEN.getCode();
+    }
+
+    /**
+     * 请求在前端代理处的排队时间(毫秒), 未设置 X-Request-Start 头时返回-1
+     */
+    private static long getQueueDelay(HttpServletRequest request, long now) {
+        long start = QueueDelayShedder.parseRequestStart(request.getHeader(REQUEST_START));
+        return start < 0 ? -1 : Math.max(0, now - start);
+    }
+
+    /**
+     * 依次等待各调用的对冲时间, 到期时原请求仍未完成则发起对冲, 返回各调用的对冲等待器, 未发起对冲的调用为 null
+     */
+    private HedgeWaiter[] hedgeAll(RpcContext rpcContext, List<ApiMethodCall> calls, Future<?>[] futures, HedgeScheduler hedges) {
+        HedgeWaiter[] waiters = new HedgeWaiter[futures.length];
+        try {
+            int index;
+            while ((index = hedges.next()) >= 0) {
+                waiters[index] = hedge(rpcContext, calls.get(index), futures[index]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return waiters;
+    }
+
+    /**
+     * 在预算允许的情况下向其他服务提供者发起与原请求相同的调用, 返回等待两者中先完成者的等待器, 未发起对冲时返回 null
+     */
+    private HedgeWaiter hedge(RpcContext rpcContext, ApiMethodCall call, Future<?> primary) {
+        HedgePolicy hedge = call.method.hedge;
+        if (!hedge.tryHedge()) {
+            return null;
+        }
+        String[] parameters = call.parameters;
+        if (CompileConfig.isDebug) {
+            // processCall 在调试模式下要求末尾附加两个调试参数
+            parameters = call.parameters == null ? new String[2] : Arrays.copyOf(call.parameters, call.parameters.length + 2);
+        }
+        Future<?> second = null;
+        rpcContext.setFuture(null);
+        rpcContext.setAttachment(ConstField.HEDGE_EXCLUDE, call.providerAddress);
+        try {
+            processCall(call, parameters);
+            second = rpcContext.getFuture();
+        } catch (Throwable t) {
+            // 只有一个服务提供者或未配置重试时对冲请求会被 HedgeConsumerFilter 拒绝, 属于预期的情况
+            if (logger.isDebugEnabled()) {
+                logger.debug("hedged call not sent. " + call.method.methodName + " " + t.getMessage());
+            }
+        } finally {
+            rpcContext.removeAttachment(ConstField.HEDGE_EXCLUDE);
+        }
+        if (second == null) {
+            hedge.cancel();
+            return null;
+        }
+        HedgeWaiter waiter = new HedgeWaiter();
+        waiter.watch(primary);
+        waiter.watch(second);
+        return waiter;
+    }
+
+    /**
+     * 等待原请求与对冲请求中先完成的一个, 另一个请求的结果被忽略
+     */
+    private static Future<?> awaitHedge(ApiMethodCall call, Future<?> primary, HedgeWaiter waiter) {
+        try {
+            Future<?> winner = waiter.await();
+            call.method.hedge.recordResult(winner != primary);
+            if (winner != primary) {
+                call.message.append("hedged&");
+            }
+            return winner;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return primary;
         }
     }
 
@@ -1075,6 +1628,7 @@ public class HttpRequestExecutor {
             // 当接口声明了静态 mock 返回值或被标记为短路时
             if (method.staticMockValue != null) {
                 call.result = method.staticMockValue;
+                call.substituted = true;
             } else {
                 if (future != null) {
                     FutureAdapter<?> fa = (FutureAdapter<?>)future;
@@ -1217,6 +1771,12 @@ public class HttpRequestExecutor {
                         }
                     } else if (ConstField.SERVICE_LOG.equals(entry.getKey())) {
                         call.serviceLog = value;
+                    } else if (ConstField.PROVIDER_COST.equals(entry.getKey())) {
+                        try {
+                            call.providerMicros = Long.parseLong(value);
+                        } catch (NumberFormatException e) {
+                            logger.warn("invalid provider cost. " + value);
+                        }
                     } else if (ConstField.REDIRECT_TO.equals(entry.getKey())) {
                         response.sendRedirect(entry.getValue());
                     } else if (entry.getKey().startsWith(ConstField.SERVICE_PARAM_EXPORT_PREFIX)) {
@@ -1284,10 +1844,45 @@ public class HttpRequestExecutor {
      */
     private Exception output(AbstractReturnCode code, ApiMethodCall[] calls, HttpServletResponse response) {
         Exception outputException = null;
+        CompressOutputStream compressor = null;
 
         try {
+            if (apiContext.directOutput != null) {
+                // 尾部状态布局下已经开始输出, 继续输出剩余的数据及尾部状态
+                OutputStream output = apiContext.directOutput;
+                if (output instanceof CompressOutputStream) {
+                    compressor = (CompressOutputStream)output;
+                }
+                writeTrailingLayout(code, calls, output, true);
+                if (compressor != null) {
+                    compressor.finish();
+                    for (ApiMethodCall call : calls) {
+                        call.method.stats.recordCompress(compressor.getInBytes(), compressor.getOutBytes());
+                    }
+                }
+                return null;
+            }
+            if (code == ApiReturnCode.SUCCESS && apiContext.streamingCall == null && isETagEnabled(calls)) {
+                String etag = computeETag(calls);
+                response.setHeader(ETAG, etag);
+                boolean notModified = matchETag(apiContext.ifNoneMatch, etag);
+                for (ApiMethodCall call : calls) {
+                    call.method.stats.recordETag(notModified);
+                }
+                if (notModified) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return null;
+                }
+            }
+            OutputStream output = response.getOutputStream();
+            // 直接从序列化缓冲区压缩输出到servlet输出流
+            if (apiContext.contentEncoding != CompressOutputStream.NONE
+                    && (apiContext.streamingCall != null || apiContext.outputStream.size() >= CommonConfig.getInstance().getCompressMinSize())) {
+                response.setHeader(CONTENT_ENCODING, CompressOutputStream.getName(apiContext.contentEncoding));
+                compressor = new CompressOutputStream(output, deflaterPool, apiContext.contentEncoding);
+                output = compressor;
+            }
             if (calls.length == 1 && calls[0].method.returnType == RawString.class) {// rawString的处理，将dubbo service返回的结果直接输出
-                OutputStream output = response.getOutputStream();
                 if (code == ApiReturnCode.SUCCESS && calls[0].getReturnCode() == ApiReturnCode.SUCCESS.getCode()) {
                     apiContext.outputStream.writeTo(output);
                 } else if (code != ApiReturnCode.SUCCESS) {
@@ -1295,30 +1890,21 @@ public class HttpRequestExecutor {
                 } else {
                     output.write(calls[0].getReturnMessage().getBytes(ConstField.UTF8));
                 }
-            } else {
-                Response apiResponse = new Response();
-                apiResponse.code = code.getDisplay().getCode();
-                apiResponse.stateList = new ArrayList<CallState>(calls.length);
-                if (apiContext.cid != null) {
-                    apiResponse.cid = apiContext.cid;
+            } else if (apiContext.trailingState) {
+                writeTrailingLayout(code, calls, output, false);
+            } else if (calls.length == 0 && !apiContext.hasNotification() && ErrorEnvelopeCache.accept(apiContext.format, apiContext.cid)) {
+                // 请求被拒绝时直接输出预序列化的响应
+                boolean jsonp = apiContext.format == SerializeType.JSON && apiContext.jsonpCallback != null;
+                if (jsonp) {
+                    output.write(apiContext.jsonpCallback);
+                    output.write(ConstField.JSONP_START);
                 }
-                for (ApiMethodCall call : calls) {
-                    CallState state = new CallState();
-                    state.code = call.getReturnCode();
-                    state.msg = call.getReturnMessage();
-                    if (CompileConfig.isDebug) {
-                        if (call.getReturnCode() != call.getOriginCode()) {
-                            state.msg = state.msg + ":" + call.getOriginCode();// debug模式将实际errorcode外露到msg中
-                        }
-                    }
-                    // TODO: get message i10n
-                    state.length = call.resultLen;
-                    apiResponse.stateList.add(state);
+                ErrorEnvelopeCache.write(code, apiContext.format, apiContext.cid, System.currentTimeMillis(), output);
+                if (jsonp) {
+                    output.write(ConstField.JSONP_END);
                 }
-                apiResponse.systime = System.currentTimeMillis();
-                apiResponse.notificationList = apiContext.getNotifications();
-
-                OutputStream output = response.getOutputStream();
+            } else {
+                Response apiResponse = buildResponse(code, calls);
 
                 switch (apiContext.format) {
                     case XML:
@@ -1343,12 +1929,195 @@ public class HttpRequestExecutor {
                         break;
                 }
             }
+            if (compressor != null) {
+                compressor.finish();
+                for (ApiMethodCall call : calls) {
+                    call.method.stats.recordCompress(compressor.getInBytes(), compressor.getOutBytes());
+                }
+            }
         } catch (Exception e) {
             outputException = e;
+        } finally {
+            if (compressor != null) {
+                compressor.release();
+            }
         }
         return outputException;
     }
 
+    private Response buildResponse(AbstractReturnCode code, ApiMethodCall[] calls) {
+        Response apiResponse = new Response();
+        apiResponse.code = code.getDisplay().getCode();
+        apiResponse.stateList = new ArrayList<CallState>(calls.length);
+        if (apiContext.cid != null) {
+            apiResponse.cid = apiContext.cid;
+        }
+        for (ApiMethodCall call : calls) {
+            CallState state = new CallState();
+            state.code = call.getReturnCode();
+            state.msg = call.getReturnMessage();
+            if (CompileConfig.isDebug) {
+                if (call.getReturnCode() != call.getOriginCode()) {
+                    state.msg = state.msg + ":" + call.getOriginCode();// debug模式将实际errorcode外露到msg中
+                }
+            }
+            // TODO: get message i10n
+            state.length = call.resultLen;
+            if (call.staleResult != null) {
+                state.stale = String.valueOf(call.staleTime);
+            }
+            apiResponse.stateList.add(state);
+        }
+        apiResponse.systime = System.currentTimeMillis();
+        apiResponse.notificationList = apiContext.getNotifications();
+        return apiResponse;
+    }
+
+    private void writeTrailingPrefix(OutputStream output) throws IOException {
+        switch (apiContext.format) {
+            case XML:
+                output.write(ConstField.XML_START);
+                break;
+            case JSON:
+                if (apiContext.jsonpCallback != null) {
+                    output.write(apiContext.jsonpCallback);
+                    output.write(ConstField.JSONP_START);
+                }
+                output.write(ConstField.JSON_TRAILING_START);
+                break;
+        }
+    }
+
+    /**
+     * 尾部状态布局: 先输出各接口的返回值, 再输出返回状态及通知, 流式返回值的长度在输出后即可确定
+     */
+    private void writeTrailingLayout(AbstractReturnCode code, ApiMethodCall[] calls, OutputStream output, boolean prefixWritten)
+            throws IOException {
+        if (!prefixWritten) {
+            writeTrailingPrefix(output);
+        }
+        if (apiContext.streamingCall != null) {
+            streamCallResult(apiContext.streamingCall, output);
+        } else {
+            apiContext.outputStream.writeTo(output);
+        }
+        Response apiResponse = buildResponse(code, calls);
+        switch (apiContext.format) {
+            case XML:
+                apiResponseSerializer.toXml(apiResponse, output, true);
+                output.write(ConstField.XML_END);
+                break;
+            case JSON:
+                output.write(ConstField.JSON_TRAILING_STAT);
+                apiResponseSerializer.toJson(apiResponse, output, true);
+                output.write(ConstField.JSON_TRAILING_END);
+                if (apiContext.jsonpCallback != null) {
+                    output.write(ConstField.JSONP_END);
+                }
+                break;
+        }
+    }
+
+    /**
+     * 将流式返回值逐个元素序列化到http输出流, 不设置Content-Length, 由容器在缓冲区写满时以chunked方式下发。
+     * 元素先写入序列化缓冲区, 超过阈值时在元素之间输出。某个元素序列化失败时丢弃其已写入的部分并正常结束集合,
+     * 由尾部状态返回序列化失败, 保证响应仍是完整的文档
+     */
+    @SuppressWarnings("unchecked")
+    private void streamCallResult(ApiMethodCall call, OutputStream output) throws IOException {
+        ObjectIterableSerializer<Object> serializer = (ObjectIterableSerializer<Object>)call.method.serializer;
+        SegmentedByteOutputStream buffer = apiContext.outputStream;
+        int commitSize = CommonConfig.getInstance().getTrailingCommitSize();
+        long length = 0;
+        long start = System.nanoTime();
+        beginMeter();
+        try {
+            serializer.writeStart(apiContext.format, buffer);
+            int mark = buffer.size();
+            try {
+                boolean first = true;
+                for (Object obj : serializer.values(call.result)) {
+                    serializer.writeItem(apiContext.format, obj, first, buffer);
+                    first = false;
+                    if (buffer.size() >= commitSize) {
+                        length += buffer.size();
+                        buffer.writeTo(output);
+                        buffer.reset();
+                    }
+                    mark = buffer.size();
+                }
+            } catch (RuntimeException e) {
+                buffer.setWriteIndex(mark);
+                call.replaceReturnCode(ApiReturnCode.SERIALIZE_FAILED);
+                logger.error("serialize object failed.", e);
+            }
+            serializer.writeEnd(apiContext.format, buffer);
+            length += buffer.size();
+            buffer.writeTo(output);
+            buffer.reset();
+        } finally {
+            call.serializeNanos += System.nanoTime() - start;
+            endMeter(call);
+            apiContext.timeline.mark(RequestTimeline.SERIALIZED, call.method.methodName);
+            call.resultLen = (int)length;
+        }
+    }
+
+    private static boolean isETagEnabled(ApiMethodCall[] calls) {
+        if (calls.length == 0) {
+            return false;
+        }
+        for (ApiMethodCall call : calls) {
+            if (!call.method.etagEnabled) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 根据输出格式、各调用的返回状态、通知信息以及序列化结果计算弱 ETag, 不包含每次请求都不同的 systime 和 cid
+     */
+    private String computeETag(ApiMethodCall[] calls) {
+        long hash = FnvHashUtil.OFFSET_BASIS;
+        hash = FnvHashUtil.update(hash, apiContext.format.ordinal());
+        if (apiContext.jsonpCallback != null) {
+            hash = FnvHashUtil.update(hash, apiContext.jsonpCallback);
+        }
+        for (ApiMethodCall call : calls) {
+            hash = FnvHashUtil.update(hash, call.getReturnCode());
+            hash = FnvHashUtil.update(hash, call.getReturnMessage());
+            hash = FnvHashUtil.update(hash, call.resultLen);
+        }
+        for (KeyValuePair kv : apiContext.getNotifications()) {
+            hash = FnvHashUtil.update(hash, kv.key);
+            hash = FnvHashUtil.update(hash, kv.value);
+        }
+        hash = apiContext.outputStream.hash(hash);
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private static boolean matchETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // 弱比较, 忽略 W/ 前缀
+        String opaque = etag.substring(2);
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (opaque.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 签名验证，在debug编译的环境中允许使用特定user agent跳过签名验证
      */
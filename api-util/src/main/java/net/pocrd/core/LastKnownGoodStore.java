@@ -0,0 +1,106 @@
+package net.pocrd.core;
+
+import net.pocrd.entity.ApiContext;
+import net.pocrd.entity.ApiMethodCall;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 保存接口最近一次成功调用的序列化结果, 服务超时或异常时返回该结果以降低数据新鲜度为代价保证可用性。
+ * 以 接口名、返回格式、调用者及全部参数 为键, 存放在固定大小的数组中, 每个键可以落在相邻的两个槽位之一,
+ * 都被占用时替换较旧的一个, 因此占用的内存不超过 槽位数 * 单个结果的最大字节数
+ */
+final class LastKnownGoodStore {
+    private static final char SEPARATOR = '\u0001';
+
+    private final int                         mask;
+    private final int                         maxBytes;
+    private final long                        ttl;
+    private final AtomicReferenceArray<Entry> entries;
+    private final LongAdder                   served = new LongAdder();
+
+    static final class Entry {
+        final String key;
+        final byte[] data;
+        final long   time;
+
+        Entry(String key, byte[] data, long time) {
+            this.key = key;
+            this.data = data;
+            this.time = time;
+        }
+    }
+
+    /**
+     * @param size     槽位数, 向上取整为2的幂
+     * @param maxBytes 单个结果的最大字节数, 超过的结果不保存
+     * @param ttl      结果的最长保留时间(毫秒), 超过后不再返回
+     */
+    LastKnownGoodStore(int size, int maxBytes, long ttl) {
+        int n = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+        this.mask = n - 1;
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        this.entries = new AtomicReferenceArray<Entry>(n);
+    }
+
+    /**
+     * 调用结果的键, 包含调用者的用户编号, 避免不同用户之间共享结果
+     */
+    static String key(ApiContext context, ApiMethodCall call) {
+        StringBuilder sb = new StringBuilder(64).append(call.method.methodName).append(SEPARATOR).append(context.format.ordinal())
+                .append(SEPARATOR).append(context.caller == null ? 0 : context.caller.uid);
+        if (call.parameters != null) {
+            for (String p : call.parameters) {
+                sb.append(SEPARATOR).append(p);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 结果长度是否允许保存, 用于在复制数据前过滤
+     */
+    boolean accept(int length) {
+        return length <= maxBytes;
+    }
+
+    void put(String key, byte[] data, long now) {
+        if (data.length > maxBytes) {
+            return;
+        }
+        int slot = key.hashCode() & mask;
+        Entry first = entries.get(slot);
+        Entry second = entries.get(slot ^ 1);
+        // 优先覆盖同一个键, 其次是空位, 最后是较旧的结果
+        if (second != null && second.key.equals(key)) {
+            slot ^= 1;
+        } else if (first != null && !first.key.equals(key) && (second == null || second.time < first.time)) {
+            slot ^= 1;
+        }
+        entries.set(slot, new Entry(key, data, now));
+    }
+
+    /**
+     * 获取未过期的结果, 不存在时返回 null
+     */
+    Entry get(String key, long now) {
+        int slot = key.hashCode() & mask;
+        for (int i = 0; i < 2; i++) {
+            Entry e = entries.get(slot ^ i);
+            if (e != null && e.key.equals(key)) {
+                if (now - e.time > ttl) {
+                    return null;
+                }
+                served.increment();
+                return e;
+            }
+        }
+        return null;
+    }
+
+    long getServedCount() {
+        return served.sum();
+    }
+}
@@ -0,0 +1,294 @@
+package net.pocrd.core;
+
+import com.alibaba.fastjson.JSON;
+import net.pocrd.define.ApiPriority;
+import net.pocrd.define.ConstField;
+import net.pocrd.entity.AccessLogger;
+import net.pocrd.entity.AdaptiveLimiter;
+import net.pocrd.entity.ApiMethodInfo;
+import net.pocrd.entity.ApiMethodStats;
+import net.pocrd.entity.Bulkhead;
+import net.pocrd.entity.HedgePolicy;
+import net.pocrd.util.LatencyHistogram;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 输出各接口的耗时分布及返回值统计, 默认为 prometheus 文本格式, 查询串包含 json 时输出 json。
+ * 耗时单位为微秒, provider 为服务提供方返回的服务内耗时, network 为服务调用耗时中扣除服务内耗时的部分, window=all 为启动以来的累计数据, window=1m 为最近1分钟的滑动窗口数据。查询串包含 slow 时输出上一分钟的慢请求
+ */
+//@WebServlet("/metrics.api")
+public class MetricsServlet extends HttpServlet {
+    private static final long     serialVersionUID       = 1L;
+    private static final String   TEXT_RESP_CONTENT_TYPE = "text/plain; version=0.0.4";
+    private static final String   JSON_RESP_CONTENT_TYPE = "application/json";
+    private static final String   RESP_CHARSET           = "UTF-8";
+    private static final double[] QUANTILES              = new double[] { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] QUANTILE_NAMES         = new String[] { "p50", "p90", "p99", "p999" };
+    private static final String[] LATENCY_TYPES          = new String[] { "total", "rpc", "serialize", "provider", "network" };
+
+    private static volatile ApiManager apiManager;
+
+    /**
+     * 由 HttpRequestExecutor 在初始化时设置
+     */
+    public static void setApiManager(ApiManager manager) {
+        apiManager = manager;
+    }
+
+    private static ApiMethodInfo[] getSortedApiMethodInfos() {
+        ApiManager manager = apiManager;
+        if (manager == null) {
+            return new ApiMethodInfo[0];
+        }
+        ApiMethodInfo[] infos = manager.getApiMethodInfos();
+        Arrays.sort(infos, new Comparator<ApiMethodInfo>() {
+            @Override
+            public int compare(ApiMethodInfo o1, ApiMethodInfo o2) {
+                return o1.methodName.compareTo(o2.methodName);
+            }
+        });
+        return infos;
+    }
+
+    private static LatencyHistogram getHistogram(ApiMethodStats stats, String type) {
+        switch (type) {
+            case "rpc":
+                return stats.rpcLatency;
+            case "serialize":
+                return stats.serializeLatency;
+            case "provider":
+                return stats.providerLatency;
+            case "network":
+                return stats.networkLatency;
+            default:
+                return stats.totalLatency;
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        ApiMethodInfo[] infos = getSortedApiMethodInfos();
+        String queryString = req.getQueryString();
+        byte[] data;
+        resp.setCharacterEncoding(RESP_CHARSET);
+        if (queryString != null && queryString.contains("slow")) {
+            // 上一分钟的慢请求时间线
+            resp.setContentType(JSON_RESP_CONTENT_TYPE);
+            data = JSON.toJSONBytes(HttpRequestExecutor.slowRequestSampler.getLastMinute());
+        } else if (queryString != null && queryString.contains("json")) {
+            resp.setContentType(JSON_RESP_CONTENT_TYPE);
+            data = JSON.toJSONBytes(toJson(infos));
+        } else {
+            resp.setContentType(TEXT_RESP_CONTENT_TYPE);
+            data = toText(infos).getBytes(ConstField.UTF8);
+        }
+        resp.setContentLength(data.length);
+        resp.getOutputStream().write(data);
+    }
+
+    static String toText(ApiMethodInfo[] infos) {
+        StringBuilder sb = new StringBuilder(infos.length * 2048);
+        sb.append("# TYPE api_latency_us summary\n");
+        for (ApiMethodInfo info : infos) {
+            for (String type : LATENCY_TYPES) {
+                LatencyHistogram histogram = getHistogram(info.stats, type);
+                appendSummary(sb, info.methodName, type, "all", histogram.snapshot());
+                appendSummary(sb, info.methodName, type, "1m", histogram.windowSnapshot());
+            }
+        }
+        sb.append("# TYPE api_return_code_total counter\n");
+        for (ApiMethodInfo info : infos) {
+            for (Map.Entry<Integer, Long> e : info.stats.getReturnCodeCount().entrySet()) {
+                sb.append("api_return_code_total{api=\"").append(info.methodName).append("\",code=\"").append(e.getKey()).append("\"} ")
+                        .append(e.getValue()).append('\n');
+            }
+        }
+        sb.append("# TYPE api_compress_ratio gauge\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.stats.compressCount.sum() > 0) {
+                sb.append("api_compress_ratio{api=\"").append(info.methodName).append("\"} ").append(info.stats.getCompressRatio()).append('\n');
+            }
+        }
+        sb.append("# TYPE api_not_modified_rate gauge\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.stats.etagCount.sum() > 0) {
+                sb.append("api_not_modified_rate{api=\"").append(info.methodName).append("\"} ").append(info.stats.getNotModifiedRate())
+                        .append('\n');
+            }
+        }
+        sb.append("# TYPE api_gateway_cpu_us_total counter\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.stats.resourceCount.sum() > 0) {
+                sb.append("api_gateway_cpu_us_total{api=\"").append(info.methodName).append("\"} ").append(info.stats.cpuNanos.sum() / 1000)
+                        .append('\n');
+            }
+        }
+        sb.append("# TYPE api_gateway_alloc_bytes_total counter\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.stats.resourceCount.sum() > 0) {
+                sb.append("api_gateway_alloc_bytes_total{api=\"").append(info.methodName).append("\"} ").append(info.stats.allocBytes.sum())
+                        .append('\n');
+            }
+        }
+        sb.append("# TYPE api_in_flight gauge\n");
+        for (ApiMethodInfo info : infos) {
+            sb.append("api_in_flight{api=\"").append(info.methodName).append("\"} ").append(info.bulkhead.getInFlight()).append('\n');
+        }
+        sb.append("# TYPE api_bulkhead_rejected_total counter\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.bulkhead.getRejectedCount() > 0) {
+                sb.append("api_bulkhead_rejected_total{api=\"").append(info.methodName).append("\"} ").append(info.bulkhead.getRejectedCount())
+                        .append('\n');
+            }
+        }
+        sb.append("# TYPE service_in_flight gauge\n");
+        for (Map.Entry<String, Bulkhead> e : Bulkhead.getServices().entrySet()) {
+            sb.append("service_in_flight{service=\"").append(e.getKey()).append("\"} ").append(e.getValue().getInFlight()).append('\n');
+        }
+        sb.append("# TYPE service_bulkhead_rejected_total counter\n");
+        for (Map.Entry<String, Bulkhead> e : Bulkhead.getServices().entrySet()) {
+            if (e.getValue().getRejectedCount() > 0) {
+                sb.append("service_bulkhead_rejected_total{service=\"").append(e.getKey()).append("\"} ").append(e.getValue().getRejectedCount())
+                        .append('\n');
+            }
+        }
+        sb.append("# TYPE service_adaptive_limit gauge\n");
+        for (Map.Entry<String, AdaptiveLimiter> e : AdaptiveLimiter.getServices().entrySet()) {
+            sb.append("service_adaptive_limit{service=\"").append(e.getKey()).append("\"} ").append(e.getValue().getLimit()).append('\n');
+        }
+        sb.append("# TYPE service_adaptive_rejected_total counter\n");
+        for (Map.Entry<String, AdaptiveLimiter> e : AdaptiveLimiter.getServices().entrySet()) {
+            sb.append("service_adaptive_rejected_total{service=\"").append(e.getKey()).append("\"} ").append(e.getValue().getRejectedCount())
+                    .append('\n');
+        }
+        sb.append("# TYPE api_circuit_state gauge\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.circuitBreaker != null) {
+                sb.append("api_circuit_state{api=\"").append(info.methodName).append("\"} ").append(info.circuitBreaker.getState()).append('\n');
+            }
+        }
+        sb.append("# TYPE api_hedge_total counter\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.hedge != null) {
+                sb.append("api_hedge_total{api=\"").append(info.methodName).append("\"} ").append(info.hedge.getHedgedCount()).append('\n');
+            }
+        }
+        sb.append("# TYPE api_hedge_win_total counter\n");
+        for (ApiMethodInfo info : infos) {
+            if (info.hedge != null) {
+                sb.append("api_hedge_win_total{api=\"").append(info.methodName).append("\"} ").append(info.hedge.getWinCount()).append('\n');
+            }
+        }
+        sb.append("# TYPE api_hedge_budget_exhausted_total counter\n");
+        sb.append("api_hedge_budget_exhausted_total ").append(HedgePolicy.getExhaustedCount()).append('\n');
+        if (HttpRequestExecutor.queueDelayShedder != null) {
+            sb.append("# TYPE api_request_shed_total counter\n");
+            sb.append("api_request_shed_total ").append(HttpRequestExecutor.queueDelayShedder.getShedCount()).append('\n');
+            sb.append("# TYPE api_queue_overloaded gauge\n");
+            sb.append("api_queue_overloaded ").append(HttpRequestExecutor.queueDelayShedder.isOverloaded() ? 1 : 0).append('\n');
+        }
+        if (HttpRequestExecutor.admission != null) {
+            sb.append("# TYPE api_admission_in_flight gauge\n");
+            sb.append("api_admission_in_flight ").append(HttpRequestExecutor.admission.getInFlight()).append('\n');
+            sb.append("# TYPE api_admission_admitted_total counter\n");
+            for (ApiPriority priority : ApiPriority.values()) {
+                sb.append("api_admission_admitted_total{priority=\"").append(priority.name()).append("\"} ")
+                        .append(HttpRequestExecutor.admission.getAdmittedCount(priority)).append('\n');
+            }
+            sb.append("# TYPE api_admission_shed_total counter\n");
+            for (ApiPriority priority : ApiPriority.values()) {
+                sb.append("api_admission_shed_total{priority=\"").append(priority.name()).append("\"} ")
+                        .append(HttpRequestExecutor.admission.getShedCount(priority)).append('\n');
+            }
+        }
+        if (HttpRequestExecutor.lastKnownGood != null) {
+            sb.append("# TYPE api_last_known_good_served_total counter\n");
+            sb.append("api_last_known_good_served_total ").append(HttpRequestExecutor.lastKnownGood.getServedCount()).append('\n');
+        }
+        if (HttpRequestExecutor.rateLimiter != null) {
+            sb.append("# TYPE api_rate_limited_total counter\n");
+            for (Map.Entry<String, Long> e : HttpRequestExecutor.rateLimiter.getRejectedCounts().entrySet()) {
+                sb.append("api_rate_limited_total{dimension=\"").append(e.getKey()).append("\"} ").append(e.getValue()).append('\n');
+            }
+        }
+        sb.append("# TYPE api_access_log_dropped_total counter\n");
+        sb.append("api_access_log_dropped_total ").append(AccessLogger.getDroppedCount()).append('\n');
+        return sb.toString();
+    }
+
+    private static void appendSummary(StringBuilder sb, String api, String type, String window, LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() == 0) {
+            return;
+        }
+        String labels = "api=\"" + api + "\",type=\"" + type + "\",window=\"" + window + "\"";
+        for (double q : QUANTILES) {
+            sb.append("api_latency_us{").append(labels).append(",quantile=\"").append(q).append("\"} ").append(snapshot.getPercentile(q))
+                    .append('\n');
+        }
+        sb.append("api_latency_us_max{").append(labels).append("} ").append(snapshot.getMax()).append('\n');
+        sb.append("api_latency_us_sum{").append(labels).append("} ").append(snapshot.getSum()).append('\n');
+        sb.append("api_latency_us_count{").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+    }
+
+    static List<Map<String, Object>> toJson(ApiMethodInfo[] infos) {
+        List<Map<String, Object>> list = new ArrayList<Map<String, Object>>(infos.length);
+        for (ApiMethodInfo info : infos) {
+            Map<String, Object> api = new LinkedHashMap<String, Object>();
+            api.put("api", info.methodName);
+            for (String type : LATENCY_TYPES) {
+                LatencyHistogram histogram = getHistogram(info.stats, type);
+                Map<String, Object> latency = new LinkedHashMap<String, Object>();
+                latency.put("all", toJson(histogram.snapshot()));
+                latency.put("1m", toJson(histogram.windowSnapshot()));
+                api.put(type, latency);
+            }
+            Map<String, Long> codes = new LinkedHashMap<String, Long>();
+            for (Map.Entry<Integer, Long> e : info.stats.getReturnCodeCount().entrySet()) {
+                codes.put(String.valueOf(e.getKey()), e.getValue());
+            }
+            api.put("returnCode", codes);
+            api.put("compressRatio", info.stats.getCompressRatio());
+            api.put("notModifiedRate", info.stats.getNotModifiedRate());
+            api.put("inFlight", info.bulkhead.getInFlight());
+            api.put("concurrencyLimit", info.bulkhead.getLimit());
+            api.put("bulkheadRejected", info.bulkhead.getRejectedCount());
+            if (info.circuitBreaker != null) {
+                api.put("circuitState", info.circuitBreaker.getState());
+            }
+            if (info.hedge != null) {
+                api.put("hedged", info.hedge.getHedgedCount());
+                api.put("hedgeWinRate", info.hedge.getWinRate());
+            }
+            long resourceCount = info.stats.resourceCount.sum();
+            if (resourceCount > 0) {
+                api.put("gatewayCpuUsPerCall", info.stats.cpuNanos.sum() / 1000.0 / resourceCount);
+                api.put("gatewayAllocBytesPerCall", (double)info.stats.allocBytes.sum() / resourceCount);
+            }
+            list.add(api);
+        }
+        return list;
+    }
+
+    private static Map<String, Object> toJson(LatencyHistogram.Snapshot snapshot) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("count", snapshot.getCount());
+        map.put("sum", snapshot.getSum());
+        map.put("mean", snapshot.getMean());
+        map.put("max", snapshot.getMax());
+        for (int i = 0; i < QUANTILES.length; i++) {
+            map.put(QUANTILE_NAMES[i], snapshot.getPercentile(QUANTILES[i]));
+        }
+        return map;
+    }
+}
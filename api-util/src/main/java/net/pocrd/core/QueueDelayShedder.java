@@ -0,0 +1,78 @@
+package net.pocrd.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根据请求在网关前的排队时间(前端代理写入的 X-Request-Start 到开始处理的时间)丢弃请求, 思路与 CoDel 相同:
+ * 一个统计周期内的最小排队时间超过目标值说明队列持续积压, 此时丢弃排队时间超过目标值的请求;
+ * 未积压时只丢弃排队时间超过一个统计周期的请求。排队时间未知的请求不会被丢弃
+ */
+final class QueueDelayShedder {
+    private final long       target;
+    private final long       interval;
+    private final AtomicLong intervalEnd;
+    private final LongAdder  shed = new LongAdder();
+    private volatile long    minDelay    = Long.MAX_VALUE;
+    private volatile boolean overloaded;
+
+    /**
+     * @param target   目标排队时间(毫秒)
+     * @param interval 统计周期(毫秒)
+     */
+    QueueDelayShedder(long target, long interval) {
+        this.target = target;
+        this.interval = Math.max(interval, target);
+        this.intervalEnd = new AtomicLong(System.currentTimeMillis() + this.interval);
+    }
+
+    /**
+     * 记录请求的排队时间并判断是否需要丢弃, delay 小于0表示排队时间未知
+     */
+    boolean shouldShed(long delay, long now) {
+        if (delay < 0) {
+            return false;
+        }
+        long end = intervalEnd.get();
+        if (now >= end && intervalEnd.compareAndSet(end, now + interval)) {
+            overloaded = minDelay > target;
+            minDelay = delay;
+        } else if (delay < minDelay) {
+            minDelay = delay;
+        }
+        if (delay > (overloaded ? target : interval)) {
+            shed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    boolean isOverloaded() {
+        return overloaded;
+    }
+
+    long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * 解析 X-Request-Start 头, 支持 t=秒.毫秒、t=毫秒 及 t=微秒 三种格式, 返回毫秒时间戳, 无法解析时返回-1
+     */
+    static long parseRequestStart(String header) {
+        if (header == null) {
+            return -1;
+        }
+        String value = header.startsWith("t=") ? header.substring(2) : header;
+        try {
+            int dot = value.indexOf('.');
+            if (dot >= 0) {
+                return (long)(Double.parseDouble(value) * 1000);
+            }
+            long t = Long.parseLong(value);
+            // 16位以上视为微秒
+            return t >= 1000000000000000L ? t / 1000 : t;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
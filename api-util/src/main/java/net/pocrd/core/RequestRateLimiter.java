@@ -0,0 +1,154 @@
+package net.pocrd.core;
+
+import net.pocrd.entity.ApiContext;
+import net.pocrd.entity.TokenBucketTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+
+/**
+ * 按应用编号、设备号、用户或接口名限制请求速率, 规则格式为 dimension[=value]:rate[:burst], 多条规则以逗号分隔。
+ * dimension 为 appid、device、user、api 之一, 不指定 value 时该维度的每个取值各自拥有一个令牌桶,
+ * 指定 value 时只作用于该取值并覆盖同一维度的通用规则。rate 为每秒允许的请求数, burst 默认与 rate 相同。
+ * 例如 device:20:40,user:10,appid=3:2000,api=user.login:100
+ */
+final class RequestRateLimiter {
+    private static final Logger   logger     = LoggerFactory.getLogger(RequestRateLimiter.class);
+    private static final String[] DIMENSIONS = { "appid", "device", "user", "api" };
+    static final         int      APPID      = 0;
+    static final         int      DEVICE     = 1;
+    static final         int      USER       = 2;
+    static final         int      API        = 3;
+
+    private final TokenBucketTable[]                  tables   = new TokenBucketTable[DIMENSIONS.length];
+    private final HashMap<String, TokenBucketTable>[] specific;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private RequestRateLimiter() {
+        specific = new HashMap[DIMENSIONS.length];
+        for (int i = 0; i < specific.length; i++) {
+            specific[i] = new HashMap<String, TokenBucketTable>();
+        }
+    }
+
+    /**
+     * 解析限流规则, 没有有效规则时返回 null
+     *
+     * @param rules     规则列表
+     * @param tableSize 每个维度的令牌桶数量上限, 超出后淘汰最久未访问的令牌桶
+     */
+    static RequestRateLimiter parse(String rules, int tableSize) {
+        if (rules == null || rules.trim().length() == 0) {
+            return null;
+        }
+        RequestRateLimiter limiter = new RequestRateLimiter();
+        boolean empty = true;
+        for (String item : rules.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length < 2 || parts.length > 3) {
+                logger.warn("invalid rate limit config:" + item);
+                continue;
+            }
+            String key = parts[0].trim();
+            String value = null;
+            int eq = key.indexOf('=');
+            if (eq > 0) {
+                value = key.substring(eq + 1).trim();
+                key = key.substring(0, eq).trim();
+            }
+            int dimension = -1;
+            for (int i = 0; i < DIMENSIONS.length; i++) {
+                if (DIMENSIONS[i].equals(key)) {
+                    dimension = i;
+                }
+            }
+            try {
+                int rate = Integer.parseInt(parts[1].trim());
+                int burst = parts.length == 3 ? Integer.parseInt(parts[2].trim()) : rate;
+                if (dimension < 0 || rate <= 0 || (value != null && value.length() == 0)) {
+                    logger.warn("invalid rate limit config:" + item);
+                    continue;
+                }
+                if (value == null) {
+                    limiter.tables[dimension] = new TokenBucketTable(tableSize, rate, burst);
+                } else {
+                    limiter.specific[dimension].put(value, new TokenBucketTable(1, rate, burst));
+                }
+                empty = false;
+            } catch (NumberFormatException e) {
+                logger.warn("invalid rate limit config:" + item);
+            }
+        }
+        return empty ? null : limiter;
+    }
+
+    /**
+     * 检查调用方(应用编号、设备号、用户)的请求速率, 任意一个维度超出限制时返回 false,
+     * 此时退还之前维度已取得的令牌, 被拒绝的请求不占用其他维度的额度
+     */
+    boolean allowClient(ApiContext context) {
+        if (!allow(APPID, context.appid)) {
+            return false;
+        }
+        if (!allow(DEVICE, context.deviceIdStr)) {
+            release(APPID, context.appid);
+            return false;
+        }
+        if (context.caller != null && context.caller.uid != 0 && (tables[USER] != null || specific[USER].size() > 0)
+                && !allow(USER, String.valueOf(context.caller.uid))) {
+            release(DEVICE, context.deviceIdStr);
+            release(APPID, context.appid);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 检查接口的调用速率
+     */
+    boolean allowApi(String name) {
+        return allow(API, name);
+    }
+
+    private boolean allow(int dimension, String value) {
+        if (value == null) {
+            return true;
+        }
+        TokenBucketTable table = specific[dimension].get(value);
+        if (table == null) {
+            table = tables[dimension];
+        }
+        return table == null || table.tryAcquire(value);
+    }
+
+    private void release(int dimension, String value) {
+        if (value == null) {
+            return;
+        }
+        TokenBucketTable table = specific[dimension].get(value);
+        if (table == null) {
+            table = tables[dimension];
+        }
+        if (table != null) {
+            table.release(TokenBucketTable.hash(value));
+        }
+    }
+
+    /**
+     * 各维度被拒绝的请求数
+     */
+    HashMap<String, Long> getRejectedCounts() {
+        HashMap<String, Long> counts = new HashMap<String, Long>();
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            long count = tables[i] == null ? 0 : tables[i].getRejectedCount();
+            for (TokenBucketTable table : specific[i].values()) {
+                count += table.getRejectedCount();
+            }
+            if (tables[i] != null || specific[i].size() > 0) {
+                counts.put(DIMENSIONS[i], count);
+            }
+        }
+        return counts;
+    }
+}
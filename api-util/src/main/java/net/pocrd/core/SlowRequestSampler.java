@@ -0,0 +1,104 @@
+package net.pocrd.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 保留每分钟耗时最长的若干个慢请求, 进入下一分钟后的首个请求负责将上一分钟的记录输出到 net.pocrd.api.slow 日志
+ */
+final class SlowRequestSampler {
+    private static final Logger logger = LoggerFactory.getLogger("net.pocrd.api.slow");
+    private static final long   MINUTE = 60000;
+
+    private final    int          size;
+    private final    long[]       costs;
+    private final    String[]     details;
+    private          int          count;
+    private volatile long         minute;
+    private volatile List<String> lastMinute = Collections.emptyList();
+
+    SlowRequestSampler(int size) {
+        this.size = size < 1 ? 1 : size;
+        this.costs = new long[this.size];
+        this.details = new String[this.size];
+        this.minute = System.currentTimeMillis() / MINUTE;
+    }
+
+    /**
+     * 上一分钟的慢请求记录, 按耗时降序排列
+     */
+    List<String> getLastMinute() {
+        tick();
+        return lastMinute;
+    }
+
+    /**
+     * 检查是否进入新的一分钟, 未跨越分钟时只读取一个 volatile 变量
+     */
+    void tick() {
+        long current = System.currentTimeMillis() / MINUTE;
+        if (current != minute) {
+            roll(current);
+        }
+    }
+
+    private synchronized void roll(long current) {
+        if (current == minute) {
+            return;
+        }
+        List<String> list = new ArrayList<String>(count);
+        // 按耗时降序输出
+        while (count > 0) {
+            int max = 0;
+            for (int i = 1; i < count; i++) {
+                if (costs[i] > costs[max]) {
+                    max = i;
+                }
+            }
+            list.add(details[max]);
+            logger.info(details[max]);
+            count--;
+            costs[max] = costs[count];
+            details[max] = details[count];
+            details[count] = null;
+        }
+        lastMinute = list;
+        minute = current;
+    }
+
+    /**
+     * 该耗时能否进入本分钟的记录, 用于在格式化时间线之前过滤
+     */
+    synchronized boolean accept(long costNanos) {
+        return count < size || costNanos > costs[minIndex()];
+    }
+
+    synchronized void add(long costNanos, String detail) {
+        tick();
+        if (count < size) {
+            costs[count] = costNanos;
+            details[count] = detail;
+            count++;
+        } else {
+            int min = minIndex();
+            if (costNanos > costs[min]) {
+                costs[min] = costNanos;
+                details[min] = detail;
+            }
+        }
+    }
+
+    private int minIndex() {
+        int min = 0;
+        for (int i = 1; i < count; i++) {
+            if (costs[i] < costs[min]) {
+                min = i;
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,23 @@
+package net.pocrd.define;
+
+/**
+ * 请求的优先级, 网关过载时按从低到高的顺序拒绝请求
+ */
+public enum ApiPriority {
+    /**
+     * 核心业务(如下单、支付), 只在达到并发上限时拒绝
+     */
+    CRITICAL,
+    /**
+     * 重要业务
+     */
+    HIGH,
+    /**
+     * 普通业务
+     */
+    NORMAL,
+    /**
+     * 后台同步、预加载等可以延后的请求, 最先被拒绝
+     */
+    LOW
+}
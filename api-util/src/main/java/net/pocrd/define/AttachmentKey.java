@@ -8,4 +8,5 @@ public class AttachmentKey {
     public static final String TRACE_ID  = "traceid";
     public static final String SYS_INFO  = "sysinfo";
     public static final String USER_INFO = "userinfo";
+    public static final String SPAN_ID   = "spanid";
 }
@@ -14,6 +14,9 @@ public class ConstField {
     public static final byte[]  JSON_SPLIT                  = ",".getBytes(UTF8);
     public static final byte[]  JSON_END                    = "]}".getBytes(UTF8);
     public static final byte[]  JSON_EMPTY                  = "{}".getBytes(UTF8);
+    public static final byte[]  JSON_TRAILING_START         = "{\"content\":[".getBytes(UTF8);
+    public static final byte[]  JSON_TRAILING_STAT          = "],\"stat\":".getBytes(UTF8);
+    public static final byte[]  JSON_TRAILING_END           = "}".getBytes(UTF8);
     public static final byte[]  JSONP_START                 = "(".getBytes(UTF8);
     public static final byte[]  JSONP_END                   = ");".getBytes(UTF8);
     public static final String  SET_COOKIE_TOKEN            = "net.pocrd.SET_COOKIE_TOKEN";
@@ -24,4 +27,6 @@ public class ConstField {
     public static final String  MSG                         = "net.pocrd.MSG";
     public static final String  SERVICE_LOG                 = "net.pocrd.SERVICE_LOG";
     public static final String  SERVICE_PARAM_EXPORT_PREFIX = "net.pocrd.SERVICE_PARAM_EXPORT_";
+    public static final String  PROVIDER_COST               = "net.pocrd.PROVIDER_COST";
+    public static final String  HEDGE_EXCLUDE               = "net.pocrd.HEDGE_EXCLUDE";
 }
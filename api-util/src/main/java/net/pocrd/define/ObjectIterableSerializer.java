@@ -0,0 +1,132 @@
+package net.pocrd.define;
+
+import com.alibaba.fastjson.JSON;
+import net.pocrd.entity.ApiReturnCode;
+import net.pocrd.entity.ReturnCodeException;
+import net.pocrd.util.POJOSerializerProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ObjectArrayResp 与 ObjectStreamResp 共用的对象集合序列化, 两者的输出格式相同。
+ * note:PojoSerializer不支持动态类型，要让SerializerProvider支持要写很多恶心的代码，还是直接写java代码了
+ * 流式输出时由调用方依次调用 writeStart, writeItem, writeEnd 逐个元素写入, 元素之间可以分批输出
+ */
+public abstract class ObjectIterableSerializer<T> implements Serializer<T> {
+    private static final byte[][] bs = new byte[12][];
+
+    static {
+        bs[0] = "<ObjectArrayResp>".getBytes(ConstField.UTF8);
+        bs[1] = "<value>".getBytes(ConstField.UTF8);
+        bs[2] = "<item>".getBytes(ConstField.UTF8);
+        bs[3] = "</item>".getBytes(ConstField.UTF8);
+        bs[4] = "</value>".getBytes(ConstField.UTF8);
+        bs[5] = "</ObjectArrayResp>".getBytes(ConstField.UTF8);
+        bs[6] = "<![CDATA[".getBytes(ConstField.UTF8);
+        bs[7] = "]]>".getBytes(ConstField.UTF8);
+        bs[8] = "{\"value\":[".getBytes(ConstField.UTF8);
+        bs[9] = "]}".getBytes(ConstField.UTF8);
+        bs[10] = "null".getBytes(ConstField.UTF8);
+        bs[11] = "<ObjectArrayResp><value>".getBytes(ConstField.UTF8);
+    }
+
+    /**
+     * 集合中的元素, 集合为空时返回 null
+     */
+    public abstract Iterable<?> values(T instance);
+
+    @Override
+    public void toXml(T instance, OutputStream out, boolean isRoot) {
+        if (instance == null) {
+            return;
+        }
+        try {
+            if (isRoot) {
+                out.write(bs[0]);
+            }
+            Iterable<?> value = values(instance);
+            if (value != null) {
+                out.write(bs[1]);
+                for (Object obj : value) {
+                    writeXmlItem(obj, out);
+                }
+                out.write(bs[4]);
+            }
+            if (isRoot) {
+                out.write(bs[5]);
+            }
+        } catch (IOException localIOException) {
+            throw new ReturnCodeException(ApiReturnCode.UNKNOWN_ERROR, localIOException);
+        }
+    }
+
+    /**
+     * 一次 fastjson 调用直接写入输出流, 空值的输出受fastjson全局配置影响
+     */
+    @Override
+    public void toJson(T instance, OutputStream out, boolean isRoot) {
+        try {
+            JSON.writeJSONString(out, instance, EMPTY_FEATURES);
+        } catch (IOException localIOException) {
+            throw new ReturnCodeException(ApiReturnCode.UNKNOWN_ERROR, localIOException);
+        }
+    }
+
+    /**
+     * 流式输出集合的起始部分, 格式与以根节点输出非空集合时相同
+     */
+    public void writeStart(SerializeType format, OutputStream out) throws IOException {
+        out.write(format == SerializeType.XML ? bs[11] : bs[8]);
+    }
+
+    /**
+     * 流式输出集合中的一个元素, 每个元素单独调用一次 fastjson
+     */
+    public void writeItem(SerializeType format, Object obj, boolean first, OutputStream out) throws IOException {
+        if (format == SerializeType.XML) {
+            writeXmlItem(obj, out);
+            return;
+        }
+        if (!first) {
+            out.write(ConstField.JSON_SPLIT);
+        }
+        if (obj == null) {
+            out.write(bs[10]);
+        } else {
+            JSON.writeJSONString(out, obj, EMPTY_FEATURES);
+        }
+    }
+
+    /**
+     * 流式输出集合的结束部分
+     */
+    public void writeEnd(SerializeType format, OutputStream out) throws IOException {
+        if (format == SerializeType.XML) {
+            out.write(bs[4]);
+            out.write(bs[5]);
+        } else {
+            out.write(bs[9]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeXmlItem(Object obj, OutputStream out) throws IOException {
+        out.write(bs[2]);
+        if (obj != null) {
+            if (obj.getClass() == String.class) {
+                out.write(bs[6]);
+                out.write(obj.toString().getBytes(ConstField.UTF8));
+                out.write(bs[7]);
+            } else if (obj.getClass().isEnum()) {
+                out.write(bs[6]);
+                out.write(((Enum)obj).name().getBytes(ConstField.UTF8));
+                out.write(bs[7]);
+            } else {
+                Serializer localSerializer = POJOSerializerProvider.getSerializer(obj.getClass());
+                localSerializer.toXml(obj, out, false);
+            }
+        }
+        out.write(bs[3]);
+    }
+}
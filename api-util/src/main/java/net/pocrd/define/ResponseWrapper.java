@@ -137,6 +137,13 @@ public interface ResponseWrapper {
         }
     };
 
+    public static final ResponseWrapper objectStreamWrapper = new ResponseWrapper() {
+        @Override
+        public Object wrap(Object obj) {
+            return obj == null ? null : ObjectStreamResp.convert((Collection)obj);
+        }
+    };
+
     public static final ResponseWrapper objectWrapper = new ResponseWrapper() {
         @Override
         public Object wrap(Object obj) {
@@ -7,11 +7,13 @@ import net.pocrd.entity.ReturnCodeException;
 import net.pocrd.responseEntity.DynamicEntity;
 import net.pocrd.responseEntity.JSONString;
 import net.pocrd.responseEntity.ObjectArrayResp;
+import net.pocrd.responseEntity.ObjectStreamResp;
 import net.pocrd.util.POJOSerializerProvider;
 import net.pocrd.util.RawString;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 public interface Serializer<T> {
     public static final SerializerFeature[] EMPTY_FEATURES = new SerializerFeature[] {};
@@ -137,7 +139,8 @@ public interface Serializer<T> {
             @Override
             public void toJson(DynamicEntity instance, OutputStream out, boolean isRoot) {
                 try {
-                    out.write(JSON.toJSONBytes(instance));
+                    // 直接写入输出流, 不再生成完整的字节数组
+                    JSON.writeJSONString(out, instance, EMPTY_FEATURES);
                 } catch (IOException localIOException) {
                     throw new ReturnCodeException(ApiReturnCode.UNKNOWN_ERROR, localIOException);
                 }
@@ -145,70 +148,23 @@ public interface Serializer<T> {
         };
     }
 
-    /**
-     * note:PojoSerializer不支持动态类型，要让SerializerProvider支持要写很多恶心的代码，还是直接写java代码了
-     */
     static Serializer<ObjectArrayResp> getObjectArrayRespSerializer() {
-        return new Serializer<ObjectArrayResp>() {
-            byte[][] bs = new byte[8][];
-
-            {
-                bs[0] = "<ObjectArrayResp>".getBytes(ConstField.UTF8);
-                bs[1] = "<value>".getBytes(ConstField.UTF8);
-                bs[2] = "<item>".getBytes(ConstField.UTF8);
-                bs[3] = "</item>".getBytes(ConstField.UTF8);
-                bs[4] = "</value>".getBytes(ConstField.UTF8);
-                bs[5] = "</ObjectArrayResp>".getBytes(ConstField.UTF8);
-                bs[6] = "<![CDATA[".getBytes(ConstField.UTF8);
-                bs[7] = "]]>".getBytes(ConstField.UTF8);
-            }
-
+        return new ObjectIterableSerializer<ObjectArrayResp>() {
             @Override
-            public void toXml(ObjectArrayResp instance, OutputStream out, boolean isRoot) {
-                if (instance == null) {
-                    return;
-                }
-                try {
-                    if (isRoot) {
-                        out.write(bs[0]);
-                    }
-                    if (instance.value != null) {
-                        out.write(bs[1]);
-                        for (Object obj : instance.value) {
-                            out.write(bs[2]);
-                            if (obj != null) {
-                                if (obj.getClass() == String.class) {
-                                    out.write(bs[6]);
-                                    out.write(obj.toString().getBytes(ConstField.UTF8));
-                                    out.write(bs[7]);
-                                } else if (obj.getClass().isEnum()) {
-                                    out.write(bs[6]);
-                                    out.write(((Enum)obj).name().getBytes(ConstField.UTF8));
-                                    out.write(bs[7]);
-                                } else {
-                                    Serializer localSerializer = POJOSerializerProvider.getSerializer(obj.getClass());
-                                    localSerializer.toXml(obj, out, false);
-                                }
-                            }
-                            out.write(bs[3]);
-                        }
-                        out.write(bs[4]);
-                    }
-                    if (isRoot) {
-                        out.write(bs[5]);
-                    }
-                } catch (IOException localIOException) {
-                    throw new ReturnCodeException(ApiReturnCode.UNKNOWN_ERROR, localIOException);
-                }
+            public Iterable<?> values(ObjectArrayResp instance) {
+                return instance.value == null ? null : Arrays.asList(instance.value);
             }
+        };
+    }
 
+    /**
+     * 流式输出的对象集合序列化, 输出格式与 ObjectArrayResp 相同, 遍历元素时不复制为数组
+     */
+    static Serializer<ObjectStreamResp> getObjectStreamRespSerializer() {
+        return new ObjectIterableSerializer<ObjectStreamResp>() {
             @Override
-            public void toJson(ObjectArrayResp instance, OutputStream out, boolean isRoot) {
-                try {
-                    out.write(JSON.toJSONBytes(instance));
-                } catch (IOException localIOException) {
-                    throw new ReturnCodeException(ApiReturnCode.UNKNOWN_ERROR, localIOException);
-                }
+            public Iterable<?> values(ObjectStreamResp instance) {
+                return instance.value;
             }
         };
     }
@@ -0,0 +1,26 @@
+package net.pocrd.dubboext;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.*;
+import net.pocrd.define.ConstField;
+
+/**
+ * 对冲请求需要发往与原请求不同的服务提供者。发起对冲前网关将原请求的提供者地址放入 RpcContext 的附加参数,
+ * 负载均衡选中同一个提供者时此处直接失败, 由 failover 集群策略重新选择其他提供者(要求 retries 大于0)
+ */
+@Activate(group = Constants.CONSUMER)
+public class HedgeConsumerFilter implements Filter {
+    @Override
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        RpcContext context = RpcContext.getContext();
+        String exclude = context.getAttachment(ConstField.HEDGE_EXCLUDE);
+        if (exclude != null) {
+            context.removeAttachment(ConstField.HEDGE_EXCLUDE);
+            if (exclude.equals(invoker.getUrl().getAddress())) {
+                throw new RpcException("hedged request skips provider " + exclude);
+            }
+        }
+        return invoker.invoke(invocation);
+    }
+}
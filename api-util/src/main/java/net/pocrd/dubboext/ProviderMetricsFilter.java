@@ -0,0 +1,176 @@
+package net.pocrd.dubboext;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.*;
+import net.pocrd.define.ConstField;
+import net.pocrd.entity.CommonConfig;
+import net.pocrd.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计 provider 各接口方法的耗时分布、异常数及返回值大小, 定期输出到 net.pocrd.provider.metrics 日志,
+ * 并将本次调用在 provider 内的耗时(微秒)通过 notification 返回给网关, 用于区分网络耗时与服务耗时
+ */
+@Activate(group = Constants.PROVIDER, order = 2)
+public class ProviderMetricsFilter implements Filter {
+    private static final Logger  logger             = LoggerFactory.getLogger(ProviderMetricsFilter.class);
+    private static final Logger  metricsLogger      = LoggerFactory.getLogger("net.pocrd.provider.metrics");
+    private static final long    WINDOW_SLOT_MILLIS = 15000;
+    private static final int     WINDOW_SLOTS       = 4;
+    private static final boolean enabled            = CommonConfig.getInstance().isProviderMetrics();
+
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, MethodStats>> stats
+            = new ConcurrentHashMap<String, ConcurrentHashMap<String, MethodStats>>();
+
+    static {
+        int interval = CommonConfig.getInstance().getProviderMetricsLogInterval();
+        if (enabled && interval > 0) {
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "provider-metrics-reporter");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            reporter.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        logStats();
+                    } catch (Throwable t) {
+                        logger.error("log provider metrics failed.", t);
+                    }
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 接口方法的统计数据
+     */
+    public static final class MethodStats {
+        /**
+         * 调用耗时(微秒)
+         */
+        public final LatencyHistogram latency    = new LatencyHistogram(WINDOW_SLOT_MILLIS, WINDOW_SLOTS);
+
+        /**
+         * 返回异常的调用数
+         */
+        public final LongAdder        errors     = new LongAdder();
+
+        /**
+         * 返回值大小的累计值, 字符串及数组为长度, 集合为元素个数, 其他对象计为1
+         */
+        public final LongAdder        resultSize = new LongAdder();
+
+        void record(long micros, boolean error, long size) {
+            latency.record(micros);
+            if (error) {
+                errors.increment();
+            }
+            resultSize.add(size);
+        }
+    }
+
+    /**
+     * 以 接口名.方法名 为键的统计数据
+     */
+    public static Map<String, MethodStats> getStats() {
+        Map<String, MethodStats> map = new TreeMap<String, MethodStats>();
+        for (Map.Entry<String, ConcurrentHashMap<String, MethodStats>> s : stats.entrySet()) {
+            for (Map.Entry<String, MethodStats> m : s.getValue().entrySet()) {
+                map.put(s.getKey() + "." + m.getKey(), m.getValue());
+            }
+        }
+        return map;
+    }
+
+    private static MethodStats getMethodStats(String service, String method) {
+        ConcurrentHashMap<String, MethodStats> methods = stats.get(service);
+        if (methods == null) {
+            ConcurrentHashMap<String, MethodStats> m = new ConcurrentHashMap<String, MethodStats>();
+            methods = stats.putIfAbsent(service, m);
+            if (methods == null) {
+                methods = m;
+            }
+        }
+        MethodStats ms = methods.get(method);
+        if (ms == null) {
+            MethodStats m = new MethodStats();
+            ms = methods.putIfAbsent(method, m);
+            if (ms == null) {
+                ms = m;
+            }
+        }
+        return ms;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof CharSequence) {
+            return ((CharSequence)value).length();
+        } else if (value instanceof Collection) {
+            return ((Collection<?>)value).size();
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>)value).size();
+        } else if (value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return 1;
+    }
+
+    private static void logStats() {
+        for (Map.Entry<String, MethodStats> e : getStats().entrySet()) {
+            MethodStats ms = e.getValue();
+            LatencyHistogram.Snapshot all = ms.latency.snapshot();
+            LatencyHistogram.Snapshot window = ms.latency.windowSnapshot();
+            metricsLogger.info(e.getKey() + " count:" + all.getCount() + " error:" + ms.errors.sum() + " avgSize:" + (all.getCount() == 0 ? 0 :
+                    ms.resultSize.sum() / all.getCount()) + " 1m.count:" + window.getCount() + " 1m.p50:" + window.getPercentile(0.5) + " 1m.p99:"
+                    + window.getPercentile(0.99) + " 1m.max:" + window.getMax());
+        }
+    }
+
+    @Override
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        if (!enabled) {
+            return invoker.invoke(invocation);
+        }
+        long start = System.nanoTime();
+        Result res = null;
+        try {
+            res = invoker.invoke(invocation);
+            return res;
+        } finally {
+            long micros = (System.nanoTime() - start) / 1000;
+            boolean error = res == null || res.hasException();
+            getMethodStats(invoker.getInterface().getName(), invocation.getMethodName()).record(micros, error, error ? 0 : sizeOf(res.getValue()));
+            if (res != null) {
+                Map<String, String> notifications = res.getNotifications();
+                if (notifications == null && res instanceof RpcResult) {
+                    notifications = new HashMap<String, String>();
+                    ((RpcResult)res).setNotifications(notifications);
+                }
+                if (notifications != null) {
+                    notifications.put(ConstField.PROVIDER_COST, String.valueOf(micros));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package net.pocrd.dubboext;
+
+import net.pocrd.define.ConstField;
+import net.pocrd.entity.CommonConfig;
+import net.pocrd.util.MpscRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * dubbo 调用的 span 记录器, 调用线程将 span 写入环形缓冲区的预分配槽位, 由后台线程写入 span.log, 空闲线程的 span 不会滞留。
+ * 每行一个 span, 以 tab 分隔: traceid spanid parentid kind(C/P) service.method 开始时间(微秒) 耗时(微秒) 是否异常(0/1)。
+ * 采样在调用起始点决定, 下游通过是否收到 spanid 判断是否需要记录
+ */
+public final class SpanRecorder {
+    private static final Logger logger           = LoggerFactory.getLogger(SpanRecorder.class);
+    public static final  char   CONSUMER         = 'C';
+    public static final  char   PROVIDER         = 'P';
+    private static final int    BUFFER_SIZE      = 64 * 1024;
+    private static final int    BATCH_SIZE       = 256;
+    private static final long   IDLE_PARK_NANOS  = 1000000L;
+    private static final long   FLUSH_IDLE_NANOS = 100000000L;
+
+    private static final double sampleRate = CommonConfig.getInstance().getTraceSampleRate();
+
+    /**
+     * 预分配的 span 槽位
+     */
+    private static final class Span {
+        String  traceId;
+        long    spanId;
+        long    parentId;
+        char    kind;
+        String  service;
+        String  method;
+        long    start;
+        long    duration;
+        boolean error;
+
+        void clear() {
+            traceId = null;
+            service = null;
+            method = null;
+        }
+    }
+
+    private SpanRecorder() {
+    }
+
+    public static boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    /**
+     * 在调用起始点决定本次调用链是否采样
+     */
+    public static boolean sample() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public static long nextSpanId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * 解析 attachment 中的 spanid, 格式错误时返回0
+     */
+    public static long parseSpanId(String id) {
+        if (id == null || id.length() == 0 || id.length() > 16) {
+            return 0;
+        }
+        try {
+            return Long.parseUnsignedLong(id, 16);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 因后台线程来不及处理而丢弃的 span 数
+     */
+    public static long getDroppedCount() {
+        return ExporterHolder.exporter.buffer.getDroppedCount();
+    }
+
+    /**
+     * 记录一个 span, 缓冲区满时丢弃并计数
+     *
+     * @param startMicros   开始时间(epoch 微秒)
+     * @param durationNanos 耗时(纳秒)
+     */
+    public static void record(String traceId, long spanId, long parentId, char kind, String service, String method, long startMicros,
+            long durationNanos, boolean error) {
+        MpscRingBuffer<Span> buffer = ExporterHolder.exporter.buffer;
+        long seq = buffer.tryClaim();
+        if (seq < 0) {
+            return;
+        }
+        Span span = buffer.get(seq);
+        span.traceId = traceId;
+        span.spanId = spanId;
+        span.parentId = parentId;
+        span.kind = kind;
+        span.service = service;
+        span.method = method;
+        span.start = startMicros;
+        span.duration = durationNanos / 1000;
+        span.error = error;
+        buffer.publish(seq);
+    }
+
+    private static final class ExporterHolder {
+        static final Exporter exporter = new Exporter();
+    }
+
+    /**
+     * 将 span 写入 span.log 的后台线程, 进程退出时输出缓冲区中剩余的 span
+     */
+    private static final class Exporter implements Runnable {
+        private final MpscRingBuffer<Span> buffer;
+        private final ByteBuffer           out  = ByteBuffer.allocateDirect(64 * 1024);
+        private final StringBuilder        line = new StringBuilder(256);
+        private final Thread               thread;
+        private       FileChannel          channel;
+        private volatile boolean running = true;
+
+        Exporter() {
+            buffer = new MpscRingBuffer<Span>(BUFFER_SIZE, new MpscRingBuffer.SlotFactory<Span>() {
+                @Override
+                public Span newSlot() {
+                    return new Span();
+                }
+            });
+            String path = CommonConfig.getInstance().getTraceSpanPath();
+            try {
+                File dir = new File(path);
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("create span log path failed. path:" + path);
+                }
+                channel = FileChannel.open(new File(dir, "span.log").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.error("open span log failed.", e);
+            }
+            thread = new Thread(this, "span-exporter");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                }
+            }, "span-exporter-shutdown"));
+        }
+
+        @Override
+        public void run() {
+            long idleSince = 0;
+            while (running) {
+                if (drain() > 0) {
+                    idleSince = 0;
+                    continue;
+                }
+                long now = System.nanoTime();
+                if (idleSince == 0) {
+                    idleSince = now;
+                } else if (now - idleSince > FLUSH_IDLE_NANOS && out.position() > 0) {
+                    flush();
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        private int drain() {
+            int n = 0;
+            Span span;
+            while (n < BATCH_SIZE && (span = buffer.poll()) != null) {
+                try {
+                    if (channel != null) {
+                        write(span);
+                    }
+                } catch (Throwable t) {
+                    logger.error("export span failed.", t);
+                } finally {
+                    span.clear();
+                    buffer.release();
+                }
+                n++;
+            }
+            return n;
+        }
+
+        private void write(Span span) throws IOException {
+            StringBuilder sb = line;
+            sb.setLength(0);
+            sb.append(span.traceId).append('\t').append(Long.toHexString(span.spanId)).append('\t').append(Long.toHexString(span.parentId))
+                    .append('\t').append(span.kind).append('\t').append(span.service).append('.').append(span.method).append('\t')
+                    .append(span.start).append('\t').append(span.duration).append('\t').append(span.error ? '1' : '0').append('\n');
+            byte[] bytes = sb.toString().getBytes(ConstField.UTF8);
+            if (bytes.length > out.remaining()) {
+                flush();
+            }
+            out.put(bytes, 0, Math.min(bytes.length, out.remaining()));
+        }
+
+        private void flush() {
+            if (channel == null || out.position() == 0) {
+                return;
+            }
+            out.flip();
+            try {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            } catch (IOException e) {
+                logger.error("flush span log failed.", e);
+            } finally {
+                out.clear();
+            }
+        }
+
+        /**
+         * 停止后台线程并输出剩余的 span
+         */
+        void close() {
+            running = false;
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                // 后台线程未能及时退出, 不再并发消费
+                return;
+            }
+            while (drain() > 0) {
+            }
+            flush();
+        }
+    }
+}
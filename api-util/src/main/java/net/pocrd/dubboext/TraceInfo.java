@@ -9,10 +9,19 @@ public class TraceInfo {
     public TraceInfo() {
     }
 
+    /**
+     * 调用起始点使用, 在此决定整个调用链是否采样
+     */
     public TraceInfo(String traceid, String sysinfo, String userinfo) {
+        this(traceid, sysinfo, userinfo, 0, SpanRecorder.sample());
+    }
+
+    public TraceInfo(String traceid, String sysinfo, String userinfo, long spanid, boolean sampled) {
         this.traceid = traceid;
         this.sysinfo = sysinfo;
         this.userinfo = userinfo;
+        this.spanid = spanid;
+        this.sampled = sampled;
     }
 
     /**
@@ -30,6 +39,16 @@ public class TraceInfo {
      */
     public String userinfo;
 
+    /**
+     * 当前所在的 span 编号, 作为下游调用的父编号, 0表示调用起始点
+     */
+    public long spanid;
+
+    /**
+     * 本次调用链是否采样记录 span
+     */
+    public boolean sampled;
+
     public static void setTraceInfo(TraceInfo tinfo) {
         info.set(tinfo);
     }
@@ -2,12 +2,16 @@ package net.pocrd.dubboext;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.rpc.*;
+import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
 import net.pocrd.define.AttachmentKey;
 import net.pocrd.entity.CompileConfig;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * Created by rendong on 2017/7/11.
@@ -16,16 +20,89 @@ import java.util.Map;
 public class TraceInfoConsumerFilter implements Filter {
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(TraceInfoProviderFilter.class);
 
+    /**
+     * 异步调用在返回时记录 span, 并继续调用原有的 callback
+     */
+    private static final class SpanCallback implements ResponseCallback {
+        private final ResponseCallback callback;
+        private final TraceInfo        traceInfo;
+        private final long             spanId;
+        private final String           service;
+        private final String           method;
+        private final long             startMicros;
+        private final long             startNanos;
+
+        SpanCallback(ResponseCallback callback, TraceInfo traceInfo, long spanId, String service, String method, long startMicros,
+                long startNanos) {
+            this.callback = callback;
+            this.traceInfo = traceInfo;
+            this.spanId = spanId;
+            this.service = service;
+            this.method = method;
+            this.startMicros = startMicros;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void done(Object response) {
+            record(response instanceof Result && ((Result)response).hasException());
+            if (callback != null) {
+                callback.done(response);
+            }
+        }
+
+        @Override
+        public void caught(Throwable exception) {
+            record(true);
+            if (callback != null) {
+                callback.caught(exception);
+            }
+        }
+
+        private void record(boolean error) {
+            SpanRecorder.record(traceInfo.traceid, spanId, traceInfo.spanid, SpanRecorder.CONSUMER, service, method, startMicros,
+                    System.nanoTime() - startNanos, error);
+        }
+    }
+
     @Override
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         TraceInfo traceInfo = TraceInfo.getTraceInfo();
+        long spanId = 0;
         if (traceInfo != null) {
             RpcContext context = RpcContext.getContext();
             context.setAttachment(AttachmentKey.TRACE_ID, traceInfo.traceid);
             context.setAttachment(AttachmentKey.SYS_INFO, traceInfo.sysinfo);
             context.setAttachment(AttachmentKey.USER_INFO, traceInfo.userinfo);
+            if (traceInfo.sampled) {
+                spanId = SpanRecorder.nextSpanId();
+                context.setAttachment(AttachmentKey.SPAN_ID, Long.toHexString(spanId));
+            }
         }
-        Result res = invoker.invoke(invocation);
+        if (spanId == 0) {
+            return logNotifications(invoker.invoke(invocation));
+        }
+        long startMicros = System.currentTimeMillis() * 1000;
+        long startNanos = System.nanoTime();
+        String service = invoker.getInterface().getName();
+        Result res = null;
+        try {
+            res = invoker.invoke(invocation);
+        } finally {
+            Future<?> future = RpcContext.getContext().getFuture();
+            if (res != null && future instanceof FutureAdapter) {
+                // 异步调用在此只完成了发送, 在返回时再记录
+                ResponseFuture rf = ((FutureAdapter<?>)future).getFuture();
+                rf.setCallback(new SpanCallback(rf.getCallback(), traceInfo, spanId, service, invocation.getMethodName(), startMicros, startNanos));
+            } else {
+                SpanRecorder.record(traceInfo.traceid, spanId, traceInfo.spanid, SpanRecorder.CONSUMER, service, invocation.getMethodName(),
+                        startMicros, System.nanoTime() - startNanos, res == null || res.hasException());
+            }
+        }
+        return logNotifications(res);
+    }
+
+    private Result logNotifications(Result res) {
         if (CompileConfig.isDebug) {
             if (res.getNotifications() != null && res.getNotifications().size() > 0) {
                 StringBuilder sb = new StringBuilder("got sync notifications ----> ");
@@ -66,8 +66,24 @@ public class TraceInfoProviderFilter implements Filter {
         String sysinfo = invocation.getAttachment(AttachmentKey.SYS_INFO);
         String userinfo = invocation.getAttachment(AttachmentKey.USER_INFO);
         put(CommonParameter.callId, traceid);
-        TraceInfo.setTraceInfo(new TraceInfo(traceid, sysinfo, userinfo));
-        Result res = invoker.invoke(invocation);
+        // 上游传入 spanid 表示该调用链被采样
+        long parentId = SpanRecorder.isEnabled() ? SpanRecorder.parseSpanId(invocation.getAttachment(AttachmentKey.SPAN_ID)) : 0;
+        long spanId = parentId == 0 ? 0 : SpanRecorder.nextSpanId();
+        TraceInfo.setTraceInfo(new TraceInfo(traceid, sysinfo, userinfo, spanId, spanId != 0));
+        Result res;
+        if (spanId == 0) {
+            res = invoker.invoke(invocation);
+        } else {
+            long startMicros = System.currentTimeMillis() * 1000;
+            long startNanos = System.nanoTime();
+            res = null;
+            try {
+                res = invoker.invoke(invocation);
+            } finally {
+                SpanRecorder.record(traceid, spanId, parentId, SpanRecorder.PROVIDER, invoker.getInterface().getName(), invocation.getMethodName(),
+                        startMicros, System.nanoTime() - startNanos, res == null || res.hasException());
+            }
+        }
         if (CompileConfig.isDebug) {
             if (res.getNotifications() != null && res.getNotifications().size() > 0) {
                 StringBuilder sb = new StringBuilder("set sync notifications ----> ");
@@ -8,10 +8,13 @@ import org.slf4j.LoggerFactory;
  * api访问日志
  */
 public final class AccessLogger {
-    private static       Logger       accessFileLogger  = LoggerFactory.getLogger("net.pocrd.api.access");
-    private static       Logger       requestFileLogger = LoggerFactory.getLogger("net.pocrd.api.request");
-    public static final  String       ACCESS_SPLITTER   = new String(new char[] { ' ', 1 });
-    private static final AccessLogger accessLogger      = new AccessLogger();
+    private static       Logger               accessFileLogger  = LoggerFactory.getLogger("net.pocrd.api.access");
+    private static       Logger               requestFileLogger = LoggerFactory.getLogger("net.pocrd.api.request");
+    public static final  String               ACCESS_SPLITTER   = new String(new char[] { ' ', 1 });
+    private static final AccessLogger         accessLogger      = new AccessLogger();
+    private static final boolean              logResource       = CommonConfig.getInstance().getResourceAccounting()
+            && CommonConfig.getInstance().getResourceAccountingLog();
+    private static final AsyncAccessLogWriter asyncWriter       = createAsyncWriter();
 
     public static AccessLogger getInstance() {
         return accessLogger;
@@ -20,11 +23,35 @@ public final class AccessLogger {
     private AccessLogger() {
     }
 
+    private static AsyncAccessLogWriter createAsyncWriter() {
+        CommonConfig config = CommonConfig.getInstance();
+        if (!config.getAccessLogAsync()) {
+            return null;
+        }
+        try {
+            return new AsyncAccessLogWriter(config.getAccessLogPath(), config.getAccessLogBufferSize(), logResource);
+        } catch (Exception e) {
+            LoggerFactory.getLogger(AccessLogger.class).error("init async access log failed, use logback instead.", e);
+            return null;
+        }
+    }
+
+    /**
+     * 异步访问日志因缓冲区满而丢弃的日志数
+     */
+    public static long getDroppedCount() {
+        return asyncWriter == null ? 0 : asyncWriter.getDroppedCount();
+    }
+
     /**
      * no error
      */
     public void logRequest() {
         ApiContext apiContext = HttpRequestExecutor.get().getApiContext();
+        if (asyncWriter != null) {
+            asyncWriter.logRequest(apiContext, null, null);
+            return;
+        }
         requestFileLogger.info(apiContext.getRequestString() + ACCESS_SPLITTER + apiContext.agent + ACCESS_SPLITTER
                 + apiContext.clientIP + ACCESS_SPLITTER + apiContext.token + ACCESS_SPLITTER + ACCESS_SPLITTER + ACCESS_SPLITTER
                 + "referer:" + apiContext.referer + ACCESS_SPLITTER + apiContext.startTime + ":" + apiContext.costTime);
@@ -39,6 +66,10 @@ public final class AccessLogger {
      */
     public void logRequest(String errorMsg, String data) {
         ApiContext apiContext = HttpRequestExecutor.get().getApiContext();
+        if (asyncWriter != null) {
+            asyncWriter.logRequest(apiContext, errorMsg, data);
+            return;
+        }
         requestFileLogger.info(apiContext.getRequestString() + ACCESS_SPLITTER + apiContext.agent + ACCESS_SPLITTER
                 + apiContext.clientIP + ACCESS_SPLITTER + apiContext.token + ACCESS_SPLITTER + errorMsg + ACCESS_SPLITTER + data + ACCESS_SPLITTER
                 + "referer:" + apiContext.referer + ACCESS_SPLITTER + apiContext.startTime + ":" + apiContext.costTime);
@@ -48,9 +79,14 @@ public final class AccessLogger {
      * 打印业务访问日志
      */
     public void logAccess(ApiMethodCall call) {
+        if (asyncWriter != null) {
+            asyncWriter.logAccess(call);
+            return;
+        }
         accessFileLogger.info(call.costTime + ACCESS_SPLITTER + call.method.methodName + ACCESS_SPLITTER + call.getReturnCode() + ACCESS_SPLITTER
                 + call.getOriginCode() + ACCESS_SPLITTER + call.resultLen + ACCESS_SPLITTER + call.message.toString() + ACCESS_SPLITTER
-                + call.startTime + ":" + (call.serviceLog == null ? "" : call.serviceLog));
+                + call.startTime + ":" + (call.serviceLog == null ? "" : call.serviceLog)
+                + (logResource ? ACCESS_SPLITTER + (call.cpuNanos / 1000) + ":" + call.allocBytes : ""));
     }
 
 }
@@ -0,0 +1,152 @@
+package net.pocrd.entity;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根据调用耗时自动调整并发上限的限流器(gradient 算法)。
+ * 每个统计周期结束时以 单次调用的最小耗时 / 周期内平均耗时 作为梯度调整上限: 耗时接近最小耗时时上限逐步增长, 耗时上升时上限按比例收缩,
+ * 从而在后端过载时让排队发生在网关而不是后端。统计周期内的样本以 LongAdder 累加, 跨越周期的线程负责计算新的上限
+ */
+public final class AdaptiveLimiter {
+    private static final long   WINDOW_NANOS     = 100000000L;
+    private static final int    MIN_SAMPLES      = 10;
+    private static final long   MIN_RTT_RESET    = 30000000000L;
+    private static final double RTT_TOLERANCE    = 1.5;
+    private static final double SMOOTHING        = 0.2;
+    private static final double MIN_GRADIENT     = 0.5;
+
+    /**
+     * 以 dubbo 接口名为键的限流器
+     */
+    private static final ConcurrentHashMap<String, AdaptiveLimiter> services = new ConcurrentHashMap<String, AdaptiveLimiter>();
+
+    private final    int           minLimit;
+    private final    int           maxLimit;
+    private final    AtomicInteger inFlight     = new AtomicInteger();
+    private final    LongAdder     rejected     = new LongAdder();
+    private final    LongAdder     rttSum       = new LongAdder();
+    private final    LongAdder     rttCount     = new LongAdder();
+    private final    AtomicLong    windowStart  = new AtomicLong(System.nanoTime());
+    private volatile int           maxInFlight;
+    private volatile long          windowMinRtt = Long.MAX_VALUE;
+    private volatile double        limit;
+    private          long          minRtt       = Long.MAX_VALUE;
+    private          long          minRttSince  = System.nanoTime();
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 获取 dubbo 接口对应的限流器, 初始值及上下限取自 net.pocrd.adaptiveLimit* 配置
+     */
+    public static AdaptiveLimiter forService(String name) {
+        AdaptiveLimiter limiter = services.get(name);
+        if (limiter == null) {
+            CommonConfig config = CommonConfig.getInstance();
+            AdaptiveLimiter l = new AdaptiveLimiter(config.getAdaptiveLimitInitial(), config.getAdaptiveLimitMin(), config.getAdaptiveLimitMax());
+            limiter = services.putIfAbsent(name, l);
+            if (limiter == null) {
+                limiter = l;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * 已创建的限流器
+     */
+    public static Map<String, AdaptiveLimiter> getServices() {
+        return new TreeMap<String, AdaptiveLimiter>(services);
+    }
+
+    /**
+     * 占用一个许可, 正在执行的调用数已达当前上限时返回 false
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int)limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > maxInFlight) {
+                    maxInFlight = current + 1;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放许可并记录本次调用的耗时, rttNanos 小于0时只释放不记录(如调用未完成即被中断)
+     */
+    public void release(long rttNanos) {
+        inFlight.decrementAndGet();
+        if (rttNanos < 0) {
+            return;
+        }
+        rttSum.add(rttNanos);
+        rttCount.increment();
+        if (rttNanos < windowMinRtt) {
+            windowMinRtt = rttNanos;
+        }
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && rttCount.sum() >= MIN_SAMPLES && windowStart.compareAndSet(start, now)) {
+            update(now);
+        }
+    }
+
+    /**
+     * 只有成功切换统计周期的线程会进入, 无需加锁
+     */
+    private void update(long now) {
+        long count = rttCount.sumThenReset();
+        long sum = rttSum.sumThenReset();
+        int peak = maxInFlight;
+        maxInFlight = inFlight.get();
+        long windowMin = windowMinRtt;
+        windowMinRtt = Long.MAX_VALUE;
+        if (count == 0) {
+            return;
+        }
+        long rtt = Math.max(1, sum / count);
+        // 定期重置最小耗时, 以适应后端性能的长期变化
+        if (now - minRttSince > MIN_RTT_RESET) {
+            minRtt = windowMin;
+            minRttSince  = now;
+        } else if (windowMin < minRtt) {
+            minRtt = windowMin;
+        }
+        double current = limit;
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, RTT_TOLERANCE * minRtt / rtt));
+        double next = current * gradient + Math.sqrt(current);
+        // 并发数未达到上限的一半时说明上限不是瓶颈, 不再继续增长
+        if (peak * 2 < current) {
+            next = Math.min(next, current);
+        }
+        next = current * (1 - SMOOTHING) + next * SMOOTHING;
+        limit = Math.min(maxLimit, Math.max(minLimit, next));
+    }
+
+    public int getLimit() {
+        return (int)limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
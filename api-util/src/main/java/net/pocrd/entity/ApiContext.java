@@ -1,17 +1,21 @@
 package net.pocrd.entity;
 
-import com.alibaba.dubbo.rpc.protocol.thrift.io.RandomAccessByteArrayOutputStream;
 import net.pocrd.core.LocalException;
 import net.pocrd.define.SerializeType;
 import net.pocrd.responseEntity.AuthenticationResult;
 import net.pocrd.responseEntity.KeyValuePair;
+import net.pocrd.util.ByteSegmentPool;
+import net.pocrd.util.CompressOutputStream;
+import net.pocrd.util.SegmentedByteOutputStream;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,48 +55,104 @@ public class ApiContext {
     public ApiMethodCall currentCall = null;
 
     /**
-     * 访问信息
+     * 请求级别的日志上下文
      */
-    public Map<String, String> requestInfo;
+    public final LogContext logContext = new LogContext();
+
+    /**
+     * 请求参数, 直接引用容器中的参数表, 仅在输出日志时才拼接为请求字符串, 请求结束后不能再访问
+     */
+    public Map<String, String[]> requestParameters;
+
+    /**
+     * 在日志中忽略的参数名
+     */
+    private String[] ignoredParameters = new String[4];
+    private int      ignoredCount      = 0;
 
     /**
      * 在日志记录中忽略敏感信息
      */
     public final void ignoreParameterForSecurity(String key) {
-        if (requestInfo != null) {
-            requestInfo.remove(key);
+        if (key == null || isIgnoredParameter(key)) {
+            return;
+        }
+        if (ignoredCount == ignoredParameters.length) {
+            ignoredParameters = Arrays.copyOf(ignoredParameters, ignoredCount << 1);
         }
+        ignoredParameters[ignoredCount++] = key;
+    }
+
+    private boolean isIgnoredParameter(String key) {
+        for (int i = 0; i < ignoredCount; i++) {
+            if (ignoredParameters[i].equals(key)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public final String recoverRequestBody() {
         StringBuilder sb = new StringBuilder(100);
-        if (requestInfo != null) {
+        appendRequestBody(sb, captureRequestParameters());
+        return sb.toString();
+    }
+
+    public final String getRequestString() {
+        StringBuilder sb = new StringBuilder(100);
+        appendRequestString(sb, isSSL, host, captureRequestParameters());
+        return sb.toString();
+    }
+
+    /**
+     * 复制需要记录的参数名及参数值(依次存放), 不做编码, 供请求结束后(如异步日志线程中)拼接请求字符串
+     */
+    public final String[] captureRequestParameters() {
+        if (requestParameters == null) {
+            return null;
+        }
+        String[] pairs = new String[requestParameters.size() << 1];
+        int size = 0;
+        for (Map.Entry<String, String[]> entry : requestParameters.entrySet()) {
+            String key = entry.getKey();
+            if (key == null || isIgnoredParameter(key)) {
+                continue;
+            }
+            String[] values = entry.getValue();
+            if (values != null && values.length > 1) {
+                logger.error("parameter " + key + " has " + values.length + " values " + StringUtils.join(values, "|||"));
+            }
+            pairs[size++] = key;
+            pairs[size++] = (values == null || values.length == 0) ? "" : values[0];
+        }
+        return size == pairs.length ? pairs : Arrays.copyOf(pairs, size);
+    }
+
+    /**
+     * 将 captureRequestParameters 得到的参数编码后拼接为请求串
+     */
+    public static void appendRequestBody(StringBuilder sb, String[] pairs) {
+        if (pairs != null) {
             try {
-                for (String key : requestInfo.keySet()) {
-                    if (key != null) {
-                        sb.append(key);
-                        sb.append("=");
-                        sb.append(URLEncoder.encode(requestInfo.get(key), "UTF-8"));
+                for (int i = 0; i < pairs.length; i += 2) {
+                    if (i > 0) {
                         sb.append("&");
                     }
-                }
-                if (sb.length() > 0) {
-                    sb.setLength(sb.length() - 1);
+                    sb.append(pairs[i]);
+                    sb.append("=");
+                    sb.append(URLEncoder.encode(pairs[i + 1], "UTF-8"));
                 }
             } catch (UnsupportedEncodingException e) {
                 logger.error("URLEncoder encode the post data failad", e);
             }
         }
-        return sb.toString();
     }
 
-    public final String getRequestString() {
-        StringBuilder sb = new StringBuilder(100);
+    public static void appendRequestString(StringBuilder sb, boolean isSSL, String host, String[] pairs) {
         sb.append(isSSL ? "https://" : "http://");
         sb.append(host);
         sb.append("/m.api?");
-        sb.append(recoverRequestBody());
-        return sb.toString();
+        appendRequestBody(sb, pairs);
     }
 
     /**
@@ -216,9 +276,55 @@ public class ApiContext {
     public LocalException localException;
 
     /**
-     * 线程相关的序列化数据缓冲池，用于暂存序列化数据
+     * 进程内共享的序列化数据分段缓冲池
+     */
+    private static final ByteSegmentPool bufferPool = new ByteSegmentPool(CommonConfig.getInstance().getBufferSegmentSize(),
+            CommonConfig.getInstance().getBufferPoolSize());
+
+    public static ByteSegmentPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * 线程相关的序列化数据缓冲区，用于暂存序列化数据, 请求结束后超出保留容量的分段归还缓冲池
+     */
+    public SegmentedByteOutputStream outputStream = new SegmentedByteOutputStream(bufferPool,
+            CommonConfig.getInstance().getBufferRetainSize() / bufferPool.getSegmentSize());
+
+    /**
+     * 与调用方协商得到的响应压缩方式, 取值见 CompressOutputStream
+     */
+    public int contentEncoding = CompressOutputStream.NONE;
+
+    /**
+     * GET/HEAD 请求携带的 If-None-Match 头
+     */
+    public String ifNoneMatch = null;
+
+    /**
+     * 是否采用尾部状态布局输出响应
+     */
+    public boolean trailingState = false;
+
+    /**
+     * 尾部状态布局下已经开始输出时的http输出流(可能为压缩流), 此后序列化数据分批写入该输出流
+     */
+    public OutputStream directOutput = null;
+
+    /**
+     * 尾部状态布局下返回值已经输出到客户端的调用数, 按声明顺序计算
+     */
+    public int drainedCallCount = 0;
+
+    /**
+     * 慢请求采样使用的请求阶段时间线
+     */
+    public final RequestTimeline timeline = new RequestTimeline(64);
+
+    /**
+     * 采用流式输出的调用, 其返回值在尾部状态布局的输出阶段直接序列化到http输出流中
      */
-    public RandomAccessByteArrayOutputStream outputStream = new RandomAccessByteArrayOutputStream(4096);
+    public ApiMethodCall streamingCall = null;
 
     /**
      * jsonp回调信息
@@ -285,6 +391,10 @@ public class ApiContext {
         return new ArrayList<KeyValuePair>(notifications.values());
     }
 
+    public final boolean hasNotification() {
+        return !notifications.isEmpty();
+    }
+
     /**
      * 清除变量信息
      */
@@ -300,6 +410,7 @@ public class ApiContext {
         this.clearUserToken = false;
         this.clearExpiredUserToken = false;
         this.clientIP = null;
+        this.contentEncoding = CompressOutputStream.NONE;
         this.cookies.clear();
         this.costTime = 0;
         this.currentCall = null;
@@ -307,6 +418,7 @@ public class ApiContext {
         this.deviceIdStr = null;
         this.format = SerializeType.JSON;
         this.host = null;
+        this.ifNoneMatch = null;
         this.isSSL = false;
         this.jsonpCallback = null;
         this.authCall = null;
@@ -317,14 +429,23 @@ public class ApiContext {
         this.outputStream.reset();
         this.referer = null;
         this.requiredSecurity = 0;
-        this.requestInfo = null;
+        this.requestParameters = null;
+        for (int i = 0; i < this.ignoredCount; i++) {
+            this.ignoredParameters[i] = null;
+        }
+        this.ignoredCount = 0;
         this.serializeCount = 0;
         this.startTime = 0;
         this.stoken = null;
+        this.streamingCall = null;
         this.thirdPartyId = null;
         this.token = null;
+        this.trailingState = false;
+        this.directOutput = null;
+        this.drainedCallCount = 0;
+        this.timeline.clear();
         this.uid = null;
         this.versionCode = null;
-        MDC.clear();
+        this.logContext.clear();
     }
 }
\ No newline at end of file
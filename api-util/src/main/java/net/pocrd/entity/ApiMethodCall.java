@@ -75,6 +75,57 @@ public class ApiMethodCall {
      */
     public int costTime;
 
+    /**
+     * 返回值序列化耗时(纳秒)
+     */
+    public long serializeNanos;
+
+    /**
+     * 网关侧处理该调用消耗的CPU时间(纳秒), 未开启资源统计时为0
+     */
+    public long cpuNanos;
+
+    /**
+     * 网关侧处理该调用分配的内存字节数, 未开启资源统计时为0
+     */
+    public long allocBytes;
+
+    /**
+     * 服务提供方通过 notification 返回的服务内耗时(微秒), 未返回时为-1
+     */
+    public long providerMicros = -1;
+
+    /**
+     * 是否占用了接口及服务的并发许可, 调用结束后释放
+     */
+    public boolean permitAcquired;
+
+    /**
+     * 占用并发许可的时间(纳秒), 用于计算自适应限流的调用耗时
+     */
+    public long dispatchNanos;
+
+    /**
+     * 熔断器放行本次调用时返回的许可, 用于区分半开状态下的探测调用
+     */
+    public int circuitPermit;
+
+    /**
+     * 处理该调用的服务提供者地址, 仅对冲接口记录, 对冲请求将发往其他提供者
+     */
+    public String providerAddress;
+
+    /**
+     * 服务不可用时代替本次结果返回的最近一次成功结果(已序列化), 以及该结果的生成时间
+     */
+    public byte[] staleResult;
+    public long   staleTime;
+
+    /**
+     * 结果来自降级返回值或静态 mock 而非服务的真实返回, 不作为最近一次成功的结果保存
+     */
+    public boolean substituted;
+
     /**
      * 返回值代码
      */
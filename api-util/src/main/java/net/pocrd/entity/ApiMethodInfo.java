@@ -65,6 +65,16 @@ public class ApiMethodInfo {
      */
     public ResponseWrapper wrapper;
 
+    /**
+     * 返回值是否采用流式输出
+     */
+    public boolean streamingOutput;
+
+    /**
+     * 是否输出 ETag 并支持条件请求
+     */
+    public boolean etagEnabled;
+
     /**
      * 方法名称
      */
@@ -169,4 +179,54 @@ public class ApiMethodInfo {
      * Integrated级别接口是否需要网关进行签名验证
      */
     public boolean needVerfiy;
+
+    /**
+     * 接口运行时统计信息
+     */
+    public final ApiMethodStats stats = new ApiMethodStats();
+
+    /**
+     * 接口的并发调用数限制
+     */
+    public final Bulkhead bulkhead = new Bulkhead(0);
+
+    /**
+     * 接口所属 dubbo 接口(服务)的并发调用数限制, 多个接口共享, 非 dubbo 接口为 null
+     */
+    public Bulkhead serviceBulkhead;
+
+    /**
+     * 接口所属 dubbo 接口(服务)的自适应限流器, 未开启自适应限流或非 dubbo 接口为 null
+     */
+    public AdaptiveLimiter serviceLimiter;
+
+    /**
+     * 熔断器, 按配置为每个接口独立创建或由同一 dubbo 接口(服务)的接口共享, 未开启熔断或非 dubbo 接口为 null
+     */
+    public CircuitBreaker circuitBreaker;
+
+    /**
+     * 熔断打开时的降级返回值
+     */
+    public Object fallbackValue;
+
+    /**
+     * 是否幂等接口
+     */
+    public boolean idempotent;
+
+    /**
+     * 对冲请求策略, 未开启对冲或非幂等 dubbo 接口为 null
+     */
+    public HedgePolicy hedge;
+
+    /**
+     * 服务超时或异常时是否返回最近一次成功调用的结果
+     */
+    public boolean lastKnownGood;
+
+    /**
+     * 接口的优先级
+     */
+    public ApiPriority priority = ApiPriority.NORMAL;
 }
\ No newline at end of file
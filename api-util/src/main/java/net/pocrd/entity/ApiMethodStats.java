@@ -0,0 +1,170 @@
+package net.pocrd.entity;
+
+import net.pocrd.util.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 接口运行时统计信息
+ */
+public class ApiMethodStats {
+    /**
+     * 滑动窗口由4个15秒的时间片组成, 覆盖最近1分钟
+     */
+    private static final long WINDOW_SLOT_MILLIS = 15000;
+    private static final int  WINDOW_SLOTS       = 4;
+
+    /**
+     * 总耗时(微秒), 包含服务调用和序列化
+     */
+    public final LatencyHistogram totalLatency     = new LatencyHistogram(WINDOW_SLOT_MILLIS, WINDOW_SLOTS);
+
+    /**
+     * 服务调用耗时(微秒), 精度为毫秒
+     */
+    public final LatencyHistogram rpcLatency       = new LatencyHistogram(WINDOW_SLOT_MILLIS, WINDOW_SLOTS);
+
+    /**
+     * 返回值序列化耗时(微秒)
+     */
+    public final LatencyHistogram serializeLatency = new LatencyHistogram(WINDOW_SLOT_MILLIS, WINDOW_SLOTS);
+
+    /**
+     * 服务提供方返回的服务内耗时(微秒)
+     */
+    public final LatencyHistogram providerLatency  = new LatencyHistogram(WINDOW_SLOT_MILLIS, WINDOW_SLOTS);
+
+    /**
+     * 服务调用耗时扣除服务内耗时后的网络及框架耗时(微秒), 精度为毫秒
+     */
+    public final LatencyHistogram networkLatency   = new LatencyHistogram(WINDOW_SLOT_MILLIS, WINDOW_SLOTS);
+
+    /**
+     * 各返回值代码的调用次数
+     */
+    public final ConcurrentHashMap<Integer, LongAdder> returnCodeCount = new ConcurrentHashMap<Integer, LongAdder>();
+
+    /**
+     * 网关侧资源统计的调用数
+     */
+    public final LongAdder resourceCount    = new LongAdder();
+
+    /**
+     * 网关侧消耗的CPU时间(纳秒)
+     */
+    public final LongAdder cpuNanos         = new LongAdder();
+
+    /**
+     * 网关侧分配的内存字节数
+     */
+    public final LongAdder allocBytes       = new LongAdder();
+
+    /**
+     * 经过压缩输出的响应数
+     */
+    public final LongAdder compressCount    = new LongAdder();
+
+    /**
+     * 压缩前的响应字节数
+     */
+    public final LongAdder compressInBytes  = new LongAdder();
+
+    /**
+     * 压缩后的响应字节数
+     */
+    public final LongAdder compressOutBytes = new LongAdder();
+
+    /**
+     * 输出 ETag 的响应数
+     */
+    public final LongAdder etagCount        = new LongAdder();
+
+    /**
+     * ETag 匹配后返回 304 的响应数
+     */
+    public final LongAdder notModifiedCount = new LongAdder();
+
+    /**
+     * 记录一次调用的耗时及返回值代码
+     */
+    public void recordCall(int returnCode, long rpcMicros, long serializeMicros) {
+        rpcLatency.record(rpcMicros);
+        serializeLatency.record(serializeMicros);
+        totalLatency.record(rpcMicros + serializeMicros);
+        LongAdder counter = returnCodeCount.get(returnCode);
+        if (counter == null) {
+            LongAdder c = new LongAdder();
+            counter = returnCodeCount.putIfAbsent(returnCode, c);
+            if (counter == null) {
+                counter = c;
+            }
+        }
+        counter.increment();
+    }
+
+    /**
+     * 记录服务提供方返回的服务内耗时
+     */
+    public void recordProvider(long rpcMicros, long providerMicros) {
+        providerLatency.record(providerMicros);
+        networkLatency.record(rpcMicros > providerMicros ? rpcMicros - providerMicros : 0);
+    }
+
+    /**
+     * 各返回值代码调用次数的快照
+     */
+    public Map<Integer, Long> getReturnCodeCount() {
+        Map<Integer, Long> map = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, LongAdder> e : returnCodeCount.entrySet()) {
+            map.put(e.getKey(), e.getValue().sum());
+        }
+        return map;
+    }
+
+    /**
+     * 记录一次调用在网关侧消耗的CPU时间及分配的内存
+     */
+    public void recordResource(long cpuNanos, long allocBytes) {
+        resourceCount.increment();
+        this.cpuNanos.add(cpuNanos);
+        this.allocBytes.add(allocBytes);
+    }
+
+    /**
+     * 记录一次压缩输出, 合并调用时整个响应的压缩数据计入每个参与的接口
+     */
+    public void recordCompress(long inBytes, long outBytes) {
+        compressCount.increment();
+        compressInBytes.add(inBytes);
+        compressOutBytes.add(outBytes);
+    }
+
+    /**
+     * 压缩率(压缩后字节数/压缩前字节数), 没有压缩记录时返回1
+     */
+    public double getCompressRatio() {
+        long in = compressInBytes.sum();
+        return in == 0 ? 1.0 : (double)compressOutBytes.sum() / in;
+    }
+
+    /**
+     * 记录一次输出 ETag 的响应
+     */
+    public void recordETag(boolean notModified) {
+        etagCount.increment();
+        if (notModified) {
+            notModifiedCount.increment();
+        }
+    }
+
+    /**
+     * 输出 ETag 的响应中返回 304 的比例
+     */
+    public double getNotModifiedRate() {
+        long count = etagCount.sum();
+        return count == 0 ? 0.0 : (double)notModifiedCount.sum() / count;
+    }
+}
@@ -196,6 +196,36 @@ public class ApiReturnCode extends AbstractReturnCode {
     public final static int                _C_SUBSYSTEM_AUTHENTICATION_FAILED = -410;
     public final static AbstractReturnCode SUBSYSTEM_AUTHENTICATION_FAILED    = new ApiReturnCode("", _C_SUBSYSTEM_AUTHENTICATION_FAILED);
 
+    public final static int                _C_SERVICE_BUSY = -420;
+    public final static AbstractReturnCode SERVICE_BUSY    = new ApiReturnCode("服务繁忙, 请稍后重试", _C_SERVICE_BUSY);
+
+    /**
+     * 服务自适应限流, 对外显示为SERVICE_BUSY
+     */
+    private final static int                _C_ADAPTIVE_LIMITED = -421;
+    public final static  AbstractReturnCode ADAPTIVE_LIMITED    = new ApiReturnCode(_C_ADAPTIVE_LIMITED, SERVICE_BUSY);
+
+    /**
+     * 网关排队时间过长, 请求被丢弃, 对外显示为SERVICE_BUSY
+     */
+    private final static int                _C_REQUEST_SHED = -422;
+    public final static  AbstractReturnCode REQUEST_SHED    = new ApiReturnCode(_C_REQUEST_SHED, SERVICE_BUSY);
+
+    /**
+     * 熔断器打开, 对外显示为SERVICE_BUSY
+     */
+    private final static int                _C_CIRCUIT_OPEN = -423;
+    public final static  AbstractReturnCode CIRCUIT_OPEN    = new ApiReturnCode(_C_CIRCUIT_OPEN, SERVICE_BUSY);
+
+    /**
+     * 网关过载时按优先级拒绝的请求, 对外显示为SERVICE_BUSY
+     */
+    private final static int                _C_PRIORITY_SHED = -424;
+    public final static  AbstractReturnCode PRIORITY_SHED    = new ApiReturnCode(_C_PRIORITY_SHED, SERVICE_BUSY);
+
+    public final static int                _C_RATE_LIMITED = -430;
+    public final static AbstractReturnCode RATE_LIMITED    = new ApiReturnCode("请求过于频繁, 请稍后重试", _C_RATE_LIMITED);
+
     protected ApiReturnCode(String desc, int code) {
         super(desc, code);
     }
@@ -0,0 +1,277 @@
+package net.pocrd.entity;
+
+import net.pocrd.define.ConstField;
+import net.pocrd.util.MpscRingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步访问日志, 请求线程只把日志字段复制到环形缓冲区的预分配槽位中, 由后台线程拼接日志并追加写入文件。
+ * 缓冲区满时直接丢弃并计数, 不阻塞请求线程。日志文件以追加方式打开, 切分由外部(如 logrotate copytruncate)完成
+ */
+final class AsyncAccessLogWriter implements Runnable {
+    private static final Logger logger           = LoggerFactory.getLogger(AsyncAccessLogWriter.class);
+    private static final int    TYPE_ACCESS      = 0;
+    private static final int    TYPE_REQUEST     = 1;
+    private static final int    BATCH_SIZE       = 256;
+    private static final long   IDLE_PARK_NANOS  = 1000000L;
+    private static final long   FLUSH_IDLE_NANOS = 100000000L;
+
+    /**
+     * 预分配的日志槽位, 引用类型字段在请求结束后不再被修改, 可以直接引用
+     */
+    private static final class Entry {
+        int                 type;
+        // access
+        int                 costTime;
+        String              methodName;
+        int                 returnCode;
+        int                 originCode;
+        int                 resultLen;
+        CharSequence        message;
+        long                startTime;
+        String              serviceLog;
+        long                cpuNanos;
+        long                allocBytes;
+        // request
+        boolean             isSSL;
+        String              host;
+        String[]            requestParameters;
+        String              agent;
+        String              clientIP;
+        String              token;
+        String              errorMsg;
+        String              data;
+        String              referer;
+
+        void clear() {
+            methodName = null;
+            message = null;
+            serviceLog = null;
+            host = null;
+            requestParameters = null;
+            agent = null;
+            clientIP = null;
+            token = null;
+            errorMsg = null;
+            data = null;
+            referer = null;
+        }
+    }
+
+    private final MpscRingBuffer<Entry> buffer;
+    private final FileChannel           accessChannel;
+    private final FileChannel           requestChannel;
+    private final ByteBuffer            accessBuffer  = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer            requestBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final StringBuilder         line          = new StringBuilder(1024);
+    private final SimpleDateFormat      dateFormat    = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS ");
+    private final Date                  date          = new Date();
+    private final Thread                thread;
+    private final boolean               logResource;
+    private volatile boolean running = true;
+
+    AsyncAccessLogWriter(String path, int bufferSize, boolean logResource) throws IOException {
+        this.logResource = logResource;
+        File dir = new File(path);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("create access log path failed. path:" + path);
+        }
+        buffer = new MpscRingBuffer<Entry>(bufferSize, new MpscRingBuffer.SlotFactory<Entry>() {
+            @Override
+            public Entry newSlot() {
+                return new Entry();
+            }
+        });
+        accessChannel = FileChannel.open(new File(dir, "access.log").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        requestChannel = FileChannel.open(new File(dir, "request.log").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        thread = new Thread(this, "access-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, "access-log-shutdown"));
+    }
+
+    /**
+     * 因缓冲区满而丢弃的日志数
+     */
+    long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+
+    void logAccess(ApiMethodCall call) {
+        long seq = buffer.tryClaim();
+        if (seq < 0) {
+            return;
+        }
+        Entry e = buffer.get(seq);
+        e.type = TYPE_ACCESS;
+        e.costTime = call.costTime;
+        e.methodName = call.method.methodName;
+        e.returnCode = call.getReturnCode();
+        e.originCode = call.getOriginCode();
+        e.resultLen = call.resultLen;
+        e.message = call.message;
+        e.startTime = call.startTime;
+        e.serviceLog = call.serviceLog;
+        e.cpuNanos = call.cpuNanos;
+        e.allocBytes = call.allocBytes;
+        buffer.publish(seq);
+    }
+
+    void logRequest(ApiContext apiContext, String errorMsg, String data) {
+        long seq = buffer.tryClaim();
+        if (seq < 0) {
+            return;
+        }
+        Entry e = buffer.get(seq);
+        e.type = TYPE_REQUEST;
+        e.isSSL = apiContext.isSSL;
+        e.host = apiContext.host;
+        // 容器会在请求结束后回收参数表, 这里只复制引用不做编码, 编码在后台线程中完成
+        e.requestParameters = apiContext.captureRequestParameters();
+        e.agent = apiContext.agent;
+        e.clientIP = apiContext.clientIP;
+        e.token = apiContext.token;
+        e.errorMsg = errorMsg;
+        e.data = data;
+        e.referer = apiContext.referer;
+        e.startTime = apiContext.startTime;
+        e.costTime = apiContext.costTime;
+        buffer.publish(seq);
+    }
+
+    @Override
+    public void run() {
+        long idleSince = 0;
+        while (running) {
+            int n = drain();
+            if (n > 0) {
+                idleSince = 0;
+                continue;
+            }
+            long now = System.nanoTime();
+            if (idleSince == 0) {
+                idleSince = now;
+            } else if (now - idleSince > FLUSH_IDLE_NANOS && (accessBuffer.position() > 0 || requestBuffer.position() > 0)) {
+                flushAll();
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private int drain() {
+        int n = 0;
+        Entry e;
+        while (n < BATCH_SIZE && (e = buffer.poll()) != null) {
+            try {
+                format(e);
+                write(e.type == TYPE_ACCESS ? accessChannel : requestChannel, e.type == TYPE_ACCESS ? accessBuffer : requestBuffer);
+            } catch (Throwable t) {
+                logger.error("write access log failed.", t);
+            } finally {
+                e.clear();
+                buffer.release();
+            }
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 日志内容与 logback 输出的 net.pocrd.api.access / net.pocrd.api.request 保持一致, 行首增加时间
+     */
+    private void format(Entry e) {
+        StringBuilder sb = line;
+        sb.setLength(0);
+        date.setTime(System.currentTimeMillis());
+        sb.append(dateFormat.format(date));
+        String splitter = AccessLogger.ACCESS_SPLITTER;
+        if (e.type == TYPE_ACCESS) {
+            sb.append(e.costTime).append(splitter).append(e.methodName).append(splitter).append(e.returnCode).append(splitter)
+                    .append(e.originCode).append(splitter).append(e.resultLen).append(splitter).append(e.message).append(splitter)
+                    .append(e.startTime).append(':').append(e.serviceLog == null ? "" : e.serviceLog);
+            if (logResource) {
+                sb.append(splitter).append(e.cpuNanos / 1000).append(':').append(e.allocBytes);
+            }
+        } else {
+            ApiContext.appendRequestString(sb, e.isSSL, e.host, e.requestParameters);
+            sb.append(splitter).append(e.agent).append(splitter).append(e.clientIP).append(splitter).append(e.token).append(splitter)
+                    .append(e.errorMsg == null ? "" : e.errorMsg).append(splitter).append(e.data == null ? "" : e.data).append(splitter)
+                    .append("referer:").append(e.referer).append(splitter).append(e.startTime).append(':').append(e.costTime);
+        }
+        sb.append('\n');
+    }
+
+    private void write(FileChannel channel, ByteBuffer out) throws IOException {
+        byte[] bytes = line.toString().getBytes(ConstField.UTF8);
+        if (bytes.length > out.remaining()) {
+            flush(channel, out);
+        }
+        if (bytes.length > out.remaining()) {
+            channel.write(ByteBuffer.wrap(bytes));
+        } else {
+            out.put(bytes);
+        }
+    }
+
+    private void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } finally {
+            out.clear();
+        }
+    }
+
+    private void flushAll() {
+        try {
+            flush(accessChannel, accessBuffer);
+            flush(requestChannel, requestBuffer);
+        } catch (Throwable t) {
+            logger.error("flush access log failed.", t);
+        }
+    }
+
+    /**
+     * 停止后台线程并输出剩余日志
+     */
+    void close() {
+        running = false;
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            // 后台线程未能及时退出, 不再并发消费
+            return;
+        }
+        while (drain() > 0) {
+        }
+        flushAll();
+        try {
+            accessChannel.close();
+            requestChannel.close();
+        } catch (IOException e) {
+            logger.error("close access log failed.", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.pocrd.entity;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 并发调用数限制, 以 CAS 方式占用和释放许可, 超出限制时立即失败而不等待。
+ * 上限可以在运行时调整, 不大于0时不限制并发数, 但仍然统计正在执行的调用数
+ */
+public final class Bulkhead {
+    /**
+     * 以 dubbo 接口名为键的服务级别并发限制
+     */
+    private static final ConcurrentHashMap<String, Bulkhead> services = new ConcurrentHashMap<String, Bulkhead>();
+
+    private final    AtomicInteger inFlight = new AtomicInteger();
+    private final    LongAdder     rejected = new LongAdder();
+    private volatile int           limit;
+
+    public Bulkhead(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * 获取 dubbo 接口对应的并发限制, 首次获取时按 net.pocrd.concurrencyLimits 中的配置设定上限
+     */
+    public static Bulkhead forService(String name) {
+        Bulkhead bulkhead = services.get(name);
+        if (bulkhead == null) {
+            Integer limit = CommonConfig.getInstance().getConcurrencyLimits().get(name);
+            Bulkhead b = new Bulkhead(limit == null ? 0 : limit);
+            bulkhead = services.putIfAbsent(name, b);
+            if (bulkhead == null) {
+                bulkhead = b;
+            }
+        }
+        return bulkhead;
+    }
+
+    /**
+     * 已创建的服务级别并发限制
+     */
+    public static Map<String, Bulkhead> getServices() {
+        return new TreeMap<String, Bulkhead>(services);
+    }
+
+    /**
+     * 占用一个许可, 已达上限时返回 false
+     */
+    public boolean tryAcquire() {
+        int l = limit;
+        if (l <= 0) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= l) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 调整上限, 已经占用的许可不受影响
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,239 @@
+package net.pocrd.entity;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 熔断器, 以1秒为单位的滑动窗口统计调用失败率及慢调用比例, 任意一个超过阈值时打开熔断并在一段时间内直接拒绝调用。
+ * 打开时间结束后进入半开状态, 只放行少量探测调用, 全部成功后关闭熔断, 任意一个失败则重新打开。
+ * 只有半开状态下放行的探测调用的结果参与半开状态的判断, 关闭状态下发起、半开状态下才结束的调用不计入。
+ * 各方法均提供以 now(毫秒时间戳)为参数的版本, 便于测试
+ */
+public final class CircuitBreaker {
+    public static final int CLOSED    = 0;
+    public static final int OPEN      = 1;
+    public static final int HALF_OPEN = 2;
+
+    /**
+     * acquire 拒绝调用时的返回值
+     */
+    public static final int REJECTED = -1;
+
+    private static final long BUCKET_MILLIS = 1000;
+    private static final int  TOTAL         = 0;
+    private static final int  FAILURE       = 1;
+    private static final int  SLOW          = 2;
+
+    /**
+     * 以 dubbo 接口名为键的服务级别熔断器
+     */
+    private static final ConcurrentHashMap<String, CircuitBreaker> services = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    private final    int             minCalls;
+    private final    double          failureRate;
+    private final    double          slowRate;
+    private final    long            slowMillis;
+    private final    long            openMillis;
+    private final    int             probes;
+    private final    long[]          epochs;
+    private final    AtomicLongArray counts;
+    private final    AtomicInteger   state          = new AtomicInteger(CLOSED);
+    private final    AtomicInteger   probePermits   = new AtomicInteger();
+    private final    AtomicInteger   probeSuccesses = new AtomicInteger();
+    private final    AtomicInteger   generation     = new AtomicInteger();
+    private volatile long            openUntil;
+
+    public CircuitBreaker(int windowSeconds, int minCalls, double failureRate, double slowRate, long slowMillis, long openMillis, int probes) {
+        this.minCalls = Math.max(1, minCalls);
+        this.failureRate = failureRate;
+        this.slowRate = slowRate;
+        this.slowMillis = slowMillis;
+        this.openMillis = openMillis;
+        this.probes = Math.max(1, probes);
+        this.epochs = new long[Math.max(1, windowSeconds)];
+        this.counts = new AtomicLongArray(epochs.length * 3);
+    }
+
+    /**
+     * 按 net.pocrd.circuitBreaker* 配置创建熔断器
+     */
+    public static CircuitBreaker create() {
+        CommonConfig config = CommonConfig.getInstance();
+        return new CircuitBreaker(config.getCircuitBreakerWindow(), config.getCircuitBreakerMinCalls(), config.getCircuitBreakerFailureRate(),
+                config.getCircuitBreakerSlowRate(), config.getCircuitBreakerSlowCall(), config.getCircuitBreakerOpenTime(),
+                config.getCircuitBreakerProbes());
+    }
+
+    /**
+     * 获取 dubbo 接口对应的熔断器
+     */
+    public static CircuitBreaker forService(String name) {
+        CircuitBreaker breaker = services.get(name);
+        if (breaker == null) {
+            CircuitBreaker b = create();
+            breaker = services.putIfAbsent(name, b);
+            if (breaker == null) {
+                breaker = b;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * 已创建的服务级别熔断器
+     */
+    public static Map<String, CircuitBreaker> getServices() {
+        return new TreeMap<String, CircuitBreaker>(services);
+    }
+
+    /**
+     * 申请本次调用, 返回 REJECTED 时拒绝调用, 否则调用方必须在调用结束后将返回值传给 record
+     */
+    public int acquire() {
+        return acquire(System.currentTimeMillis());
+    }
+
+    /**
+     * 返回值为0表示关闭状态下的普通调用, 大于0表示半开状态下的探测调用, 值为放行该探测时半开状态的序号
+     */
+    public int acquire(long now) {
+        switch (state.get()) {
+            case CLOSED:
+                return 0;
+            case OPEN:
+                if (now < openUntil || !state.compareAndSet(OPEN, HALF_OPEN)) {
+                    return state.get() == HALF_OPEN ? acquireProbe() : REJECTED;
+                }
+                // 先更新序号再发放探测许可, 获得许可的线程读到的一定是新的序号
+                int g = nextGeneration();
+                probeSuccesses.set(0);
+                probePermits.set(probes - 1);
+                return g;
+            default:
+                return acquireProbe();
+        }
+    }
+
+    private int nextGeneration() {
+        int g = generation.incrementAndGet();
+        if (g <= 0) {
+            // 序号溢出后从1重新开始, 0 与负数保留给普通调用及拒绝
+            generation.compareAndSet(g, 1);
+            g = generation.get();
+        }
+        return g;
+    }
+
+    private int acquireProbe() {
+        while (true) {
+            int p = probePermits.get();
+            if (p <= 0) {
+                return REJECTED;
+            }
+            if (probePermits.compareAndSet(p, p - 1)) {
+                return generation.get();
+            }
+        }
+    }
+
+    /**
+     * 记录调用结果
+     *
+     * @param permit     acquire 的返回值
+     * @param failure    是否为服务失败(超时、服务不可用等), 业务错误码不算失败
+     * @param costMillis 调用耗时(毫秒)
+     */
+    public void record(int permit, boolean failure, long costMillis) {
+        record(permit, failure, costMillis, System.currentTimeMillis());
+    }
+
+    public void record(int permit, boolean failure, long costMillis, long now) {
+        if (permit < 0) {
+            return;
+        }
+        boolean slow = slowMillis > 0 && costMillis >= slowMillis;
+        int s = state.get();
+        if (permit > 0) {
+            // 探测调用只影响放行它的那一次半开状态
+            if (s != HALF_OPEN || permit != generation.get()) {
+                return;
+            }
+            if (failure || slow) {
+                open(HALF_OPEN, now);
+            } else if (probeSuccesses.incrementAndGet() >= probes && state.compareAndSet(HALF_OPEN, CLOSED)) {
+                reset();
+            }
+            return;
+        } else if (s != CLOSED) {
+            return;
+        }
+        long epoch = now / BUCKET_MILLIS;
+        int i = (int)(epoch % epochs.length);
+        if (epochs[i] != epoch) {
+            // 时间片过期, 由首个写入的线程负责清空, 并发写入时允许少量误差
+            synchronized (this) {
+                if (epochs[i] != epoch) {
+                    counts.set(i * 3 + TOTAL, 0);
+                    counts.set(i * 3 + FAILURE, 0);
+                    counts.set(i * 3 + SLOW, 0);
+                    epochs[i] = epoch;
+                }
+            }
+        }
+        counts.incrementAndGet(i * 3 + TOTAL);
+        if (failure) {
+            counts.incrementAndGet(i * 3 + FAILURE);
+        }
+        if (slow) {
+            counts.incrementAndGet(i * 3 + SLOW);
+        }
+        if (failure || slow) {
+            evaluate(epoch, now);
+        }
+    }
+
+    /**
+     * 统计窗口内的调用数达到最小值后检查失败率及慢调用比例
+     */
+    private void evaluate(long epoch, long now) {
+        long total = 0;
+        long failures = 0;
+        long slows = 0;
+        for (int i = 0; i < epochs.length; i++) {
+            if (epoch - epochs[i] < epochs.length) {
+                total += counts.get(i * 3 + TOTAL);
+                failures += counts.get(i * 3 + FAILURE);
+                slows += counts.get(i * 3 + SLOW);
+            }
+        }
+        if (total >= minCalls && ((failureRate > 0 && failures >= failureRate * total) || (slowRate > 0 && slows >= slowRate * total))) {
+            open(CLOSED, now);
+        }
+    }
+
+    /**
+     * 先设置打开的截止时间再切换状态, 避免其他线程看到打开状态时使用旧的截止时间
+     */
+    private void open(int expect, long now) {
+        openUntil = now + openMillis;
+        if (state.compareAndSet(expect, OPEN)) {
+            reset();
+        }
+    }
+
+    private synchronized void reset() {
+        for (int i = 0; i < epochs.length; i++) {
+            epochs[i] = 0;
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    public int getState() {
+        return state.get();
+    }
+}
@@ -1,6 +1,8 @@
 package net.pocrd.entity;
 
 import net.pocrd.core.HttpRequestExecutor;
+import net.pocrd.define.ApiPriority;
+import net.pocrd.define.SecurityType;
 import net.pocrd.util.Md5Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +11,9 @@ import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.net.InetAddress;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 public class CommonConfig {
@@ -54,6 +59,63 @@ public class CommonConfig {
             instance.rsaDecryptSecret = prop.getProperty("net.pocrd.rsaDecryptSecret");
             instance.tokenAes = prop.getProperty("net.pocrd.tokenAes");
             instance.executorName = prop.getProperty("net.pocrd.httpRequestExecutor");
+            instance.bufferSegmentSize = Integer.parseInt(prop.getProperty("net.pocrd.bufferSegmentSize", "8192"));
+            instance.bufferPoolSize = Integer.parseInt(prop.getProperty("net.pocrd.bufferPoolSize", "2048"));
+            instance.bufferRetainSize = Integer.parseInt(prop.getProperty("net.pocrd.bufferRetainSize", "65536"));
+            instance.compressEnable = "true".equals(prop.getProperty("net.pocrd.compressEnable", "false"));
+            instance.compressMinSize = Integer.parseInt(prop.getProperty("net.pocrd.compressMinSize", "1024"));
+            instance.compressLevel = Integer.parseInt(prop.getProperty("net.pocrd.compressLevel", "-1"));
+            instance.compressPoolSize = Integer.parseInt(prop.getProperty("net.pocrd.compressPoolSize", "64"));
+            instance.setTrailingStateClients(prop.getProperty("net.pocrd.trailingStateClients"));
+            instance.trailingCommitSize = Integer.parseInt(prop.getProperty("net.pocrd.trailingCommitSize", "32768"));
+            instance.parallelSerialize = "true".equals(prop.getProperty("net.pocrd.parallelSerialize", "false"));
+            instance.parallelSerializeMinCalls = Integer.parseInt(prop.getProperty("net.pocrd.parallelSerializeMinCalls", "4"));
+            instance.parallelSerializeThreads = Integer.parseInt(
+                    prop.getProperty("net.pocrd.parallelSerializeThreads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            instance.accessLogAsync = "true".equals(prop.getProperty("net.pocrd.accessLogAsync", "false"));
+            instance.accessLogPath = prop.getProperty("net.pocrd.accessLogPath", "/tmp/logs");
+            instance.accessLogBufferSize = Integer.parseInt(prop.getProperty("net.pocrd.accessLogBufferSize", "16384"));
+            instance.resourceAccounting = "true".equals(prop.getProperty("net.pocrd.resourceAccounting", "false"));
+            instance.resourceAccountingLog = "true".equals(prop.getProperty("net.pocrd.resourceAccountingLog", "false"));
+            instance.slowRequestThreshold = Integer.parseInt(prop.getProperty("net.pocrd.slowRequestThreshold", "0"));
+            instance.slowRequestSampleSize = Integer.parseInt(prop.getProperty("net.pocrd.slowRequestSampleSize", "10"));
+            instance.traceSampleRate = Double.parseDouble(prop.getProperty("net.pocrd.traceSampleRate", "0"));
+            instance.traceSpanPath = prop.getProperty("net.pocrd.traceSpanPath", "/tmp/logs");
+            instance.providerMetrics = "true".equals(prop.getProperty("net.pocrd.providerMetrics", "false"));
+            instance.providerMetricsLogInterval = Integer.parseInt(prop.getProperty("net.pocrd.providerMetricsLogInterval", "60"));
+            instance.logMdc = !"false".equals(prop.getProperty("net.pocrd.logMdc", "true"));
+            instance.setConcurrencyLimits(prop.getProperty("net.pocrd.concurrencyLimits"));
+            instance.defaultConcurrencyLimit = Integer.parseInt(prop.getProperty("net.pocrd.defaultConcurrencyLimit", "0"));
+            instance.adaptiveLimit = "true".equals(prop.getProperty("net.pocrd.adaptiveLimit", "false"));
+            instance.adaptiveLimitInitial = Integer.parseInt(prop.getProperty("net.pocrd.adaptiveLimitInitial", "20"));
+            instance.adaptiveLimitMin = Integer.parseInt(prop.getProperty("net.pocrd.adaptiveLimitMin", "4"));
+            instance.adaptiveLimitMax = Integer.parseInt(prop.getProperty("net.pocrd.adaptiveLimitMax", "1000"));
+            instance.shedQueueTarget = Integer.parseInt(prop.getProperty("net.pocrd.shedQueueTarget", "0"));
+            instance.shedQueueInterval = Integer.parseInt(prop.getProperty("net.pocrd.shedQueueInterval", "100"));
+            instance.rateLimits = prop.getProperty("net.pocrd.rateLimits");
+            instance.rateLimitTableSize = Integer.parseInt(prop.getProperty("net.pocrd.rateLimitTableSize", "65536"));
+            instance.circuitBreaker = "true".equals(prop.getProperty("net.pocrd.circuitBreaker", "false"));
+            instance.circuitBreakerPerService = "true".equals(prop.getProperty("net.pocrd.circuitBreakerPerService", "false"));
+            instance.circuitBreakerWindow = Integer.parseInt(prop.getProperty("net.pocrd.circuitBreakerWindow", "10"));
+            instance.circuitBreakerMinCalls = Integer.parseInt(prop.getProperty("net.pocrd.circuitBreakerMinCalls", "20"));
+            instance.circuitBreakerFailureRate = Double.parseDouble(prop.getProperty("net.pocrd.circuitBreakerFailureRate", "0.5"));
+            instance.circuitBreakerSlowRate = Double.parseDouble(prop.getProperty("net.pocrd.circuitBreakerSlowRate", "0.8"));
+            instance.circuitBreakerSlowCall = Integer.parseInt(prop.getProperty("net.pocrd.circuitBreakerSlowCall", "0"));
+            instance.circuitBreakerOpenTime = Integer.parseInt(prop.getProperty("net.pocrd.circuitBreakerOpenTime", "5000"));
+            instance.circuitBreakerProbes = Integer.parseInt(prop.getProperty("net.pocrd.circuitBreakerProbes", "5"));
+            instance.hedge = "true".equals(prop.getProperty("net.pocrd.hedge", "false"));
+            instance.hedgeDelay = Integer.parseInt(prop.getProperty("net.pocrd.hedgeDelay", "0"));
+            instance.hedgeDelayPercentile = Double.parseDouble(prop.getProperty("net.pocrd.hedgeDelayPercentile", "0.95"));
+            instance.hedgeBudget = Double.parseDouble(prop.getProperty("net.pocrd.hedgeBudget", "0.05"));
+            instance.setLastKnownGoodApis(prop.getProperty("net.pocrd.lastKnownGoodApis"));
+            instance.lastKnownGoodSize = Integer.parseInt(prop.getProperty("net.pocrd.lastKnownGoodSize", "4096"));
+            instance.lastKnownGoodMaxBytes = Integer.parseInt(prop.getProperty("net.pocrd.lastKnownGoodMaxBytes", "65536"));
+            instance.lastKnownGoodTtl = Integer.parseInt(prop.getProperty("net.pocrd.lastKnownGoodTtl", "600000"));
+            instance.setPriorities(prop.getProperty("net.pocrd.apiPriorities"), instance.apiPriorities);
+            instance.setPriorities(prop.getProperty("net.pocrd.appPriorities"), instance.appPriorities);
+            instance.setSecurityPriorities(prop.getProperty("net.pocrd.securityPriorities"));
+            instance.admissionMaxInFlight = Integer.parseInt(prop.getProperty("net.pocrd.admissionMaxInFlight", "0"));
+            instance.admissionQueueTarget = Integer.parseInt(prop.getProperty("net.pocrd.admissionQueueTarget", "0"));
 
             //启动时获取当前机器ip
             try {
@@ -168,6 +230,597 @@ public class CommonConfig {
         return tokenAes;
     }
 
+    /**
+     * 序列化缓冲区的分段大小(字节)
+     */
+    private int bufferSegmentSize = 8192;
+
+    public int getBufferSegmentSize() {
+        return bufferSegmentSize;
+    }
+
+    /**
+     * 序列化缓冲池中最多保留的空闲分段数量, 超出部分直接释放
+     */
+    private int bufferPoolSize = 2048;
+
+    public int getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    /**
+     * 每个线程的序列化缓冲区在请求结束后保留的容量上限(字节), 超出部分归还缓冲池
+     */
+    private int bufferRetainSize = 65536;
+
+    public int getBufferRetainSize() {
+        return bufferRetainSize;
+    }
+
+    /**
+     * 是否根据 Accept-Encoding 对响应进行 gzip/deflate 压缩
+     */
+    private boolean compressEnable = false;
+
+    public boolean getCompressEnable() {
+        return compressEnable;
+    }
+
+    /**
+     * 启用压缩的最小响应数据长度(字节), 流式输出的响应总是压缩
+     */
+    private int compressMinSize = 1024;
+
+    public int getCompressMinSize() {
+        return compressMinSize;
+    }
+
+    /**
+     * 压缩级别, 0-9, -1 表示默认级别
+     */
+    private int compressLevel = -1;
+
+    public int getCompressLevel() {
+        return compressLevel;
+    }
+
+    /**
+     * 压缩器缓冲池中最多保留的空闲压缩器数量
+     */
+    private int compressPoolSize = 64;
+
+    public int getCompressPoolSize() {
+        return compressPoolSize;
+    }
+
+    /**
+     * 采用尾部状态布局的客户端, appid 与最低版本号(versionCode), 格式为 appid:versionCode,appid:versionCode
+     */
+    private HashMap<String, Integer> trailingStateClients = new HashMap<String, Integer>();
+
+    private void setTrailingStateClients(String list) {
+        if (list != null && list.length() > 0) {
+            for (String item : list.split(",")) {
+                String[] kv = item.trim().split(":");
+                if (kv.length == 2) {
+                    try {
+                        trailingStateClients.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+                    } catch (NumberFormatException e) {
+                        logger.warn("invalid trailing state client config:" + item);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 客户端是否采用尾部状态布局: 先输出各接口的返回值, 最后输出返回状态及通知
+     */
+    public boolean isTrailingStateClient(String appid, String versionCode) {
+        if (appid == null || versionCode == null || trailingStateClients.isEmpty()) {
+            return false;
+        }
+        Integer minVersion = trailingStateClients.get(appid);
+        if (minVersion == null) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(versionCode) >= minVersion;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 尾部状态布局下序列化缓冲区超过该长度(字节)时开始向客户端输出
+     */
+    private int trailingCommitSize = 32768;
+
+    public int getTrailingCommitSize() {
+        return trailingCommitSize;
+    }
+
+    /**
+     * 合并调用时是否并行序列化各接口的返回值
+     */
+    private boolean parallelSerialize = false;
+
+    public boolean getParallelSerialize() {
+        return parallelSerialize;
+    }
+
+    /**
+     * 启用并行序列化的最少接口调用数
+     */
+    private int parallelSerializeMinCalls = 4;
+
+    public int getParallelSerializeMinCalls() {
+        return parallelSerializeMinCalls;
+    }
+
+    /**
+     * 并行序列化线程池大小
+     */
+    private int parallelSerializeThreads = 1;
+
+    public int getParallelSerializeThreads() {
+        return parallelSerializeThreads;
+    }
+
+    /**
+     * 是否使用异步访问日志, 启用后 access/request 日志不再经过 logback
+     */
+    private boolean accessLogAsync = false;
+
+    public boolean getAccessLogAsync() {
+        return accessLogAsync;
+    }
+
+    /**
+     * 异步访问日志的输出目录
+     */
+    private String accessLogPath = "/tmp/logs";
+
+    public String getAccessLogPath() {
+        return accessLogPath;
+    }
+
+    /**
+     * 异步访问日志缓冲区的槽位数, 缓冲区满时丢弃日志
+     */
+    private int accessLogBufferSize = 16384;
+
+    public int getAccessLogBufferSize() {
+        return accessLogBufferSize;
+    }
+
+    /**
+     * 是否统计各接口在网关侧消耗的CPU时间及分配的内存, 关闭时不读取线程的资源信息
+     */
+    private boolean resourceAccounting = false;
+
+    public boolean getResourceAccounting() {
+        return resourceAccounting;
+    }
+
+    /**
+     * 开启资源统计时是否在访问日志末尾追加 CPU时间(微秒):分配字节数
+     */
+    private boolean resourceAccountingLog = false;
+
+    public boolean getResourceAccountingLog() {
+        return resourceAccountingLog;
+    }
+
+    /**
+     * 慢请求阈值(毫秒), 耗时超过该值的请求记录各阶段时间线, 为0时关闭
+     */
+    private int slowRequestThreshold = 0;
+
+    public int getSlowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    /**
+     * 每分钟保留的慢请求数量
+     */
+    private int slowRequestSampleSize = 10;
+
+    public int getSlowRequestSampleSize() {
+        return slowRequestSampleSize;
+    }
+
+    /**
+     * dubbo 调用链的 span 采样率(0~1), 在调用起始点决定, 为0时不记录 span
+     */
+    private double traceSampleRate = 0;
+
+    public double getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    /**
+     * span.log 的输出目录
+     */
+    private String traceSpanPath = "/tmp/logs";
+
+    public String getTraceSpanPath() {
+        return traceSpanPath;
+    }
+
+    /**
+     * 是否在 dubbo provider 端统计各接口方法的耗时并将服务耗时返回给网关
+     */
+    private boolean providerMetrics = false;
+
+    public boolean isProviderMetrics() {
+        return providerMetrics;
+    }
+
+    /**
+     * provider 端统计数据的日志输出间隔(秒), 为0时不输出
+     */
+    private int providerMetricsLogInterval = 60;
+
+    public int getProviderMetricsLogInterval() {
+        return providerMetricsLogInterval;
+    }
+
+    /**
+     * 请求信息是否同时写入 MDC, 日志配置全部改用 LogContextConverter 后可以关闭
+     */
+    private boolean logMdc = true;
+
+    public boolean isLogMdc() {
+        return logMdc;
+    }
+
+    /**
+     * 接口或 dubbo 接口(服务)的并发调用数上限, 格式为 name:limit,name:limit, name 为接口名或 dubbo 接口的完整类名
+     */
+    private HashMap<String, Integer> concurrencyLimits = new HashMap<String, Integer>();
+
+    private void setConcurrencyLimits(String list) {
+        if (list != null && list.length() > 0) {
+            for (String item : list.split(",")) {
+                String[] kv = item.trim().split(":");
+                if (kv.length == 2) {
+                    try {
+                        concurrencyLimits.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+                    } catch (NumberFormatException e) {
+                        logger.warn("invalid concurrency limit config:" + item);
+                    }
+                }
+            }
+        }
+    }
+
+    public HashMap<String, Integer> getConcurrencyLimits() {
+        return concurrencyLimits;
+    }
+
+    /**
+     * 未单独配置的接口的并发调用数上限, 不大于0时不限制
+     */
+    private int defaultConcurrencyLimit = 0;
+
+    public int getDefaultConcurrencyLimit() {
+        return defaultConcurrencyLimit;
+    }
+
+    /**
+     * 是否根据调用耗时自动调整各 dubbo 接口(服务)的并发上限
+     */
+    private boolean adaptiveLimit = false;
+
+    public boolean isAdaptiveLimit() {
+        return adaptiveLimit;
+    }
+
+    /**
+     * 自适应并发上限的初始值
+     */
+    private int adaptiveLimitInitial = 20;
+
+    public int getAdaptiveLimitInitial() {
+        return adaptiveLimitInitial;
+    }
+
+    /**
+     * 自适应并发上限的最小值
+     */
+    private int adaptiveLimitMin = 4;
+
+    public int getAdaptiveLimitMin() {
+        return adaptiveLimitMin;
+    }
+
+    /**
+     * 自适应并发上限的最大值
+     */
+    private int adaptiveLimitMax = 1000;
+
+    public int getAdaptiveLimitMax() {
+        return adaptiveLimitMax;
+    }
+
+    /**
+     * 网关排队时间的目标值(毫秒), 排队持续超过该值时开始丢弃请求, 为0时不丢弃
+     */
+    private int shedQueueTarget = 0;
+
+    public int getShedQueueTarget() {
+        return shedQueueTarget;
+    }
+
+    /**
+     * 判断排队是否持续积压的统计周期(毫秒), 未积压时排队时间超过该值的请求同样被丢弃
+     */
+    private int shedQueueInterval = 100;
+
+    public int getShedQueueInterval() {
+        return shedQueueInterval;
+    }
+
+    /**
+     * 请求速率限制规则, 格式为 dimension[=value]:rate[:burst], 多条规则以逗号分隔, dimension 为 appid、device、user、api 之一
+     */
+    private String rateLimits = null;
+
+    public String getRateLimits() {
+        return rateLimits;
+    }
+
+    /**
+     * 每条速率限制规则最多保留的令牌桶数量, 超出后淘汰最久未访问的令牌桶
+     */
+    private int rateLimitTableSize = 65536;
+
+    public int getRateLimitTableSize() {
+        return rateLimitTableSize;
+    }
+
+    /**
+     * 是否开启 dubbo 接口的熔断
+     */
+    private boolean circuitBreaker = false;
+
+    public boolean isCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 熔断器是否由同一 dubbo 接口(服务)的所有接口共享, 否则每个接口独立熔断
+     */
+    private boolean circuitBreakerPerService = false;
+
+    public boolean isCircuitBreakerPerService() {
+        return circuitBreakerPerService;
+    }
+
+    /**
+     * 熔断统计窗口的时长(秒)
+     */
+    private int circuitBreakerWindow = 10;
+
+    public int getCircuitBreakerWindow() {
+        return circuitBreakerWindow;
+    }
+
+    /**
+     * 统计窗口内的调用数达到该值后才检查是否需要熔断
+     */
+    private int circuitBreakerMinCalls = 20;
+
+    public int getCircuitBreakerMinCalls() {
+        return circuitBreakerMinCalls;
+    }
+
+    /**
+     * 触发熔断的失败率, 为0时不按失败率熔断
+     */
+    private double circuitBreakerFailureRate = 0.5;
+
+    public double getCircuitBreakerFailureRate() {
+        return circuitBreakerFailureRate;
+    }
+
+    /**
+     * 触发熔断的慢调用比例, 为0时不按慢调用熔断
+     */
+    private double circuitBreakerSlowRate = 0.8;
+
+    public double getCircuitBreakerSlowRate() {
+        return circuitBreakerSlowRate;
+    }
+
+    /**
+     * 慢调用的耗时阈值(毫秒), 为0时不统计慢调用
+     */
+    private int circuitBreakerSlowCall = 0;
+
+    public int getCircuitBreakerSlowCall() {
+        return circuitBreakerSlowCall;
+    }
+
+    /**
+     * 熔断打开后进入半开状态前的时间(毫秒)
+     */
+    private int circuitBreakerOpenTime = 5000;
+
+    public int getCircuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    /**
+     * 半开状态下放行的探测调用数, 全部成功后关闭熔断
+     */
+    private int circuitBreakerProbes = 5;
+
+    public int getCircuitBreakerProbes() {
+        return circuitBreakerProbes;
+    }
+
+    /**
+     * 是否对幂等接口发起对冲请求, 仅在 dubbo 异步调用时生效
+     */
+    private boolean hedge = false;
+
+    public boolean isHedge() {
+        return hedge;
+    }
+
+    /**
+     * 固定的对冲延时(毫秒), 为0时使用接口最近一分钟调用耗时的分位数
+     */
+    private int hedgeDelay = 0;
+
+    public int getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    /**
+     * 作为对冲延时的调用耗时分位数
+     */
+    private double hedgeDelayPercentile = 0.95;
+
+    public double getHedgeDelayPercentile() {
+        return hedgeDelayPercentile;
+    }
+
+    /**
+     * 对冲请求占调用量的最大比例
+     */
+    private double hedgeBudget = 0.05;
+
+    public double getHedgeBudget() {
+        return hedgeBudget;
+    }
+
+    /**
+     * 服务超时或异常时返回最近一次成功结果的接口, 多个接口名以逗号分隔
+     */
+    private HashSet<String> lastKnownGoodApis = new HashSet<String>();
+
+    private void setLastKnownGoodApis(String list) {
+        if (list != null && list.length() > 0) {
+            for (String name : list.split(",")) {
+                if (name.trim().length() > 0) {
+                    lastKnownGoodApis.add(name.trim());
+                }
+            }
+        }
+    }
+
+    public HashSet<String> getLastKnownGoodApis() {
+        return lastKnownGoodApis;
+    }
+
+    /**
+     * 最多保存的成功结果数量
+     */
+    private int lastKnownGoodSize = 4096;
+
+    public int getLastKnownGoodSize() {
+        return lastKnownGoodSize;
+    }
+
+    /**
+     * 单个成功结果的最大字节数, 超过的结果不保存
+     */
+    private int lastKnownGoodMaxBytes = 65536;
+
+    public int getLastKnownGoodMaxBytes() {
+        return lastKnownGoodMaxBytes;
+    }
+
+    /**
+     * 成功结果的最长保留时间(毫秒), 超过后不再返回
+     */
+    private int lastKnownGoodTtl = 600000;
+
+    public int getLastKnownGoodTtl() {
+        return lastKnownGoodTtl;
+    }
+
+    /**
+     * 覆盖 @HttpApi 中声明的接口优先级, 格式为 name:priority,name:priority, priority 为 ApiPriority 中的名称
+     */
+    private HashMap<String, ApiPriority> apiPriorities = new HashMap<String, ApiPriority>();
+
+    public HashMap<String, ApiPriority> getApiPriorities() {
+        return apiPriorities;
+    }
+
+    /**
+     * 按应用编号指定的请求优先级, 格式为 appid:priority,appid:priority, 优先于接口的优先级
+     */
+    private HashMap<String, ApiPriority> appPriorities = new HashMap<String, ApiPriority>();
+
+    public HashMap<String, ApiPriority> getAppPriorities() {
+        return appPriorities;
+    }
+
+    private void setPriorities(String list, HashMap<String, ApiPriority> priorities) {
+        if (list != null && list.length() > 0) {
+            for (String item : list.split(",")) {
+                String[] kv = item.trim().split(":");
+                ApiPriority priority = null;
+                if (kv.length == 2) {
+                    try {
+                        priority = ApiPriority.valueOf(kv[1].trim());
+                    } catch (IllegalArgumentException e) {
+                        // 优先级名称错误
+                    }
+                }
+                if (priority == null) {
+                    logger.warn("invalid priority config:" + item);
+                } else {
+                    priorities.put(kv[0].trim(), priority);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按请求所需安全级别指定的请求优先级, 格式为 securityType:priority, 按配置顺序匹配, 应用编号未配置优先级时使用
+     */
+    private LinkedHashMap<SecurityType, ApiPriority> securityPriorities = new LinkedHashMap<SecurityType, ApiPriority>();
+
+    private void setSecurityPriorities(String list) {
+        HashMap<String, ApiPriority> map = new LinkedHashMap<String, ApiPriority>();
+        setPriorities(list, map);
+        for (Map.Entry<String, ApiPriority> e : map.entrySet()) {
+            try {
+                securityPriorities.put(SecurityType.valueOf(e.getKey()), e.getValue());
+            } catch (IllegalArgumentException ex) {
+                logger.warn("invalid security priority config:" + e.getKey());
+            }
+        }
+    }
+
+    public LinkedHashMap<SecurityType, ApiPriority> getSecurityPriorities() {
+        return securityPriorities;
+    }
+
+    /**
+     * 准入控制的并发请求数上限, 各优先级按比例使用, 为0时不限制
+     */
+    private int admissionMaxInFlight = 0;
+
+    public int getAdmissionMaxInFlight() {
+        return admissionMaxInFlight;
+    }
+
+    /**
+     * 准入控制的排队时间目标值(毫秒), 低优先级请求的排队时间超过该值时被拒绝, 为0时不检查
+     */
+    private int admissionQueueTarget = 0;
+
+    public int getAdmissionQueueTarget() {
+        return admissionQueueTarget;
+    }
+
     private static String executorName = null;
 
     private static class executorFactoryLazyLoader {
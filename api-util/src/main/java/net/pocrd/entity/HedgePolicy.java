@@ -0,0 +1,141 @@
+package net.pocrd.entity;
+
+import net.pocrd.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 幂等接口的对冲请求策略: 调用超过对冲延时仍未返回时向另一个服务提供者发起相同的调用, 以先返回者为准。
+ * 对冲延时为固定值或接口最近一分钟调用耗时的指定分位数。所有接口共享一个对冲预算, 每次调用按配置比例积累预算,
+ * 每次对冲消耗一个, 从而将对冲带来的额外调用量限制在该比例以内
+ */
+public final class HedgePolicy {
+    private static final long UNIT            = 1000;
+    private static final long MAX_BUDGET      = 10 * UNIT;
+    private static final int  MIN_SAMPLES     = 100;
+    private static final long REFRESH_MILLIS  = 1000;
+
+    private static final AtomicLong budget    = new AtomicLong(MAX_BUDGET);
+    private static final LongAdder  exhausted = new LongAdder();
+
+    private final    LatencyHistogram latency;
+    private final    long             fixedDelay;
+    private final    double           percentile;
+    private final    long             deposit;
+    private final    LongAdder        hedged = new LongAdder();
+    private final    LongAdder        wins   = new LongAdder();
+    private volatile long             delay  = -1;
+    private volatile long             refreshAt;
+
+    /**
+     * @param latency    接口的调用耗时统计, 用于计算对冲延时
+     * @param fixedDelay 固定的对冲延时(毫秒), 不大于0时使用耗时分位数
+     * @param percentile 作为对冲延时的耗时分位数
+     * @param budgetRate 对冲请求占调用量的最大比例
+     */
+    public HedgePolicy(LatencyHistogram latency, long fixedDelay, double percentile, double budgetRate) {
+        this.latency = latency;
+        this.fixedDelay = fixedDelay;
+        this.percentile = percentile;
+        this.deposit = (long)(budgetRate * UNIT);
+    }
+
+    /**
+     * 按 net.pocrd.hedge* 配置创建接口的对冲策略
+     */
+    public static HedgePolicy create(ApiMethodStats stats) {
+        CommonConfig config = CommonConfig.getInstance();
+        return new HedgePolicy(stats.rpcLatency, config.getHedgeDelay(), config.getHedgeDelayPercentile(), config.getHedgeBudget());
+    }
+
+    /**
+     * 当前的对冲延时(毫秒), 耗时样本不足时返回-1, 表示暂不对冲
+     */
+    public long getDelay() {
+        if (fixedDelay > 0) {
+            return fixedDelay;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= refreshAt) {
+            refreshAt = now + REFRESH_MILLIS;
+            LatencyHistogram.Snapshot snapshot = latency.windowSnapshot();
+            delay = snapshot.getCount() < MIN_SAMPLES ? -1 : Math.max(1, snapshot.getPercentile(percentile) / 1000);
+        }
+        return delay;
+    }
+
+    /**
+     * 每次可对冲的调用积累预算
+     */
+    public void deposit() {
+        while (true) {
+            long current = budget.get();
+            if (current >= MAX_BUDGET || budget.compareAndSet(current, Math.min(MAX_BUDGET, current + deposit))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 消耗一次对冲的预算, 预算不足时返回 false
+     */
+    public boolean tryHedge() {
+        while (true) {
+            long current = budget.get();
+            if (current < UNIT) {
+                exhausted.increment();
+                return false;
+            }
+            if (budget.compareAndSet(current, current - UNIT)) {
+                hedged.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 对冲请求未能发起(如只有一个服务提供者)时退还预算
+     */
+    public void cancel() {
+        hedged.decrement();
+        while (true) {
+            long current = budget.get();
+            if (current >= MAX_BUDGET || budget.compareAndSet(current, Math.min(MAX_BUDGET, current + UNIT))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 记录对冲请求是否先于原请求返回
+     */
+    public void recordResult(boolean hedgeWon) {
+        if (hedgeWon) {
+            wins.increment();
+        }
+    }
+
+    public long getHedgedCount() {
+        return hedged.sum();
+    }
+
+    public long getWinCount() {
+        return wins.sum();
+    }
+
+    /**
+     * 对冲请求先于原请求返回的比例
+     */
+    public double getWinRate() {
+        long count = hedged.sum();
+        return count == 0 ? 0 : (double)wins.sum() / count;
+    }
+
+    /**
+     * 因预算不足未能发起的对冲次数
+     */
+    public static long getExhaustedCount() {
+        return exhausted.sum();
+    }
+}
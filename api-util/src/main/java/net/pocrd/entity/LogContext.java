@@ -0,0 +1,82 @@
+package net.pocrd.entity;
+
+import net.pocrd.define.CommonParameter;
+import org.slf4j.MDC;
+
+/**
+ * 请求级别的日志上下文, 保存调用编号、客户端ip、设备号、应用编号、用户编号及当前接口名, 由 LogContextConverter 在输出日志时直接读取。
+ * 与 MDC 相比写入时不产生额外的对象, 每个线程绑定一个实例并随 ApiContext 复用。
+ * 开启 net.pocrd.logMdc 时同时写入 MDC, 以兼容使用 %X{} 的日志配置。非线程安全
+ */
+public final class LogContext {
+    public static final String CLIENT_IP = "_cip";
+
+    private static final String[] KEYS = new String[] { CommonParameter.callId, CLIENT_IP, CommonParameter.deviceId,
+                                                        CommonParameter.applicationId, CommonParameter.userId, CommonParameter.method };
+
+    private static final boolean                 mdc     = CommonConfig.getInstance().isLogMdc();
+    private static final ThreadLocal<LogContext> current = new ThreadLocal<LogContext>();
+
+    private final String[] values = new String[KEYS.length];
+
+    /**
+     * 将日志上下文绑定到当前线程
+     */
+    public static void bind(LogContext context) {
+        if (current.get() != context) {
+            current.set(context);
+        }
+    }
+
+    /**
+     * 当前线程绑定的日志上下文, 未绑定时返回 null
+     */
+    public static LogContext current() {
+        return current.get();
+    }
+
+    /**
+     * 日志上下文支持的键的序号, 不支持时返回-1
+     */
+    public static int indexOf(String key) {
+        for (int i = 0; i < KEYS.length; i++) {
+            if (KEYS[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void put(String key, String value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+        }
+        if (mdc) {
+            MDC.put(key, value);
+        }
+    }
+
+    public String get(int index) {
+        return values[index];
+    }
+
+    public void remove(String key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = null;
+        }
+        if (mdc) {
+            MDC.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = null;
+        }
+        if (mdc) {
+            MDC.clear();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.pocrd.entity;
+
+/**
+ * 请求各阶段的时间线, 记录每个阶段完成时的纳秒时间戳, 存储空间在创建时预先分配并随 ApiContext 复用。
+ * 未启用时 mark 不做任何操作, 超出容量的阶段被忽略。非线程安全
+ */
+public final class RequestTimeline {
+    public static final int START             = 0;
+    public static final int COMMON_PARSED     = 1;
+    public static final int CALLER_PARSED     = 2;
+    public static final int SIGNATURE_CHECKED = 3;
+    public static final int METHOD_PARSED     = 4;
+    public static final int INJECTED          = 5;
+    public static final int DISPATCHED        = 6;
+    public static final int COMPLETED         = 7;
+    public static final int SERIALIZED        = 8;
+    public static final int OUTPUT            = 9;
+
+    private static final String[] PHASE_NAMES = new String[] { "start", "commonParsed", "callerParsed", "signatureChecked", "methodParsed",
+                                                               "injected", "dispatched", "completed", "serialized", "output" };
+
+    private final int[]    phases;
+    private final String[] methods;
+    private final long[]   nanos;
+    private       int      size;
+    private       boolean  enabled;
+
+    public RequestTimeline(int capacity) {
+        phases = new int[capacity];
+        methods = new String[capacity];
+        nanos = new long[capacity];
+    }
+
+    /**
+     * 开始记录一个新请求
+     */
+    public void start(boolean enabled) {
+        clear();
+        this.enabled = enabled;
+        mark(START, null);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录阶段完成的时间, method 为该阶段对应的接口名, 请求级别的阶段为 null
+     */
+    public void mark(int phase, String method) {
+        if (!enabled || size == phases.length) {
+            return;
+        }
+        phases[size] = phase;
+        methods[size] = method;
+        nanos[size] = System.nanoTime();
+        size++;
+    }
+
+    /**
+     * 从开始记录到现在经过的时间(纳秒)
+     */
+    public long getElapsedNanos() {
+        return size == 0 ? 0 : System.nanoTime() - nanos[0];
+    }
+
+    /**
+     * 按 阶段[接口] +距开始的微秒数(距上一阶段的微秒数) 的格式输出时间线
+     */
+    public void appendTo(StringBuilder sb) {
+        for (int i = 1; i < size; i++) {
+            if (i > 1) {
+                sb.append(' ');
+            }
+            sb.append(PHASE_NAMES[phases[i]]);
+            if (methods[i] != null) {
+                sb.append('[').append(methods[i]).append(']');
+            }
+            sb.append(" +").append((nanos[i] - nanos[0]) / 1000).append('(').append((nanos[i] - nanos[i - 1]) / 1000).append(')');
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            methods[i] = null;
+        }
+        size = 0;
+        enabled = false;
+    }
+}
@@ -0,0 +1,143 @@
+package net.pocrd.entity;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定容量的令牌桶表, 每个键对应一个令牌桶, 以键的64位哈希开放寻址, 各槽位独立 CAS 更新, 不存在全局锁。
+ * 桶的状态为一个 long: 高38位为上次补充令牌的时间(毫秒), 低26位为剩余令牌数(千分之一个令牌为单位)。
+ * 探测范围内没有空位时淘汰其中最久未访问的桶, 因此表的大小不会随设备号等键的数量增长, 被淘汰的键重新出现时获得一个满的桶
+ */
+public final class TokenBucketTable {
+    private static final int  PROBES      = 8;
+    private static final int  TOKEN_BITS  = 26;
+    private static final long TOKEN_MASK  = (1L << TOKEN_BITS) - 1;
+    private static final long UNIT        = 1000;
+    private static final long MAX_BURST   = TOKEN_MASK / UNIT;
+
+    private final int             mask;
+    private final long            rate;
+    private final long            capacity;
+    private final long            base;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray states;
+    private final LongAdder       rejected = new LongAdder();
+
+    /**
+     * @param size  表的容量, 向上取整为2的幂
+     * @param rate  每秒补充的令牌数
+     * @param burst 桶的容量, 即允许的突发请求数
+     */
+    public TokenBucketTable(int size, int rate, int burst) {
+        int n = Integer.highestOneBit(Math.max(PROBES, size) - 1) << 1;
+        this.mask = n - 1;
+        this.rate = Math.max(1, rate);
+        this.capacity = Math.min(MAX_BURST, Math.max(1, burst)) * UNIT;
+        this.base = System.currentTimeMillis();
+        this.keys = new AtomicLongArray(n);
+        this.states = new AtomicLongArray(n);
+    }
+
+    /**
+     * 字符串键的64位哈希(FNV-1a), 结果不为0
+     */
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    public boolean tryAcquire(String key) {
+        return tryAcquire(hash(key), System.currentTimeMillis());
+    }
+
+    /**
+     * 从键对应的桶中取出一个令牌, 令牌不足时返回 false
+     */
+    public boolean tryAcquire(long hash, long now) {
+        long time = Math.max(0, now - base);
+        int slot = find(hash, time);
+        while (true) {
+            long state = states.get(slot);
+            long last = state >>> TOKEN_BITS;
+            long tokens = state & TOKEN_MASK;
+            if (time > last) {
+                tokens = Math.min(capacity, tokens + (time - last) * rate);
+                last = time;
+            }
+            if (tokens < UNIT) {
+                rejected.increment();
+                return false;
+            }
+            if (states.compareAndSet(slot, state, (last << TOKEN_BITS) | (tokens - UNIT))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 退还一个令牌, 用于请求已取得令牌但随后被其他限制拒绝的情况, 键已被淘汰时忽略
+     */
+    public void release(long hash) {
+        int start = (int)(hash ^ (hash >>> 32)) & mask;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (keys.get(slot) == hash) {
+                while (true) {
+                    long state = states.get(slot);
+                    long tokens = state & TOKEN_MASK;
+                    if (tokens >= capacity || states.compareAndSet(slot, state, (state & ~TOKEN_MASK) | Math.min(capacity, tokens + UNIT))) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 查找键所在的槽位, 不存在时占用空位或淘汰探测范围内最久未访问的桶, 新桶为满状态。
+     * 淘汰时其他线程可能同时占用了该槽位, 此时重新探测, 保证返回的槽位属于当前键
+     */
+    private int find(long hash, long time) {
+        int start = (int)(hash ^ (hash >>> 32)) & mask;
+        while (true) {
+            int oldest = start;
+            long oldestKey = 0;
+            long oldestTime = Long.MAX_VALUE;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (start + i) & mask;
+                long k = keys.get(slot);
+                if (k == hash) {
+                    return slot;
+                }
+                if (k == 0) {
+                    if (keys.compareAndSet(slot, 0, hash)) {
+                        states.set(slot, (time << TOKEN_BITS) | capacity);
+                        return slot;
+                    }
+                    if (keys.get(slot) == hash) {
+                        return slot;
+                    }
+                    continue;
+                }
+                long t = states.get(slot) >>> TOKEN_BITS;
+                if (t < oldestTime) {
+                    oldestTime = t;
+                    oldest = slot;
+                    oldestKey = k;
+                }
+            }
+            if (oldestKey != 0 && keys.compareAndSet(oldest, oldestKey, hash)) {
+                states.set(oldest, (time << TOKEN_BITS) | capacity);
+                return oldest;
+            }
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -17,4 +17,7 @@ public class CallState implements Serializable {
 
     @Description("返回信息")
     public String msg;
+
+    @Description("服务不可用时返回的是缓存的历史数据, 值为该数据的生成时间(毫秒时间戳), 否则为空")
+    public String stale;
 }
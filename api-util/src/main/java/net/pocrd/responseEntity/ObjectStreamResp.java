@@ -0,0 +1,18 @@
+package net.pocrd.responseEntity;
+
+import java.util.Collection;
+
+/**
+ * 流式输出的对象集合返回值, 序列化格式与 ObjectArrayResp 一致, 序列化时逐个遍历元素而不复制为数组
+ */
+public final class ObjectStreamResp {
+    public Iterable<?> value;
+
+    public static ObjectStreamResp convert(Collection collection) {
+        ObjectStreamResp resp = new ObjectStreamResp();
+        if (collection != null && collection.size() > 0) {
+            resp.value = collection;
+        }
+        return resp;
+    }
+}
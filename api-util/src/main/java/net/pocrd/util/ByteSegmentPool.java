@@ -0,0 +1,60 @@
+package net.pocrd.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 定长字节块缓冲池, 供 SegmentedByteOutputStream 分段存放序列化数据。
+ * 池中最多保留 maxPooled 个空闲块, 超出部分在归还时直接丢弃交由gc回收
+ */
+public final class ByteSegmentPool {
+    private final int                           segmentSize;
+    private final int                           maxPooled;
+    private final ConcurrentLinkedQueue<byte[]> free   = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger                 pooled = new AtomicInteger(0);
+
+    public ByteSegmentPool(int segmentSize, int maxPooled) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segment size must be positive:" + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        this.maxPooled = maxPooled < 0 ? 0 : maxPooled;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * 当前池中空闲块数量
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+
+    /**
+     * 获取一个字节块, 池中无空闲块时新建
+     */
+    public byte[] acquire() {
+        byte[] segment = free.poll();
+        if (segment != null) {
+            pooled.decrementAndGet();
+            return segment;
+        }
+        return new byte[segmentSize];
+    }
+
+    /**
+     * 归还字节块, 池中空闲块已达上限时丢弃
+     */
+    public void release(byte[] segment) {
+        if (segment == null || segment.length != segmentSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(segment);
+    }
+}
@@ -0,0 +1,222 @@
+package net.pocrd.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+
+/**
+ * 使用 DeflaterPool 中的压缩器输出 gzip 或 zlib(http deflate) 格式的压缩流。
+ * 写入完成后必须调用 finish 输出尾部并归还压缩器, 异常情况下调用 release 归还压缩器
+ */
+public final class CompressOutputStream extends OutputStream {
+    public static final int NONE    = 0;
+    public static final int GZIP    = 1;
+    public static final int DEFLATE = 2;
+
+    private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    private static final byte[] ZLIB_HEADER = new byte[] { 0x78, (byte)0x9c };
+
+    private final OutputStream       out;
+    private final int                encoding;
+    private final Checksum           checksum;
+    private       DeflaterPool       pool;
+    private       DeflaterPool.Entry entry;
+    private       int                inPos;
+    private       long               inBytes;
+    private       long               outBytes;
+
+    public CompressOutputStream(OutputStream out, DeflaterPool pool, int encoding) throws IOException {
+        if (encoding != GZIP && encoding != DEFLATE) {
+            throw new IllegalArgumentException("unsupported encoding:" + encoding);
+        }
+        this.out = out;
+        this.encoding = encoding;
+        this.checksum = encoding == GZIP ? new CRC32() : new Adler32();
+        this.pool = pool;
+        this.entry = pool.acquire();
+        byte[] header = encoding == GZIP ? GZIP_HEADER : ZLIB_HEADER;
+        out.write(header);
+        outBytes = header.length;
+    }
+
+    /**
+     * 根据 Accept-Encoding 选择压缩方式, 优先使用 gzip, 不接受压缩时返回 NONE
+     */
+    public static int negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.length() == 0) {
+            return NONE;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String item : acceptEncoding.split(",")) {
+            String name = item;
+            int index = item.indexOf(';');
+            if (index >= 0) {
+                name = item.substring(0, index);
+                if (isZeroQuality(item.substring(index + 1))) {
+                    continue;
+                }
+            }
+            name = name.trim();
+            if ("gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+                gzip = true;
+            } else if ("deflate".equalsIgnoreCase(name)) {
+                deflate = true;
+            }
+        }
+        return gzip ? GZIP : deflate ? DEFLATE : NONE;
+    }
+
+    private static boolean isZeroQuality(String params) {
+        for (String p : params.split(";")) {
+            p = p.trim();
+            if (p.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static String getName(int encoding) {
+        return encoding == GZIP ? "gzip" : encoding == DEFLATE ? "deflate" : null;
+    }
+
+    /**
+     * 压缩前的字节数
+     */
+    public long getInBytes() {
+        return inBytes;
+    }
+
+    /**
+     * 压缩后(包含头尾)的字节数
+     */
+    public long getOutBytes() {
+        return outBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (entry == null) {
+            throw new IOException("compress stream already finished.");
+        }
+        if (inPos == entry.input.length) {
+            flushInput();
+        }
+        entry.input[inPos++] = (byte)b;
+    }
+
+    /**
+     * 较小的写入先合并到输入缓冲区中, 减少调用 Deflater 的次数
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (entry == null) {
+            throw new IOException("compress stream already finished.");
+        }
+        if (len >= entry.input.length) {
+            flushInput();
+            compress(b, off, len);
+        } else {
+            if (inPos + len > entry.input.length) {
+                flushInput();
+            }
+            System.arraycopy(b, off, entry.input, inPos, len);
+            inPos += len;
+        }
+    }
+
+    private void flushInput() throws IOException {
+        if (inPos > 0) {
+            compress(entry.input, 0, inPos);
+            inPos = 0;
+        }
+    }
+
+    private void compress(byte[] b, int off, int len) throws IOException {
+        checksum.update(b, off, len);
+        inBytes += len;
+        Deflater deflater = entry.deflater;
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            deflate(deflater);
+        }
+    }
+
+    private void deflate(Deflater deflater) throws IOException {
+        int n = deflater.deflate(entry.buffer, 0, entry.buffer.length);
+        if (n > 0) {
+            out.write(entry.buffer, 0, n);
+            outBytes += n;
+        }
+    }
+
+    /**
+     * 输出剩余的压缩数据及尾部校验信息, 并归还压缩器, 不关闭底层输出流
+     */
+    public void finish() throws IOException {
+        if (entry == null) {
+            return;
+        }
+        try {
+            flushInput();
+            Deflater deflater = entry.deflater;
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate(deflater);
+            }
+            long sum = checksum.getValue();
+            byte[] trailer;
+            if (encoding == GZIP) {
+                trailer = new byte[8];
+                writeIntLE(trailer, 0, sum);
+                writeIntLE(trailer, 4, inBytes);
+            } else {
+                trailer = new byte[] { (byte)(sum >>> 24), (byte)(sum >>> 16), (byte)(sum >>> 8), (byte)sum };
+            }
+            out.write(trailer);
+            outBytes += trailer.length;
+        } finally {
+            release();
+        }
+    }
+
+    private static void writeIntLE(byte[] buf, int offset, long v) {
+        buf[offset] = (byte)v;
+        buf[offset + 1] = (byte)(v >>> 8);
+        buf[offset + 2] = (byte)(v >>> 16);
+        buf[offset + 3] = (byte)(v >>> 24);
+    }
+
+    /**
+     * 归还压缩器, 可重复调用
+     */
+    public void release() {
+        if (entry != null) {
+            pool.release(entry);
+            entry = null;
+            pool = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package net.pocrd.util;
+
+import java.math.BigInteger;
+
+/**
+ * 将 long/float/double 直接编码为 ascii 字节, 编码结果写入内部缓冲区 bytes[0, len), 不创建中间字符串。
+ * double/float 采用 Schubfach 算法输出可以精确还原的最短十进制表示, 格式与 Double.toString/Float.toString 一致
+ * (plain 格式用于 [10^-3, 10^7), 其余使用 d.dddE±n 格式)。
+ * 实例非线程安全, 由 ValueEncoder 按线程缓存复用。
+ */
+final class DecimalEncoder {
+    // double 相关常量
+    private static final int  D_P       = 53;
+    private static final int  D_W       = 11;
+    private static final int  D_Q_MIN   = -1074;
+    private static final long D_C_TINY  = 3;
+    private static final int  D_H       = 17;
+    private static final long D_C_MIN   = 1L << D_P - 1;
+    private static final int  D_BQ_MASK = (1 << D_W) - 1;
+    private static final long D_T_MASK  = (1L << D_P - 1) - 1;
+
+    // float 相关常量
+    private static final int F_P       = 24;
+    private static final int F_W       = 8;
+    private static final int F_Q_MIN   = -149;
+    private static final int F_C_TINY  = 8;
+    private static final int F_H       = 9;
+    private static final int F_C_MIN   = 1 << F_P - 1;
+    private static final int F_BQ_MASK = (1 << F_W) - 1;
+    private static final int F_T_MASK  = (1 << F_P - 1) - 1;
+
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+    private static final int  MASK_28 = (1 << 28) - 1;
+
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L
+    };
+
+    /**
+     * 10^-k = β 2^r, 2^125 <= β < 2^126, g = floor(β) + 1, 按 k 顺序存放 g 的高 63 位与低 63 位
+     */
+    private static final long[] G = new long[(K_MAX - K_MIN + 1) << 1];
+
+    private static final byte[] DIGIT_TENS = new byte[100];
+    private static final byte[] DIGIT_ONES = new byte[100];
+
+    private static final byte[] NAN           = { 'N', 'a', 'N' };
+    private static final byte[] PLUS_INF      = { 'I', 'n', 'f', 'i', 'n', 'i', 't', 'y' };
+    private static final byte[] MINUS_INF     = { '-', 'I', 'n', 'f', 'i', 'n', 'i', 't', 'y' };
+    private static final byte[] PLUS_ZERO     = { '0', '.', '0' };
+    private static final byte[] MINUS_ZERO    = { '-', '0', '.', '0' };
+    private static final byte[] LONG_MIN_VALUE = String.valueOf(Long.MIN_VALUE).getBytes();
+
+    static {
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int e = -k;
+            int r = flog2pow10(e) - 125;
+            BigInteger g;
+            if (e >= 0) {
+                BigInteger p = BigInteger.TEN.pow(e);
+                g = r >= 0 ? p.shiftRight(r) : p.shiftLeft(-r);
+            } else {
+                g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(-e));
+            }
+            g = g.add(BigInteger.ONE);
+            G[k - K_MIN << 1] = g.shiftRight(63).longValue();
+            G[k - K_MIN << 1 | 1] = g.longValue() & MASK_63;
+        }
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (byte)('0' + i / 10);
+            DIGIT_ONES[i] = (byte)('0' + i % 10);
+        }
+    }
+
+    /**
+     * 编码结果, long 最长 20 字节, double 最长 24 字节
+     */
+    final byte[] bytes = new byte[32];
+    private int index;
+
+    /**
+     * 编码 long 值, 返回写入 bytes 的长度
+     */
+    int encode(long v) {
+        if (v == Long.MIN_VALUE) {
+            System.arraycopy(LONG_MIN_VALUE, 0, bytes, 0, LONG_MIN_VALUE.length);
+            return LONG_MIN_VALUE.length;
+        }
+        int len = v < 0 ? stringSize(-v) + 1 : stringSize(v);
+        int pos = len;
+        long q;
+        int r;
+        boolean negative = v < 0;
+        if (negative) {
+            v = -v;
+        }
+        // 每次输出两位数字
+        while (v >= Integer.MAX_VALUE) {
+            q = v / 100;
+            r = (int)(v - q * 100);
+            v = q;
+            bytes[--pos] = DIGIT_ONES[r];
+            bytes[--pos] = DIGIT_TENS[r];
+        }
+        int i = (int)v;
+        int q2;
+        while (i >= 100) {
+            q2 = i / 100;
+            r = i - q2 * 100;
+            i = q2;
+            bytes[--pos] = DIGIT_ONES[r];
+            bytes[--pos] = DIGIT_TENS[r];
+        }
+        if (i >= 10) {
+            bytes[--pos] = DIGIT_ONES[i];
+            bytes[--pos] = DIGIT_TENS[i];
+        } else {
+            bytes[--pos] = (byte)('0' + i);
+        }
+        if (negative) {
+            bytes[--pos] = '-';
+        }
+        return len;
+    }
+
+    private static int stringSize(long x) {
+        long p = 10;
+        for (int i = 1; i < 19; i++) {
+            if (x < p) {
+                return i;
+            }
+            p = 10 * p;
+        }
+        return 19;
+    }
+
+    /**
+     * 编码 double 值, 返回写入 bytes 的长度
+     */
+    int encode(double v) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & D_T_MASK;
+        int bq = (int)(bits >>> D_P - 1) & D_BQ_MASK;
+        if (bq < D_BQ_MASK) {
+            index = -1;
+            if (bits < 0) {
+                append('-');
+            }
+            if (bq != 0) {
+                // normal value, mq = -q
+                int mq = -D_Q_MIN + 1 - bq;
+                long c = D_C_MIN | t;
+                // 整数值的快速路径
+                if (0 < mq & mq < D_P) {
+                    long f = c >> mq;
+                    if (f << mq == c) {
+                        return toChars(f, 0);
+                    }
+                }
+                return toDecimal(-mq, c, 0);
+            }
+            if (t != 0) {
+                // subnormal value
+                return t < D_C_TINY ? toDecimal(D_Q_MIN, 10 * t, -1) : toDecimal(D_Q_MIN, t, 0);
+            }
+            return special(bits == 0 ? PLUS_ZERO : MINUS_ZERO);
+        }
+        if (t != 0) {
+            return special(NAN);
+        }
+        return special(bits > 0 ? PLUS_INF : MINUS_INF);
+    }
+
+    /**
+     * 编码 float 值, 返回写入 bytes 的长度
+     */
+    int encode(float v) {
+        int bits = Float.floatToRawIntBits(v);
+        int t = bits & F_T_MASK;
+        int bq = (bits >>> F_P - 1) & F_BQ_MASK;
+        if (bq < F_BQ_MASK) {
+            index = -1;
+            if (bits < 0) {
+                append('-');
+            }
+            if (bq != 0) {
+                int mq = -F_Q_MIN + 1 - bq;
+                int c = F_C_MIN | t;
+                if (0 < mq & mq < F_P) {
+                    int f = c >> mq;
+                    if (f << mq == c) {
+                        return toChars(f, 0);
+                    }
+                }
+                return toDecimal(-mq, c, 0);
+            }
+            if (t != 0) {
+                return t < F_C_TINY ? toDecimal(F_Q_MIN, 10 * t, -1) : toDecimal(F_Q_MIN, t, 0);
+            }
+            return special(bits == 0 ? PLUS_ZERO : MINUS_ZERO);
+        }
+        if (t != 0) {
+            return special(NAN);
+        }
+        return special(bits > 0 ? PLUS_INF : MINUS_INF);
+    }
+
+    private int special(byte[] value) {
+        System.arraycopy(value, 0, bytes, 0, value.length);
+        return value.length;
+    }
+
+    private int toDecimal(int q, long c, int dk) {
+        int out = (int)c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != D_C_MIN | q == D_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = G[k - K_MIN << 1];
+        long g0 = G[k - K_MIN << 1 | 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // sp10 = 10 floor(s / 10)
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return toChars(uin ? s : t, k + dk);
+        }
+        long cmp = vb - (s + t << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+    }
+
+    private int toDecimal(int q, int c, int dk) {
+        int out = c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != F_C_MIN | q == F_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+
+        long g = G[k - K_MIN << 1] + 1;
+
+        int vb = rop(g, cb << h);
+        int vbl = rop(g, cbl << h);
+        int vbr = rop(g, cbr << h);
+
+        int s = vb >> 2;
+        if (s >= 100) {
+            int sp10 = 10 * (int)(s * 1_717_986_919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k);
+            }
+        }
+        int t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return toChars(uin ? s : t, k + dk);
+        }
+        int cmp = vb - (s + t << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+    }
+
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static int rop(long g, long cp) {
+        long x1 = multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int)(vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+    }
+
+    /**
+     * 输出 f * 10^e, f 为 double 的有效数字
+     */
+    private int toChars(long f, int e) {
+        // 10^(len-1) <= f < 10^len
+        int len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        if (f >= POW10[len]) {
+            len += 1;
+        }
+        // 规格化为 10^(H-1) <= f < 10^H, 即 0.f * 10^e
+        f *= POW10[D_H - len];
+        e += len;
+
+        // 拆分为最高位 h, 接下来的 8 位 m 以及最低的 8 位 l
+        long hm = multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+        int l = (int)(f - 100_000_000L * hm);
+        int h = (int)(hm * 1_441_151_881L >>> 57);
+        int m = (int)(hm - 100_000_000 * h);
+
+        if (0 < e && e <= 7) {
+            // plain 格式, 无前导零
+            appendDigit(h);
+            int y = y(m);
+            int t;
+            int i = 1;
+            for (; i < e; ++i) {
+                t = 10 * y;
+                appendDigit(t >>> 28);
+                y = t & MASK_28;
+            }
+            append('.');
+            for (; i <= 8; ++i) {
+                t = 10 * y;
+                appendDigit(t >>> 28);
+                y = t & MASK_28;
+            }
+            lowDigits(l);
+        } else if (-3 < e && e <= 0) {
+            // plain 格式, 有前导零
+            appendDigit(0);
+            append('.');
+            for (; e < 0; ++e) {
+                appendDigit(0);
+            }
+            appendDigit(h);
+            append8Digits(m);
+            lowDigits(l);
+        } else {
+            // 科学计数法
+            appendDigit(h);
+            append('.');
+            append8Digits(m);
+            lowDigits(l);
+            exponent(e - 1);
+        }
+        return index + 1;
+    }
+
+    /**
+     * 输出 f * 10^e, f 为 float 的有效数字
+     */
+    private int toChars(int f, int e) {
+        int len = flog10pow2(Integer.SIZE - Integer.numberOfLeadingZeros(f));
+        if (f >= POW10[len]) {
+            len += 1;
+        }
+        f *= (int)POW10[F_H - len];
+        e += len;
+
+        // 拆分为最高位 h 以及接下来的 8 位 l
+        int h = (int)(f * 1_441_151_881L >>> 57);
+        int l = f - 100_000_000 * h;
+
+        if (0 < e && e <= 7) {
+            appendDigit(h);
+            int y = y(l);
+            int t;
+            int i = 1;
+            for (; i < e; ++i) {
+                t = 10 * y;
+                appendDigit(t >>> 28);
+                y = t & MASK_28;
+            }
+            append('.');
+            for (; i <= 8; ++i) {
+                t = 10 * y;
+                appendDigit(t >>> 28);
+                y = t & MASK_28;
+            }
+            removeTrailingZeroes();
+        } else if (-3 < e && e <= 0) {
+            appendDigit(0);
+            append('.');
+            for (; e < 0; ++e) {
+                appendDigit(0);
+            }
+            appendDigit(h);
+            append8Digits(l);
+            removeTrailingZeroes();
+        } else {
+            appendDigit(h);
+            append('.');
+            append8Digits(l);
+            removeTrailingZeroes();
+            exponent(e - 1);
+        }
+        return index + 1;
+    }
+
+    private void lowDigits(int l) {
+        if (l != 0) {
+            append8Digits(l);
+        }
+        removeTrailingZeroes();
+    }
+
+    /**
+     * 从左到右输出 8 位数字(含前导零)
+     */
+    private void append8Digits(int m) {
+        int y = y(m);
+        for (int i = 0; i < 8; ++i) {
+            int t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+    }
+
+    private void removeTrailingZeroes() {
+        while (bytes[index] == '0') {
+            --index;
+        }
+        // 保留小数点后的一个 0
+        if (bytes[index] == '.') {
+            ++index;
+        }
+    }
+
+    /**
+     * floor((a + 1) 2^28 / 10^8) - 1, a < 10^8
+     */
+    private static int y(int a) {
+        return (int)(multiplyHigh((long)(a + 1) << 28, 193_428_131_138_340_668L) >>> 20) - 1;
+    }
+
+    private void exponent(int e) {
+        append('E');
+        if (e < 0) {
+            append('-');
+            e = -e;
+        }
+        if (e < 10) {
+            appendDigit(e);
+            return;
+        }
+        int d;
+        if (e >= 100) {
+            // floor(e / 100)
+            d = e * 1_311 >>> 17;
+            appendDigit(d);
+            e -= 100 * d;
+        }
+        // floor(e / 10)
+        d = e * 103 >>> 10;
+        appendDigit(d);
+        appendDigit(e - 10 * d);
+    }
+
+    private void append(int c) {
+        bytes[++index] = (byte)c;
+    }
+
+    private void appendDigit(int d) {
+        bytes[++index] = (byte)('0' + d);
+    }
+
+    /**
+     * floor(e log10(2))
+     */
+    private static int flog10pow2(int e) {
+        return (int)(e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * floor(e log10(2) + log10(3/4))
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int)(e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /**
+     * floor(e log2(10))
+     */
+    private static int flog2pow10(int e) {
+        return (int)(e * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * 128 位有符号乘积的高 64 位, 等价于 java 9 的 Math.multiplyHigh
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+}
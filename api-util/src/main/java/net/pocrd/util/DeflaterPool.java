@@ -0,0 +1,65 @@
+package net.pocrd.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * 可复用的 Deflater 缓冲池, Deflater 采用 nowrap 模式, gzip/zlib 的头尾由 CompressOutputStream 自行输出。
+ * 池中最多保留 maxPooled 个空闲实例, 超出部分归还时直接释放其占用的本地内存
+ */
+public final class DeflaterPool {
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 池化的压缩器及其输入输出缓冲区
+     */
+    static final class Entry {
+        final Deflater deflater;
+        final byte[]   input  = new byte[BUFFER_SIZE];
+        final byte[]   buffer = new byte[BUFFER_SIZE];
+
+        Entry(int level) {
+            deflater = new Deflater(level, true);
+        }
+    }
+
+    private final int                          level;
+    private final int                          maxPooled;
+    private final ConcurrentLinkedQueue<Entry> free   = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger                pooled = new AtomicInteger(0);
+
+    public DeflaterPool(int level, int maxPooled) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("invalid compression level:" + level);
+        }
+        this.level = level;
+        this.maxPooled = maxPooled < 0 ? 0 : maxPooled;
+    }
+
+    /**
+     * 当前池中空闲实例数量
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+
+    Entry acquire() {
+        Entry entry = free.poll();
+        if (entry != null) {
+            pooled.decrementAndGet();
+            return entry;
+        }
+        return new Entry(level);
+    }
+
+    void release(Entry entry) {
+        entry.deflater.reset();
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            entry.deflater.end();
+            return;
+        }
+        free.offer(entry);
+    }
+}
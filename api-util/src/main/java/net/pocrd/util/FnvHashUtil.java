@@ -0,0 +1,50 @@
+package net.pocrd.util;
+
+import net.pocrd.annotation.ThreadSafe;
+
+/**
+ * 64位 FNV-1a 非加密哈希, 用于快速比较响应内容是否变化
+ */
+@ThreadSafe
+public class FnvHashUtil {
+    public static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME        = 0x100000001b3L;
+
+    public static final long update(long hash, byte[] bytes, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= PRIME;
+        }
+        return hash;
+    }
+
+    public static final long update(long hash, byte[] bytes) {
+        return update(hash, bytes, 0, bytes.length);
+    }
+
+    public static final long update(long hash, int value) {
+        for (int i = 0; i < 32; i += 8) {
+            hash ^= (value >>> i) & 0xff;
+            hash *= PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 按字符哈希字符串, 以长度前缀区分相邻字段的边界, null 与空字符串结果不同
+     */
+    public static final long update(long hash, String value) {
+        if (value == null) {
+            return update(hash, -1);
+        }
+        hash = update(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash ^= c & 0xff;
+            hash *= PRIME;
+            hash ^= c >>> 8;
+            hash *= PRIME;
+        }
+        return hash;
+    }
+}
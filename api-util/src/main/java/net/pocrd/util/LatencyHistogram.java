@@ -0,0 +1,217 @@
+package net.pocrd.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的对数-线性分桶延迟直方图(微秒), 每个2的整数次幂区间划分为8个子桶, 相对误差不超过12.5%。
+ * 同时维护累计数据以及由若干时间片组成的滑动窗口数据, 时间片在首次写入时惰性分配
+ */
+public final class LatencyHistogram {
+    private static final int  SUB_BITS     = 3;
+    private static final int  SUB_COUNT    = 1 << SUB_BITS;
+    private static final int  MAX_EXPONENT = 36; // 约19小时, 超出部分计入最后一个桶
+    public static final  int  BUCKET_COUNT = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+    public static final  long MAX_VALUE    = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    /**
+     * 直方图数据分片
+     */
+    private static final class Slot {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        final LongAdder       count  = new LongAdder();
+        final LongAdder       sum    = new LongAdder();
+        final AtomicLong      max    = new AtomicLong();
+        volatile long epoch;
+
+        void record(int index, long value) {
+            counts.incrementAndGet(index);
+            count.increment();
+            sum.add(value);
+            long m;
+            while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+            }
+        }
+
+        void clear(long newEpoch) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.set(0);
+            epoch = newEpoch;
+        }
+    }
+
+    private final long   slotMillis;
+    private final Slot   total = new Slot();
+    private final Slot[] window;
+
+    /**
+     * @param slotMillis 滑动窗口中每个时间片的长度
+     * @param slots      滑动窗口的时间片数量
+     */
+    public LatencyHistogram(long slotMillis, int slots) {
+        if (slotMillis <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("invalid window. slotMillis:" + slotMillis + " slots:" + slots);
+        }
+        this.slotMillis = slotMillis;
+        this.window = new Slot[slots];
+    }
+
+    /**
+     * 滑动窗口的时长
+     */
+    public long getWindowMillis() {
+        return slotMillis * window.length;
+    }
+
+    /**
+     * 取值所在的桶, 调用方需保证取值在 [0, MAX_VALUE] 范围内
+     */
+    public static int indexOf(long value) {
+        if (value < SUB_COUNT << 1) {
+            return (int)value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + (int)((value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    /**
+     * 桶的取值下界
+     */
+    public static long lowerBound(int index) {
+        if (index < SUB_COUNT << 1) {
+            return index;
+        }
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        return (long)(SUB_COUNT + index % SUB_COUNT) << (exp - SUB_BITS);
+    }
+
+    /**
+     * 桶的取值上界(包含)
+     */
+    public static long upperBound(int index) {
+        return index == BUCKET_COUNT - 1 ? MAX_VALUE : lowerBound(index + 1) - 1;
+    }
+
+    /**
+     * 记录一次耗时, 超出范围的值按边界值记录
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        } else if (micros > MAX_VALUE) {
+            micros = MAX_VALUE;
+        }
+        int index = indexOf(micros);
+        total.record(index, micros);
+        long epoch = System.currentTimeMillis() / slotMillis;
+        int i = (int)(epoch % window.length);
+        Slot slot = window[i];
+        if (slot == null) {
+            synchronized (window) {
+                slot = window[i];
+                if (slot == null) {
+                    slot = new Slot();
+                    slot.epoch = epoch;
+                    window[i] = slot;
+                }
+            }
+        }
+        if (slot.epoch != epoch) {
+            // 时间片过期, 由首个写入的线程负责清空, 并发写入时允许少量误差
+            synchronized (slot) {
+                if (slot.epoch != epoch) {
+                    slot.clear(epoch);
+                }
+            }
+        }
+        slot.record(index, micros);
+    }
+
+    /**
+     * 累计数据快照
+     */
+    public Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        s.add(total);
+        return s;
+    }
+
+    /**
+     * 滑动窗口数据快照
+     */
+    public Snapshot windowSnapshot() {
+        Snapshot s = new Snapshot();
+        long epoch = System.currentTimeMillis() / slotMillis;
+        for (Slot slot : window) {
+            if (slot != null && epoch - slot.epoch < window.length) {
+                s.add(slot);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * 直方图数据快照
+     */
+    public static final class Snapshot {
+        private final long[] counts = new long[BUCKET_COUNT];
+        private       long   count;
+        private       long   sum;
+        private       long   max;
+
+        private void add(Slot slot) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += slot.counts.get(i);
+            }
+            count += slot.count.sum();
+            sum += slot.sum.sum();
+            max = Math.max(max, slot.max.get());
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double)sum / count;
+        }
+
+        /**
+         * 分位数(取所在桶的上界, 且不超过最大值)
+         */
+        public long getPercentile(double quantile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long)Math.ceil(quantile * total);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
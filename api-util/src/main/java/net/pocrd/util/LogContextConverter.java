@@ -0,0 +1,40 @@
+package net.pocrd.util;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import net.pocrd.entity.LogContext;
+
+import java.util.Map;
+
+/**
+ * 从 LogContext 中读取请求信息的 logback 转换器, 参数与 MDC 的键相同, 配置方式:
+ * <pre>
+ * &lt;conversionRule conversionWord="ctx" converterClass="net.pocrd.util.LogContextConverter"/&gt;
+ * &lt;pattern&gt;%d %ctx{_cid} %ctx{_mt} %msg%n&lt;/pattern&gt;
+ * </pre>
+ * 日志在其他线程中格式化时(如 AsyncAppender)无法读取 LogContext, 此时读取事件中的 MDC, 需要开启 net.pocrd.logMdc
+ */
+public class LogContextConverter extends ClassicConverter {
+    private String key;
+    private int    index;
+
+    @Override
+    public void start() {
+        key = getFirstOption();
+        index = key == null ? -1 : LogContext.indexOf(key);
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        String value = null;
+        LogContext context = index >= 0 ? LogContext.current() : null;
+        if (context != null && Thread.currentThread().getName().equals(event.getThreadName())) {
+            value = context.get(index);
+        } else if (key != null) {
+            Map<String, String> mdc = event.getMDCPropertyMap();
+            value = mdc == null ? null : mdc.get(key);
+        }
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,106 @@
+package net.pocrd.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多生产者单消费者的无锁环形缓冲区, 槽位对象在创建时预先分配并循环复用。
+ * 生产者通过 tryClaim 获取序号, 填充槽位后调用 publish 发布; 缓冲区满时 tryClaim 返回 -1 并计入丢弃数, 不会阻塞生产者。
+ * 消费者通过 poll 获取已发布的槽位, 处理完成后调用 release 归还
+ */
+public final class MpscRingBuffer<E> {
+    /**
+     * 槽位对象工厂
+     */
+    public interface SlotFactory<E> {
+        E newSlot();
+    }
+
+    private final int             mask;
+    private final Object[]        slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong      tail    = new AtomicLong(0);
+    private final LongAdder       dropped = new LongAdder();
+    private       long            head;   // 仅由消费者线程访问
+
+    /**
+     * @param capacity 容量, 向上取整为2的整数次幂
+     */
+    public MpscRingBuffer(int capacity, SlotFactory<E> factory) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity:" + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = factory.newSlot();
+            sequences.set(i, i);
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * 因缓冲区满而丢弃的数量
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 申请一个空闲槽位, 缓冲区满时返回 -1
+     */
+    public long tryClaim() {
+        while (true) {
+            long t = tail.get();
+            long diff = sequences.get((int)t & mask) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    return t;
+                }
+            } else if (diff < 0) {
+                dropped.increment();
+                return -1;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E)slots[(int)sequence & mask];
+    }
+
+    /**
+     * 发布已填充的槽位, 之后生产者不能再访问该槽位
+     */
+    public void publish(long sequence) {
+        sequences.lazySet((int)sequence & mask, sequence + 1);
+    }
+
+    /**
+     * 获取下一个已发布的槽位, 没有数据时返回 null, 仅由消费者线程调用
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        if (sequences.get((int)head & mask) != head + 1) {
+            return null;
+        }
+        return (E)slots[(int)head & mask];
+    }
+
+    /**
+     * 归还 poll 得到的槽位供生产者复用, 仅由消费者线程调用
+     */
+    public void release() {
+        sequences.lazySet((int)head & mask, head + slots.length);
+        head++;
+    }
+}
@@ -302,21 +302,10 @@ public class POJOSerializerProvider implements Opcodes {
                     }
                     pmv.declareLocal("item", t);
                     pmv.setLocal("item");
-                    pmv.loadArg(2); // load out
                     pmv.loadLocal("item");
-                    //隐式转换
-                    if (t == byte.class) {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;");
-                    } else if (t == char.class) {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;");
-                    } else if (t == short.class) {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;");
-                    } else {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(" + t_sig + ")Ljava/lang/String;");
-                    }
-                    pmv.visitFieldInsn(GETSTATIC, "net/pocrd/define/ConstField", "UTF8", "Ljava/nio/charset/Charset;");
-                    pmv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "getBytes", "(Ljava/nio/charset/Charset;)[B");
-                    pmv.visitMethodInsn(INVOKEVIRTUAL, "java/io/OutputStream", "write", "([B)V");
+                    pmv.loadArg(2); // load out
+                    // 数值直接编码写入输出流, 不创建中间字符串
+                    pmv.visitMethodInsn(INVOKESTATIC, "net/pocrd/util/ValueEncoder", "writeBytes", "(" + t_sig + "Ljava/io/OutputStream;)V");
                     writeXmlEnd(cn, pmv, name.endsWith("List") ? name.substring(0, name.length() - 4) : "item", 2, map, list);
                     pmv.incrementLocal("i", 1);
                     pmv.visitJumpInsn(GOTO, label_loop);
@@ -328,22 +317,10 @@ public class POJOSerializerProvider implements Opcodes {
                     pmv.deleteLocal("i");
                 } else {
                     writeXmlStart(cn, pmv, name, 2, map, list);
-                    pmv.loadArg(2);
                     pmv.loadArg(1);
                     pmv.visitFieldInsn(GETFIELD, t_className, name, t_sig);
-                    //隐式转换
-                    if (t == byte.class) {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;");
-                    } else if (t == char.class) {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;");
-                    } else if (t == short.class) {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;");
-                    } else {
-                        pmv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(" + t_sig + ")Ljava/lang/String;");
-                    }
-                    pmv.visitFieldInsn(GETSTATIC, "net/pocrd/define/ConstField", "UTF8", "Ljava/nio/charset/Charset;");
-                    pmv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "getBytes", "(Ljava/nio/charset/Charset;)[B");
-                    pmv.visitMethodInsn(INVOKEVIRTUAL, "java/io/OutputStream", "write", "([B)V");
+                    pmv.loadArg(2);
+                    pmv.visitMethodInsn(INVOKESTATIC, "net/pocrd/util/ValueEncoder", "writeBytes", "(" + t_sig + "Ljava/io/OutputStream;)V");
                     writeXmlEnd(cn, pmv, name, 2, map, list);
                 }
             } else if (t == String.class || t.isEnum()) {
@@ -408,6 +385,22 @@ public class POJOSerializerProvider implements Opcodes {
                     pmv.visitLabel(label_null);
                     pmv.deleteLocal("obj");
                 }
+            } else if (t == Date.class && !isCollection) {
+                // 日期以毫秒数输出, 与json格式保持一致
+                pmv.declareLocal("obj", t);
+                pmv.loadArg(1);
+                pmv.visitFieldInsn(GETFIELD, t_className, name, Type.getDescriptor(t));
+                pmv.setLocal("obj");
+                pmv.loadLocal("obj");
+                Label label_null = new Label();
+                pmv.visitJumpInsn(IFNULL, label_null);
+                writeXmlStart(cn, pmv, name, 2, map, list);
+                pmv.loadLocal("obj");
+                pmv.loadArg(2);
+                pmv.visitMethodInsn(INVOKESTATIC, "net/pocrd/util/ValueEncoder", "writeBytes", "(Ljava/util/Date;Ljava/io/OutputStream;)V");
+                writeXmlEnd(cn, pmv, name, 2, map, list);
+                pmv.visitLabel(label_null);
+                pmv.deleteLocal("obj");
             } else {//非String/enum以及基础类型的序列化
                 if (t.getName().startsWith("java.lang.")) {
                     throw new RuntimeException("unsupport complex type,type:" + t.getName());
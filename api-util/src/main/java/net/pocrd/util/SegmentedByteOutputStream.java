@@ -0,0 +1,156 @@
+package net.pocrd.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 分段存储的字节输出流, 数据写入从 ByteSegmentPool 获取的定长字节块中, 扩容时不需要复制已有数据。
+ * reset 时保留前 retainSegments 个字节块供下次使用, 其余字节块归还缓冲池, 避免单次大数据输出后长期占用内存。
+ * 非线程安全
+ */
+public final class SegmentedByteOutputStream extends OutputStream {
+    private final ByteSegmentPool pool;
+    private final int             segmentSize;
+    private final int             retainSegments;
+
+    private byte[][] segments = new byte[8][];
+    private int      segmentCount;      // 已持有的字节块数量
+    private int      current;           // 当前写入的字节块序号
+    private byte[]   buffer;            // 当前写入的字节块
+    private int      pos;               // 当前字节块中的写入位置
+    private int      size;
+
+    public SegmentedByteOutputStream(ByteSegmentPool pool, int retainSegments) {
+        this.pool = pool;
+        this.segmentSize = pool.getSegmentSize();
+        this.retainSegments = retainSegments < 0 ? 0 : retainSegments;
+        locate(0);
+    }
+
+    /**
+     * 将写入位置定位到 index, 位于字节块边界时定位到前一个字节块的末尾, 下次写入时再切换字节块
+     */
+    private void locate(int index) {
+        current = index == 0 ? -1 : (index - 1) / segmentSize;
+        pos = index - current * segmentSize;
+        buffer = current < 0 ? null : segments[current];
+        size = index;
+    }
+
+    private void nextSegment() {
+        current++;
+        if (current == segmentCount) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf(segments, segmentCount << 1);
+            }
+            segments[segmentCount++] = pool.acquire();
+        }
+        buffer = segments[current];
+        pos = 0;
+    }
+
+    @Override
+    public void write(int b) {
+        if (pos == segmentSize) {
+            nextSegment();
+        }
+        buffer[pos++] = (byte)b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        size += len;
+        while (len > 0) {
+            if (pos == segmentSize) {
+                nextSegment();
+            }
+            int n = Math.min(len, segmentSize - pos);
+            System.arraycopy(b, off, buffer, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 回退写入位置, 用于丢弃序列化失败时已写入的部分数据
+     */
+    public void setWriteIndex(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index:" + index + " size:" + size);
+        }
+        locate(index);
+    }
+
+    /**
+     * 将已写入的数据按字节块依次写到目标输出流, 不产生额外的数据复制
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        int remaining = size;
+        for (int i = 0; remaining > 0; i++) {
+            int n = Math.min(remaining, segmentSize);
+            out.write(segments[i], 0, n);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * 在 hash 的基础上继续计算已写入数据的 FNV-1a 哈希
+     */
+    public long hash(long hash) {
+        int remaining = size;
+        for (int i = 0; remaining > 0; i++) {
+            int n = Math.min(remaining, segmentSize);
+            hash = FnvHashUtil.update(hash, segments[i], 0, n);
+            remaining -= n;
+        }
+        return hash;
+    }
+
+    public byte[] toByteArray() {
+        return toByteArray(0);
+    }
+
+    /**
+     * 复制从 from 位置开始写入的数据
+     */
+    public byte[] toByteArray(int from) {
+        if (from < 0 || from > size) {
+            throw new IndexOutOfBoundsException("index:" + from + " size:" + size);
+        }
+        byte[] bytes = new byte[size - from];
+        for (int index = from; index < size; ) {
+            int offset = index % segmentSize;
+            int n = Math.min(size - index, segmentSize - offset);
+            System.arraycopy(segments[index / segmentSize], offset, bytes, index - from, n);
+            index += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * 清空数据, 超出保留数量的字节块归还缓冲池
+     */
+    public void reset() {
+        for (int i = retainSegments; i < segmentCount; i++) {
+            pool.release(segments[i]);
+            segments[i] = null;
+        }
+        if (segmentCount > retainSegments) {
+            segmentCount = retainSegments;
+            if (segments.length > 8 && segmentCount <= 8) {
+                segments = Arrays.copyOf(segments, 8);
+            }
+        }
+        locate(0);
+    }
+}
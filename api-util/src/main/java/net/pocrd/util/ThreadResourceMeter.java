@@ -0,0 +1,69 @@
+package net.pocrd.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 读取当前线程的 CPU 时间及已分配的堆内存字节数, 用于统计网关自身在各阶段的资源消耗。
+ * 分配字节数依赖 HotSpot 的 com.sun.management.ThreadMXBean, 不支持时返回0
+ */
+public final class ThreadResourceMeter {
+    private static final Logger                          logger = LoggerFactory.getLogger(ThreadResourceMeter.class);
+    private static final ThreadMXBean                    bean   = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean sunBean;
+    private static final boolean                         cpuSupported;
+
+    static {
+        boolean cpu = false;
+        com.sun.management.ThreadMXBean sun = null;
+        try {
+            if (bean.isCurrentThreadCpuTimeSupported()) {
+                if (!bean.isThreadCpuTimeEnabled()) {
+                    bean.setThreadCpuTimeEnabled(true);
+                }
+                cpu = true;
+            }
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                sun = (com.sun.management.ThreadMXBean)bean;
+                if (sun.isThreadAllocatedMemorySupported()) {
+                    if (!sun.isThreadAllocatedMemoryEnabled()) {
+                        sun.setThreadAllocatedMemoryEnabled(true);
+                    }
+                } else {
+                    sun = null;
+                }
+            }
+        } catch (Throwable t) {
+            logger.warn("enable thread cpu time/allocated memory measurement failed.", t);
+        }
+        cpuSupported = cpu;
+        sunBean = sun;
+    }
+
+    private ThreadResourceMeter() {
+    }
+
+    /**
+     * 当前 jvm 是否支持线程 CPU 时间或分配字节数的统计
+     */
+    public static boolean isSupported() {
+        return cpuSupported || sunBean != null;
+    }
+
+    /**
+     * 当前线程的 CPU 时间(纳秒)
+     */
+    public static long cpuNanos() {
+        return cpuSupported ? bean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * 当前线程累计分配的堆内存字节数
+     */
+    public static long allocatedBytes() {
+        return sunBean == null ? 0 : sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -4,6 +4,7 @@ import net.pocrd.define.ConstField;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Date;
 
 /**
  * Created by rendong on 14-5-1.
@@ -13,6 +14,16 @@ public class ValueEncoder {
     private static final byte[][] byteValue1 = new byte[100][];
     private static final byte[][] byteValue2 = new byte[1000][];
 
+    /**
+     * 线程相关的数值编码缓冲区, 避免为 long/float/double 创建中间字符串
+     */
+    private static final ThreadLocal<DecimalEncoder> encoder = new ThreadLocal<DecimalEncoder>() {
+        @Override
+        protected DecimalEncoder initialValue() {
+            return new DecimalEncoder();
+        }
+    };
+
     static {
         String[] ss = new String[]{"false", "true", "-", String.valueOf(Integer.MIN_VALUE)};
         bs = new byte[ss.length][];
@@ -52,7 +63,7 @@ public class ValueEncoder {
             out.write(bs[2]);
             i = -i;
         }
-        out.write(byteValue1[i]);
+        out.write(i < 100 ? byteValue1[i] : byteValue2[i]);
     }
     public static void writeBytes(char c, OutputStream out) throws IOException {
         int i = c;
@@ -110,16 +121,30 @@ public class ValueEncoder {
             out.write(q < 100 ? byteValue1[q] : byteValue2[q]);
             out.write(byteValue2[r]);
         } else {
-            out.write((String.valueOf(i).getBytes(ConstField.UTF8)));
+            DecimalEncoder e = encoder.get();
+            out.write(e.bytes, 0, e.encode((long)i));
         }
     }
     public static void writeBytes(float f, OutputStream out) throws IOException {
-        out.write((String.valueOf(f).getBytes(ConstField.UTF8)));
+        DecimalEncoder e = encoder.get();
+        out.write(e.bytes, 0, e.encode(f));
     }
     public static void writeBytes(long l, OutputStream out) throws IOException {
-        out.write((String.valueOf(l).getBytes(ConstField.UTF8)));
+        if (l >= 0 && l < 1000) {
+            out.write(l < 100 ? byteValue1[(int)l] : byteValue2[(int)l]);
+            return;
+        }
+        DecimalEncoder e = encoder.get();
+        out.write(e.bytes, 0, e.encode(l));
     }
     public static void writeBytes(double d, OutputStream out) throws IOException {
-        out.write((String.valueOf(d).getBytes(ConstField.UTF8)));
+        DecimalEncoder e = encoder.get();
+        out.write(e.bytes, 0, e.encode(d));
+    }
+    /**
+     * 日期以毫秒数输出, 与 fastjson 的默认行为一致
+     */
+    public static void writeBytes(Date d, OutputStream out) throws IOException {
+        writeBytes(d.getTime(), out);
     }
 }
@@ -0,0 +1,121 @@
+package net.pocrd.core;
+
+import net.pocrd.define.ConstField;
+import net.pocrd.define.SerializeType;
+import net.pocrd.define.Serializer;
+import net.pocrd.entity.AbstractReturnCode;
+import net.pocrd.entity.ApiReturnCode;
+import net.pocrd.responseEntity.CallState;
+import net.pocrd.responseEntity.KeyValuePair;
+import net.pocrd.responseEntity.Response;
+import net.pocrd.util.POJOSerializerProvider;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * ErrorEnvelopeCache 为包内可见类, 测试放在同一个包中
+ */
+public class ErrorEnvelopeCacheTest {
+    private static final Serializer<Response> serializer = POJOSerializerProvider.getSerializer(Response.class);
+    private static final long                 SYSTIME    = 1500000000123L;
+    private static final byte[]               CALLBACK   = "cb".getBytes(ConstField.UTF8);
+
+    /**
+     * 未在 ApiReturnCode 中预先定义的返回码
+     */
+    private static final AbstractReturnCode CUSTOM          = new AbstractReturnCode("自定义错误", 123456) {};
+    private static final AbstractReturnCode CUSTOM_INTERNAL = new AbstractReturnCode(654321, CUSTOM) {};
+
+    /**
+     * 与 HttpRequestExecutor 中没有接口调用时经 Response 序列化输出的内容相同
+     */
+    private static byte[] serialize(AbstractReturnCode code, SerializeType format, String cid, byte[] jsonpCallback) throws IOException {
+        Response response = new Response();
+        response.code = code.getDisplay().getCode();
+        response.stateList = new ArrayList<CallState>(0);
+        if (cid != null) {
+            response.cid = cid;
+        }
+        response.systime = SYSTIME;
+        response.notificationList = new ArrayList<KeyValuePair>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (format == SerializeType.XML) {
+            out.write(ConstField.XML_START);
+            serializer.toXml(response, out, true);
+            out.write(ConstField.XML_END);
+        } else {
+            if (jsonpCallback != null) {
+                out.write(jsonpCallback);
+                out.write(ConstField.JSONP_START);
+            }
+            out.write(ConstField.JSON_START);
+            serializer.toJson(response, out, true);
+            out.write(ConstField.JSON_CONTENT);
+            out.write(ConstField.JSON_END);
+            if (jsonpCallback != null) {
+                out.write(ConstField.JSONP_END);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 与 HttpRequestExecutor 中使用预序列化响应时输出的内容相同
+     */
+    private static byte[] envelope(AbstractReturnCode code, SerializeType format, String cid, byte[] jsonpCallback) throws IOException {
+        assertTrue(ErrorEnvelopeCache.accept(format, cid));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean jsonp = format == SerializeType.JSON && jsonpCallback != null;
+        if (jsonp) {
+            out.write(jsonpCallback);
+            out.write(ConstField.JSONP_START);
+        }
+        ErrorEnvelopeCache.write(code, format, cid, SYSTIME, out);
+        if (jsonp) {
+            out.write(ConstField.JSONP_END);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertIdentical(AbstractReturnCode code, SerializeType format, String cid, byte[] jsonpCallback) throws IOException {
+        byte[] expected = serialize(code, format, cid, jsonpCallback);
+        byte[] actual = envelope(code, format, cid, jsonpCallback);
+        assertEquals(new String(expected, ConstField.UTF8), new String(actual, ConstField.UTF8));
+        assertArrayEquals(expected, actual);
+    }
+
+    /**
+     * xml/json 格式下有无 cid 时的输出与 Response 序列化结果逐字节相同
+     */
+    @Test
+    public void testSameAsSerializer() throws IOException {
+        AbstractReturnCode[] codes = { ApiReturnCode.UNKNOWN_ERROR, ApiReturnCode.ACCESS_DENIED, ApiReturnCode.SERIALIZE_FAILED, CUSTOM,
+                CUSTOM_INTERNAL };
+        for (AbstractReturnCode code : codes) {
+            for (String cid : new String[] { null, "a1b2-c3:d4" }) {
+                assertIdentical(code, SerializeType.XML, cid, null);
+                assertIdentical(code, SerializeType.JSON, cid, null);
+                assertIdentical(code, SerializeType.JSON, cid, CALLBACK);
+            }
+        }
+    }
+
+    /**
+     * 需要转义的 cid 及其他格式使用常规序列化
+     */
+    @Test
+    public void testAccept() {
+        assertTrue(ErrorEnvelopeCache.accept(SerializeType.JSON, null));
+        assertTrue(ErrorEnvelopeCache.accept(SerializeType.XML, "abc"));
+        assertFalse(ErrorEnvelopeCache.accept(SerializeType.JSON, "a\"b"));
+        assertFalse(ErrorEnvelopeCache.accept(SerializeType.XML, "a<b"));
+        assertFalse(ErrorEnvelopeCache.accept(SerializeType.XML, "a]]>"));
+        assertFalse(ErrorEnvelopeCache.accept(SerializeType.JSON, "中文"));
+        assertFalse(ErrorEnvelopeCache.accept(SerializeType.PAILNTEXT, null));
+    }
+}
@@ -0,0 +1,108 @@
+package net.pocrd.core;
+
+import net.pocrd.define.SerializeType;
+import net.pocrd.entity.ApiContext;
+import net.pocrd.entity.ApiMethodCall;
+import net.pocrd.entity.ApiMethodInfo;
+import net.pocrd.entity.CallerInfo;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * LastKnownGoodStore 为包内可见类, 测试放在同一个包中
+ */
+public class LastKnownGoodStoreTest {
+    private static final long TTL = 1000;
+
+    private static byte[] data(String s) {
+        return s.getBytes();
+    }
+
+    /**
+     * 与 key 落在同一对槽位上的另一个键
+     */
+    private static String sameSlot(String key, int size, int n) {
+        int mask = Integer.highestOneBit(size - 1) * 2 - 1;
+        int slot = key.hashCode() & mask & ~1;
+        for (int i = 0; ; i++) {
+            String k = "k" + i;
+            if (!k.equals(key) && (k.hashCode() & mask & ~1) == slot && --n < 0) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * 两个槽位都被占用时替换较旧的结果, 同一个键覆盖自身
+     */
+    @Test
+    public void testTwoSlotReplacement() {
+        LastKnownGoodStore store = new LastKnownGoodStore(16, 1024, TTL);
+        String a = "k0";
+        String b = sameSlot(a, 16, 0);
+        String c = sameSlot(a, 16, 1);
+        store.put(a, data("a1"), 100);
+        store.put(b, data("b1"), 200);
+        assertArrayEquals(data("a1"), store.get(a, 300).data);
+        assertArrayEquals(data("b1"), store.get(b, 300).data);
+        // 覆盖同一个键不影响另一个槽位
+        store.put(a, data("a2"), 300);
+        assertArrayEquals(data("a2"), store.get(a, 400).data);
+        assertArrayEquals(data("b1"), store.get(b, 400).data);
+        // 第三个键替换较旧的 b
+        store.put(c, data("c1"), 400);
+        assertNull(store.get(b, 500));
+        assertArrayEquals(data("a2"), store.get(a, 500).data);
+        assertArrayEquals(data("c1"), store.get(c, 500).data);
+        assertEquals(6, store.getServedCount());
+    }
+
+    /**
+     * 超过保留时间的结果不再返回, 超过最大字节数的结果不保存
+     */
+    @Test
+    public void testExpireAndMaxBytes() {
+        LastKnownGoodStore store = new LastKnownGoodStore(16, 4, TTL);
+        store.put("a", data("1234"), 100);
+        assertNotNull(store.get("a", 100 + TTL));
+        assertNull(store.get("a", 101 + TTL));
+        store.put("a", data("12345"), 2000);
+        assertNull(store.get("a", 2000));
+        assertTrue(store.accept(4));
+        assertFalse(store.accept(5));
+    }
+
+    /**
+     * 返回格式或用户不同的调用使用不同的键
+     */
+    @Test
+    public void testKey() {
+        ApiMethodInfo info = new ApiMethodInfo();
+        info.methodName = "test.lkg";
+        ApiMethodCall call = new ApiMethodCall(info);
+        call.parameters = new String[] { "1", "x" };
+        ApiContext context = new ApiContext();
+        context.format = SerializeType.JSON;
+        String anonymous = LastKnownGoodStore.key(context, call);
+        context.format = SerializeType.XML;
+        String xml = LastKnownGoodStore.key(context, call);
+        context.caller = new CallerInfo();
+        context.caller.uid = 1;
+        String user1 = LastKnownGoodStore.key(context, call);
+        context.caller.uid = 2;
+        String user2 = LastKnownGoodStore.key(context, call);
+        assertNotEquals(anonymous, xml);
+        assertNotEquals(xml, user1);
+        assertNotEquals(user1, user2);
+        assertEquals(user2, LastKnownGoodStore.key(context, call));
+        call.parameters = new String[] { "1x" };
+        assertNotEquals(user2, LastKnownGoodStore.key(context, call));
+
+        LastKnownGoodStore store = new LastKnownGoodStore(16, 1024, TTL);
+        store.put(user1, data("u1"), 0);
+        assertNull(store.get(user2, 0));
+        assertNull(store.get(xml, 0));
+        assertArrayEquals(data("u1"), store.get(user1, 0).data);
+    }
+}
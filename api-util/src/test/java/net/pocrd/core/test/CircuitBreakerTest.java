@@ -0,0 +1,164 @@
+package net.pocrd.core.test;
+
+import net.pocrd.entity.CircuitBreaker;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    private static final long NOW = 1500000000000L;
+
+    /**
+     * 10秒窗口, 最少5次调用, 失败率50%, 慢调用比例50%, 慢调用100毫秒, 打开1秒, 2个探测调用
+     */
+    private static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(10, 5, 0.5, 0.5, 100, 1000, 2);
+    }
+
+    /**
+     * 关闭状态下放行并记录一次调用
+     */
+    private static void call(CircuitBreaker breaker, boolean failure, long cost, long now) {
+        int permit = breaker.acquire(now);
+        assertEquals(0, permit);
+        breaker.record(permit, failure, cost, now);
+    }
+
+    private static CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 5; i++) {
+            call(breaker, true, 1, NOW);
+        }
+        assertEquals(CircuitBreaker.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    /**
+     * 调用数达到最小值之前不会打开, 达到后失败率超过阈值时打开
+     */
+    @Test
+    public void testOpenOnFailureRate() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 1, NOW);
+        }
+        assertEquals(CircuitBreaker.CLOSED, breaker.getState());
+        call(breaker, false, 1, NOW);
+        // 失败的调用触发检查
+        call(breaker, true, 1, NOW + 1);
+        assertEquals(CircuitBreaker.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.acquire(NOW + 999));
+    }
+
+    /**
+     * 慢调用比例超过阈值时打开, 失败率未超过阈值时保持关闭
+     */
+    @Test
+    public void testOpenOnSlowRate() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 3; i++) {
+            call(breaker, false, 1, NOW);
+        }
+        call(breaker, true, 1, NOW);
+        call(breaker, false, 100, NOW);
+        assertEquals(CircuitBreaker.CLOSED, breaker.getState());
+        call(breaker, false, 200, NOW);
+        call(breaker, false, 200, NOW);
+        assertEquals(CircuitBreaker.CLOSED, breaker.getState());
+        call(breaker, false, 200, NOW);
+        assertEquals(CircuitBreaker.OPEN, breaker.getState());
+    }
+
+    /**
+     * 超出窗口的调用不再参与统计
+     */
+    @Test
+    public void testWindowExpire() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 1, NOW);
+        }
+        for (int i = 0; i < 5; i++) {
+            call(breaker, false, 1, NOW + 10000);
+        }
+        call(breaker, true, 1, NOW + 10000);
+        assertEquals(CircuitBreaker.CLOSED, breaker.getState());
+    }
+
+    /**
+     * 打开时间结束后进入半开状态, 最多放行 probes 个探测调用, 全部成功后关闭
+     */
+    @Test
+    public void testProbesClose() {
+        CircuitBreaker breaker = openBreaker();
+        long t = NOW + 1000;
+        int p1 = breaker.acquire(t);
+        assertTrue(p1 > 0);
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.getState());
+        int p2 = breaker.acquire(t);
+        assertEquals(p1, p2);
+        assertEquals(CircuitBreaker.REJECTED, breaker.acquire(t));
+        breaker.record(p1, false, 1, t);
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.acquire(t));
+        breaker.record(p2, false, 1, t);
+        assertEquals(CircuitBreaker.CLOSED, breaker.getState());
+        assertEquals(0, breaker.acquire(t));
+    }
+
+    /**
+     * 探测调用失败或慢调用时重新打开
+     */
+    @Test
+    public void testProbeReopen() {
+        for (int cost : new int[] { 1, 100 }) {
+            CircuitBreaker breaker = openBreaker();
+            long t = NOW + 1000;
+            int p1 = breaker.acquire(t);
+            int p2 = breaker.acquire(t);
+            breaker.record(p1, false, 1, t);
+            breaker.record(p2, cost == 1, cost, t + 10);
+            assertEquals(CircuitBreaker.OPEN, breaker.getState());
+            // 重新计算打开时间
+            assertEquals(CircuitBreaker.REJECTED, breaker.acquire(t + 1009));
+            assertTrue(breaker.acquire(t + 1010) > 0);
+        }
+    }
+
+    /**
+     * 关闭状态下发起、半开状态下结束的调用, 以及上一次半开状态放行的探测调用, 都不计入探测结果
+     */
+    @Test
+    public void testOnlyProbesCount() {
+        CircuitBreaker breaker = newBreaker();
+        int[] inflight = new int[3];
+        for (int i = 0; i < inflight.length; i++) {
+            inflight[i] = breaker.acquire(NOW);
+        }
+        for (int i = 0; i < 5; i++) {
+            call(breaker, true, 1, NOW);
+        }
+        assertEquals(CircuitBreaker.OPEN, breaker.getState());
+        long t = NOW + 1000;
+        int p1 = breaker.acquire(t);
+        int p2 = breaker.acquire(t);
+        // 关闭状态下放行的调用在半开状态下成功结束
+        for (int permit : inflight) {
+            breaker.record(permit, false, 1, t);
+        }
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.getState());
+        // 探测失败后重新打开, 再次进入半开状态
+        breaker.record(p1, true, 1, t);
+        assertEquals(CircuitBreaker.OPEN, breaker.getState());
+        t += 1000;
+        int p3 = breaker.acquire(t);
+        int p4 = breaker.acquire(t);
+        assertNotEquals(p1, p3);
+        // 上一次半开状态放行的探测调用结束
+        breaker.record(p2, false, 1, t);
+        breaker.record(p3, false, 1, t);
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.getState());
+        breaker.record(p4, false, 1, t);
+        assertEquals(CircuitBreaker.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,77 @@
+package net.pocrd.core.test;
+
+import net.pocrd.util.CompressOutputStream;
+import net.pocrd.util.DeflaterPool;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CompressOutputStreamTest {
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] compress(DeflaterPool pool, int encoding, byte[] data, Random random) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressOutputStream cos = new CompressOutputStream(out, pool, encoding);
+        int off = 0;
+        while (off < data.length) {
+            // 混合单字节、小块和大块写入
+            int len = Math.min(data.length - off, random.nextInt(3) == 0 ? 1 : random.nextInt(20000));
+            if (len == 1) {
+                cos.write(data[off]);
+            } else {
+                cos.write(data, off, len);
+            }
+            off += len;
+        }
+        cos.finish();
+        assertEquals(data.length, cos.getInBytes());
+        assertEquals(out.size(), cos.getOutBytes());
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        DeflaterPool pool = new DeflaterPool(-1, 2);
+        Random random = new Random(30);
+        for (int i = 0; i < 50; i++) {
+            byte[] data = new byte[random.nextInt(100000)];
+            // 可压缩的数据
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte)("{\"value\":[1,2,3]}".charAt(random.nextInt(16)));
+            }
+            byte[] gzip = compress(pool, CompressOutputStream.GZIP, data, random);
+            assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+            byte[] deflate = compress(pool, CompressOutputStream.DEFLATE, data, random);
+            assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(deflate))));
+        }
+        assertEquals(1, pool.getPooledCount());
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertEquals(CompressOutputStream.NONE, CompressOutputStream.negotiate(null));
+        assertEquals(CompressOutputStream.NONE, CompressOutputStream.negotiate("identity"));
+        assertEquals(CompressOutputStream.GZIP, CompressOutputStream.negotiate("gzip, deflate, br"));
+        assertEquals(CompressOutputStream.GZIP, CompressOutputStream.negotiate("*"));
+        assertEquals(CompressOutputStream.DEFLATE, CompressOutputStream.negotiate("deflate"));
+        assertEquals(CompressOutputStream.DEFLATE, CompressOutputStream.negotiate("GZIP;q=0, deflate;q=0.5"));
+        assertEquals(CompressOutputStream.NONE, CompressOutputStream.negotiate("gzip;q=0.0"));
+    }
+}
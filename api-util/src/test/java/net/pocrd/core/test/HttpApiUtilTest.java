@@ -7,6 +7,7 @@ import net.pocrd.core.test.HttpApiUtilTest.RC;
 import net.pocrd.define.SecurityType;
 import net.pocrd.define.Serializer;
 import net.pocrd.entity.AbstractReturnCode;
+import net.pocrd.entity.ApiMethodInfo;
 import net.pocrd.responseEntity.ObjectArrayResp;
 import net.pocrd.util.POJOSerializerProvider;
 import net.pocrd.util.RawString;
@@ -376,6 +377,20 @@ public class HttpApiUtilTest {
         return dl;
     }
 
+    @HttpApi(name = "test.test26", desc = "测试26", security = SecurityType.None, owner = "guankaiqiang")
+    public Date execute(
+            @ApiParameter(required = true, name = "date1", desc = "参数1")
+                    Date d1) {
+        return d1;
+    }
+
+    @HttpApi(name = "test.test27", desc = "测试27", security = SecurityType.None, owner = "guankaiqiang")
+    public Date[] execute(
+            @ApiParameter(required = true, name = "date1", desc = "参数1")
+                    Date[] d1) {
+        return d1;
+    }
+
     public static enum E1 {
         T1,
         T2,
@@ -596,7 +611,7 @@ public class HttpApiUtilTest {
                 Serializer.getObjectArrayRespSerializer().toXml(result, baos, true);
                 re = baos.toString();
                 System.out.println(re);
-                assertEquals("<ObjectArrayResp><value><item><str><![CDATA[testest]]></str><date></date></item></value></ObjectArrayResp>", re);
+                assertEquals("<ObjectArrayResp><value><item><str><![CDATA[testest]]></str><date>1234567890000</date></item></value></ObjectArrayResp>", re);
             }
             {
                 Object result = manager.processRequest("test.test23", new String[] { "123", "456", "456", "456" });
@@ -656,4 +671,31 @@ public class HttpApiUtilTest {
                     re);
         }
     }
+
+    @SuppressWarnings("unchecked")
+    private static String toXml(List<ApiMethodInfo> infos, ApiManager manager, String name, String... params) {
+        for (ApiMethodInfo info : infos) {
+            if (info.methodName.equals(name)) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+                ((Serializer<Object>)info.serializer).toXml(manager.processRequest(name, params), baos, true);
+                return baos.toString();
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Date 及 Date[] 返回值和 Date 类型字段的 xml 输出为 POSIX time 毫秒数, 与 json 输出一致
+     */
+    @Test
+    public void testDateXml() {
+        List<ApiMethodInfo> infos = ApiManager.parseApi(HttpApiUtilTest.class);
+        ApiManager manager = new ApiManager();
+        manager.register(infos, new HttpApiUtilTest());
+        assertEquals("<DateResp><value>1234567890000</value></DateResp>", toXml(infos, manager, "test.test26", "1234567890000"));
+        assertEquals("<DateArrayResp><value><item>1234567890000</item><item>0</item></value></DateArrayResp>",
+                toXml(infos, manager, "test.test27", JSON.toJSONString(new String[] { "1234567890000", "0" })));
+        assertEquals("<ObjectArrayResp><value><item><str><![CDATA[testest]]></str><date>1234567890000</date></item></value></ObjectArrayResp>",
+                toXml(infos, manager, "test.test22", "123", "456"));
+    }
 }
@@ -0,0 +1,53 @@
+package net.pocrd.core.test;
+
+import net.pocrd.util.LatencyHistogram;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram(60000, 1);
+        Random random = new Random(35);
+        long[] values = new long[100000];
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            // 跨越多个数量级的耗时分布
+            values[i] = (long)Math.exp(random.nextDouble() * 16);
+            sum += values[i];
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(sum, snapshot.getSum());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double q : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999, 1 }) {
+            long expect = values[(int)Math.ceil(q * values.length) - 1];
+            long actual = snapshot.getPercentile(q);
+            assertTrue(q + " expect:" + expect + " actual:" + actual, actual >= expect && actual <= expect + expect / 8);
+        }
+        assertEquals(values.length, histogram.windowSnapshot().getCount());
+    }
+
+    @Test
+    public void testBoundary() {
+        LatencyHistogram histogram = new LatencyHistogram(1000, 4);
+        assertEquals(0, histogram.snapshot().getPercentile(0.99));
+        histogram.record(-1);
+        histogram.record(0);
+        histogram.record(15);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(0.5));
+        assertEquals(15, snapshot.getPercentile(0.75));
+        assertEquals(snapshot.getMax(), snapshot.getPercentile(1));
+        assertEquals(15, snapshot.getSum() - snapshot.getMax());
+    }
+}
@@ -0,0 +1,172 @@
+package net.pocrd.core.test;
+
+import net.pocrd.util.MpscRingBuffer;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MpscRingBufferTest {
+    private static final class Slot {
+        int  producer;
+        long value;
+        long check;
+    }
+
+    private static MpscRingBuffer<Slot> newBuffer(int capacity) {
+        return new MpscRingBuffer<Slot>(capacity, new MpscRingBuffer.SlotFactory<Slot>() {
+            @Override
+            public Slot newSlot() {
+                return new Slot();
+            }
+        });
+    }
+
+    private static boolean offer(MpscRingBuffer<Slot> buffer, int producer, long value) {
+        long seq = buffer.tryClaim();
+        if (seq < 0) {
+            return false;
+        }
+        Slot slot = buffer.get(seq);
+        slot.producer = producer;
+        slot.value = value;
+        slot.check = ~value;
+        buffer.publish(seq);
+        return true;
+    }
+
+    /**
+     * 序号多次绕过容量后槽位按顺序复用
+     */
+    @Test
+    public void testWraparound() {
+        MpscRingBuffer<Slot> buffer = newBuffer(5);
+        assertEquals(8, buffer.getCapacity());
+        Slot[] slots = new Slot[8];
+        long next = 0;
+        for (int round = 0; round < 100; round++) {
+            // 每轮写入的数量与容量不对齐, 使读写位置落在不同槽位上
+            int n = round % 8 + 1;
+            for (int i = 0; i < n; i++) {
+                assertTrue(offer(buffer, 0, next + i));
+            }
+            for (int i = 0; i < n; i++) {
+                Slot slot = buffer.poll();
+                assertEquals(next, slot.value);
+                int index = (int)(next & 7);
+                if (slots[index] == null) {
+                    slots[index] = slot;
+                }
+                assertSame(slots[index], slot);
+                buffer.release();
+                next++;
+            }
+            assertNull(buffer.poll());
+        }
+        assertEquals(0, buffer.getDroppedCount());
+    }
+
+    /**
+     * 缓冲区满时丢弃并计数, 归还槽位后可以继续写入
+     */
+    @Test
+    public void testDropWhenFull() {
+        MpscRingBuffer<Slot> buffer = newBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(offer(buffer, 0, i));
+        }
+        assertFalse(offer(buffer, 0, 4));
+        assertFalse(offer(buffer, 0, 5));
+        assertEquals(2, buffer.getDroppedCount());
+        assertEquals(0, buffer.poll().value);
+        // 未归还之前槽位仍被占用
+        assertFalse(offer(buffer, 0, 6));
+        buffer.release();
+        assertTrue(offer(buffer, 0, 7));
+        assertEquals(3, buffer.getDroppedCount());
+        long[] expect = { 1, 2, 3, 7 };
+        for (long v : expect) {
+            assertEquals(v, buffer.poll().value);
+            buffer.release();
+        }
+        assertNull(buffer.poll());
+    }
+
+    /**
+     * 已申请但未发布的槽位阻挡之后已发布的槽位, 发布后才对消费者可见
+     */
+    @Test
+    public void testPublishOrder() {
+        MpscRingBuffer<Slot> buffer = newBuffer(4);
+        long first = buffer.tryClaim();
+        assertTrue(offer(buffer, 0, 1));
+        assertNull(buffer.poll());
+        buffer.get(first).value = 0;
+        buffer.publish(first);
+        assertEquals(0, buffer.poll().value);
+        buffer.release();
+        assertEquals(1, buffer.poll().value);
+        buffer.release();
+    }
+
+    /**
+     * 多个生产者并发写入, 每个生产者的数据按写入顺序被消费, 消费者看到的槽位内容完整
+     */
+    @Test(timeout = 30000)
+    public void testMultiProducer() throws InterruptedException {
+        final int producers = 4;
+        final int count = 200000;
+        final MpscRingBuffer<Slot> buffer = newBuffer(1024);
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] sent = new long[producers];
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (long i = 0; i < count; i++) {
+                        while (!offer(buffer, producer, i)) {
+                            Thread.yield();
+                        }
+                        sent[producer]++;
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+        long[] expect = new long[producers];
+        long received = 0;
+        while (received < (long)producers * count) {
+            Slot slot = buffer.poll();
+            if (slot == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(~slot.value, slot.check);
+            assertEquals(expect[slot.producer], slot.value);
+            expect[slot.producer]++;
+            buffer.release();
+            received++;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(buffer.poll());
+        for (int p = 0; p < producers; p++) {
+            assertEquals(count, expect[p]);
+            assertEquals(count, sent[p]);
+        }
+    }
+}
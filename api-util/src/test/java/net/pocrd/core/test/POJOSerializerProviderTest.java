@@ -1,14 +1,27 @@
 package net.pocrd.core.test;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
 import net.pocrd.core.test.model.KVData;
+import net.pocrd.core.test.model.MixData_A;
 import net.pocrd.core.test.model.TestObj2;
 import net.pocrd.define.ConstField;
+import net.pocrd.define.ObjectIterableSerializer;
+import net.pocrd.define.SerializeType;
+import net.pocrd.define.Serializer;
+import net.pocrd.responseEntity.DynamicEntity;
+import net.pocrd.responseEntity.ObjectArrayResp;
+import net.pocrd.responseEntity.ObjectStreamResp;
 import net.pocrd.util.POJOSerializerProvider;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 
+import static org.junit.Assert.assertEquals;
+
 public class POJOSerializerProviderTest {
     @Test
     public void test() {
@@ -88,4 +101,120 @@ public class POJOSerializerProviderTest {
         //        end = System.currentTimeMillis();
         //        System.out.println("tojson cost:" + (end - start) + " jsonStr:" + jsonObj.toString());
     }
+
+    /**
+     * fastjson 默认的全局序列化配置
+     */
+    private static final int DEFAULT_FEATURES = SerializerFeature.QuoteFieldNames.getMask() | SerializerFeature.SkipTransientField.getMask()
+            | SerializerFeature.WriteEnumUsingName.getMask() | SerializerFeature.SortField.getMask();
+
+    private int features;
+
+    /**
+     * fastjson 的全局配置会被其他测试修改, 这里固定为默认值并在结束后恢复
+     */
+    @Before
+    public void pinFeatures() {
+        features = JSON.DEFAULT_GENERATE_FEATURE;
+        JSON.DEFAULT_GENERATE_FEATURE = DEFAULT_FEATURES;
+    }
+
+    @After
+    public void restoreFeatures() {
+        JSON.DEFAULT_GENERATE_FEATURE = features;
+    }
+
+    private static KVData newKVData(int i, String value) {
+        KVData d = new KVData();
+        d.personId = i;
+        d.deviceId = "device" + i;
+        d.type = (char)('0' + i % 2);
+        d.createdTime = 1500000000000L + i;
+        d.value = value;
+        return d;
+    }
+
+    private static String toJson(Serializer serializer, Object instance) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.toJson(instance, out, true);
+        return new String(out.toByteArray(), ConstField.UTF8);
+    }
+
+    @Test
+    public void testObjectArrayRespJson() {
+        String[] strs = new String[] { "plain", "quote\"", "back\\slash", "ctrl\b\t\n\f\r\u0001\u001f", "del\u007f", "\u2028\u2029",
+                "中文/斜杠", "" };
+        ArrayList<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < strs.length; i++) {
+            list.add(newKVData(i, strs[i]));
+        }
+        list.add(null);
+        list.add(newKVData(100, null));
+        for (String s : strs) {
+            list.add(s);
+        }
+        list.add(Thread.State.NEW);
+        list.add(123L);
+        list.add(newKVData(101, "after"));
+
+        ObjectArrayResp resp = ObjectArrayResp.convert(list);
+        assertEquals(JSON.toJSONString(resp), toJson(Serializer.getObjectArrayRespSerializer(), resp));
+
+        resp = ObjectArrayResp.convert(new ArrayList<Object>());
+        assertEquals("{}", toJson(Serializer.getObjectArrayRespSerializer(), resp));
+    }
+
+    @Test
+    public void testDynamicEntityJson() {
+        MixData_A a = new MixData_A();
+        a.a4 = "v\"1";
+        DynamicEntity<MixData_A> entity = new DynamicEntity<MixData_A>(a);
+        assertEquals(JSON.toJSONString(entity), toJson(Serializer.getDynamicEntitySerializer(), entity));
+        assertEquals("{}", toJson(Serializer.getDynamicEntitySerializer(), new DynamicEntity<MixData_A>(null)));
+    }
+
+    /**
+     * 流式逐个元素输出的结果与完整序列化相同
+     */
+    @Test
+    public void testObjectStreamResp() throws Exception {
+        ArrayList<Object> list = new ArrayList<Object>();
+        list.add(newKVData(0, "a\"b"));
+        list.add(null);
+        list.add("str");
+        list.add(Thread.State.NEW);
+        list.add(newKVData(1, null));
+        ObjectStreamResp resp = ObjectStreamResp.convert(list);
+        ObjectIterableSerializer<ObjectStreamResp> serializer = (ObjectIterableSerializer<ObjectStreamResp>)Serializer
+                .getObjectStreamRespSerializer();
+        for (SerializeType format : new SerializeType[] { SerializeType.XML, SerializeType.JSON }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            serializer.writeStart(format, out);
+            boolean first = true;
+            for (Object obj : serializer.values(resp)) {
+                serializer.writeItem(format, obj, first, out);
+                first = false;
+            }
+            serializer.writeEnd(format, out);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            if (format == SerializeType.XML) {
+                Serializer.getObjectArrayRespSerializer().toXml(ObjectArrayResp.convert(list), expected, true);
+            } else {
+                Serializer.getObjectArrayRespSerializer().toJson(ObjectArrayResp.convert(list), expected, true);
+            }
+            assertEquals(new String(expected.toByteArray(), ConstField.UTF8), new String(out.toByteArray(), ConstField.UTF8));
+        }
+    }
+
+    /**
+     * 空值的输出遵循 fastjson 的全局配置
+     */
+    @Test
+    public void testNullValueFollowsGlobalFeatures() {
+        JSON.DEFAULT_GENERATE_FEATURE |= SerializerFeature.WriteMapNullValue.getMask();
+        assertEquals("{\"value\":null}", toJson(Serializer.getObjectArrayRespSerializer(), new ObjectArrayResp()));
+        assertEquals("{\"value\":null}", toJson(Serializer.getObjectStreamRespSerializer(), new ObjectStreamResp()));
+        assertEquals("{\"entity\":null,\"typeName\":null}",
+                toJson(Serializer.getDynamicEntitySerializer(), new DynamicEntity<MixData_A>(null)));
+    }
 }
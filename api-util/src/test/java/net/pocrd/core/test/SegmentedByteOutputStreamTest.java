@@ -0,0 +1,84 @@
+package net.pocrd.core.test;
+
+import net.pocrd.util.ByteSegmentPool;
+import net.pocrd.util.SegmentedByteOutputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SegmentedByteOutputStreamTest {
+    @Test
+    public void testWriteAndRewind() throws IOException {
+        ByteSegmentPool pool = new ByteSegmentPool(16, 100);
+        SegmentedByteOutputStream out = new SegmentedByteOutputStream(pool, 2);
+        ByteArrayOutputStream expect = new ByteArrayOutputStream();
+        Random random = new Random(29);
+        for (int round = 0; round < 1000; round++) {
+            int len = random.nextInt(40);
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            if (random.nextBoolean()) {
+                out.write(data);
+            } else {
+                for (byte b : data) {
+                    out.write(b);
+                }
+            }
+            expect.write(data);
+            if (random.nextInt(4) == 0) {
+                // 模拟序列化失败时回退到写入前的位置
+                int index = random.nextInt(out.size() + 1);
+                out.setWriteIndex(index);
+                byte[] bytes = Arrays.copyOf(expect.toByteArray(), index);
+                expect.reset();
+                expect.write(bytes);
+            }
+            assertEquals(expect.size(), out.size());
+            assertArrayEquals(expect.toByteArray(), out.toByteArray());
+            int from = random.nextInt(out.size() + 1);
+            assertArrayEquals(Arrays.copyOfRange(expect.toByteArray(), from, expect.size()), out.toByteArray(from));
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            out.writeTo(target);
+            assertArrayEquals(expect.toByteArray(), target.toByteArray());
+            if (random.nextInt(50) == 0) {
+                out.reset();
+                expect.reset();
+            }
+        }
+    }
+
+    @Test
+    public void testSegmentBoundary() throws IOException {
+        ByteSegmentPool pool = new ByteSegmentPool(4, 100);
+        SegmentedByteOutputStream out = new SegmentedByteOutputStream(pool, 1);
+        out.write(new byte[] { 1, 2, 3, 4 });
+        out.setWriteIndex(4);
+        out.write(5);
+        out.setWriteIndex(4);
+        out.write(6);
+        out.setWriteIndex(0);
+        out.write(7);
+        assertArrayEquals(new byte[] { 7 }, out.toByteArray());
+    }
+
+    @Test
+    public void testReleaseOnReset() throws IOException {
+        ByteSegmentPool pool = new ByteSegmentPool(8, 3);
+        SegmentedByteOutputStream out = new SegmentedByteOutputStream(pool, 1);
+        out.write(new byte[8 * 6]);
+        out.reset();
+        // 保留1个分段, 其余5个中只有3个回到池中
+        assertEquals(3, pool.getPooledCount());
+        out.write(new byte[8 * 3]);
+        assertEquals(1, pool.getPooledCount());
+        out.reset();
+        assertEquals(3, pool.getPooledCount());
+        assertEquals(0, out.size());
+    }
+}
@@ -0,0 +1,64 @@
+package net.pocrd.core.test;
+
+import net.pocrd.entity.TokenBucketTable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTableTest {
+    @Test
+    public void testRefill() {
+        TokenBucketTable table = new TokenBucketTable(16, 10, 5);
+        long key = TokenBucketTable.hash("device-1");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(table.tryAcquire(key, now));
+        }
+        assertFalse(table.tryAcquire(key, now));
+        // 每秒10个令牌, 100毫秒补充一个
+        assertTrue(table.tryAcquire(key, now + 100));
+        assertFalse(table.tryAcquire(key, now + 150));
+        // 空闲足够长时间后恢复为满桶, 但不超过桶容量
+        for (int i = 0; i < 5; i++) {
+            assertTrue(table.tryAcquire(key, now + 10000));
+        }
+        assertFalse(table.tryAcquire(key, now + 10000));
+        // 其他键不受影响
+        assertTrue(table.tryAcquire(TokenBucketTable.hash("device-2"), now + 10000));
+        assertEquals(3, table.getRejectedCount());
+    }
+
+    @Test
+    public void testRelease() {
+        TokenBucketTable table = new TokenBucketTable(16, 1, 2);
+        long key = TokenBucketTable.hash("appid-1");
+        long now = System.currentTimeMillis();
+        assertTrue(table.tryAcquire(key, now));
+        assertTrue(table.tryAcquire(key, now));
+        assertFalse(table.tryAcquire(key, now));
+        // 退还的令牌可以再次取得, 但不超过桶容量
+        table.release(key);
+        assertTrue(table.tryAcquire(key, now));
+        table.release(key);
+        table.release(key);
+        table.release(key);
+        assertTrue(table.tryAcquire(key, now));
+        assertTrue(table.tryAcquire(key, now));
+        assertFalse(table.tryAcquire(key, now));
+        // 不存在的键忽略
+        table.release(TokenBucketTable.hash("appid-2"));
+    }
+
+    @Test
+    public void testEviction() {
+        TokenBucketTable table = new TokenBucketTable(16, 1, 1);
+        long now = System.currentTimeMillis();
+        // 键的数量远超容量时表不会增长, 新键总能获得满桶
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(table.tryAcquire(TokenBucketTable.hash("device-" + i), now + i));
+        }
+        assertEquals(0, table.getRejectedCount());
+    }
+}
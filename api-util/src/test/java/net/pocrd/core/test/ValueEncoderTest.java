@@ -0,0 +1,257 @@
+package net.pocrd.core.test;
+
+import net.pocrd.define.ConstField;
+import net.pocrd.util.ValueEncoder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ValueEncoder 数值编码结果与 jdk 的 toString 进行比对
+ */
+public class ValueEncoderTest {
+    private final ByteArrayOutputStream out    = new ByteArrayOutputStream(64);
+    private final Random                random = new Random(20181019L);
+
+    private String encode(long l) throws IOException {
+        out.reset();
+        ValueEncoder.writeBytes(l, out);
+        return new String(out.toByteArray(), ConstField.UTF8);
+    }
+
+    private String encode(int i) throws IOException {
+        out.reset();
+        ValueEncoder.writeBytes(i, out);
+        return new String(out.toByteArray(), ConstField.UTF8);
+    }
+
+    private String encode(double d) throws IOException {
+        out.reset();
+        ValueEncoder.writeBytes(d, out);
+        return new String(out.toByteArray(), ConstField.UTF8);
+    }
+
+    private String encode(float f) throws IOException {
+        out.reset();
+        ValueEncoder.writeBytes(f, out);
+        return new String(out.toByteArray(), ConstField.UTF8);
+    }
+
+    @Test
+    public void testSmallTypes() throws IOException {
+        for (int i = Byte.MIN_VALUE; i <= Byte.MAX_VALUE; i++) {
+            out.reset();
+            ValueEncoder.writeBytes((byte)i, out);
+            assertEquals(String.valueOf(i), new String(out.toByteArray(), ConstField.UTF8));
+        }
+        for (int i = Short.MIN_VALUE; i <= Short.MAX_VALUE; i++) {
+            out.reset();
+            ValueEncoder.writeBytes((short)i, out);
+            assertEquals(String.valueOf(i), new String(out.toByteArray(), ConstField.UTF8));
+        }
+        for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; i++) {
+            out.reset();
+            ValueEncoder.writeBytes((char)i, out);
+            assertEquals(String.valueOf(i), new String(out.toByteArray(), ConstField.UTF8));
+        }
+        out.reset();
+        ValueEncoder.writeBytes(true, out);
+        ValueEncoder.writeBytes(false, out);
+        assertEquals("truefalse", new String(out.toByteArray(), ConstField.UTF8));
+    }
+
+    @Test
+    public void testInt() throws IOException {
+        int[] edges = new int[] { 0, -1, Integer.MIN_VALUE, Integer.MIN_VALUE + 1, Integer.MAX_VALUE };
+        for (int i : edges) {
+            assertEquals(Integer.toString(i), encode(i));
+        }
+        for (int p = 1; p > 0 && p <= 1_000_000_000; p *= 10) {
+            assertEquals(Integer.toString(p), encode(p));
+            assertEquals(Integer.toString(p - 1), encode(p - 1));
+            assertEquals(Integer.toString(p + 1), encode(p + 1));
+            assertEquals(Integer.toString(-p), encode(-p));
+        }
+        for (int i = 0; i < 1_000_000; i++) {
+            int v = random.nextInt();
+            assertEquals(Integer.toString(v), encode(v));
+        }
+    }
+
+    @Test
+    public void testLong() throws IOException {
+        long[] edges = new long[] { 0L, -1L, Long.MIN_VALUE, Long.MIN_VALUE + 1, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                Integer.MAX_VALUE + 1L, Integer.MIN_VALUE - 1L, System.currentTimeMillis() };
+        for (long l : edges) {
+            assertEquals(Long.toString(l), encode(l));
+        }
+        for (long p = 1; p > 0; p *= 10) {
+            assertEquals(Long.toString(p), encode(p));
+            assertEquals(Long.toString(p - 1), encode(p - 1));
+            assertEquals(Long.toString(p + 1), encode(p + 1));
+            assertEquals(Long.toString(-p), encode(-p));
+            assertEquals(Long.toString(1 - p), encode(1 - p));
+            if (p > Long.MAX_VALUE / 10) {
+                break;
+            }
+        }
+        for (int i = -100_000; i <= 100_000; i++) {
+            assertEquals(Long.toString(i), encode((long)i));
+        }
+        for (int i = 0; i < 2_000_000; i++) {
+            // 随机位宽, 覆盖各个数量级
+            long v = random.nextLong() >> random.nextInt(64);
+            assertEquals(Long.toString(v), encode(v));
+        }
+    }
+
+    @Test
+    public void testDate() throws IOException {
+        Date d = new Date();
+        out.reset();
+        ValueEncoder.writeBytes(d, out);
+        assertEquals(Long.toString(d.getTime()), new String(out.toByteArray(), ConstField.UTF8));
+    }
+
+    @Test
+    public void testDoubleSpecialValues() throws IOException {
+        double[] values = new double[] { 0.0, -0.0, 1.0, -1.0, 0.1, 0.5, 100.0, 1.0E7, 9999999.0, 1.0E-3, 9.99E-4, 0.001, 1.0E23,
+                2.0E23, 1.0E22, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 4.9E-324, 1.7976931348623157E308, 123456.789, 3.141592653589793,
+                2.718281828459045, 1.234567 };
+        for (double d : values) {
+            checkDouble(d);
+        }
+        assertEquals("NaN", encode(Double.NaN));
+        assertEquals("-Infinity", encode(Double.NEGATIVE_INFINITY));
+        assertEquals("-0.0", encode(-0.0));
+        assertEquals("1.0E7", encode(1.0E7));
+        assertEquals("0.001", encode(0.001));
+        assertEquals("1.0E-4", encode(0.0001));
+        assertEquals("1.0E23", encode(1.0E23));
+        assertEquals("2.0E23", encode(2.0E23));
+        assertEquals("4.9E-324", encode(Double.MIN_VALUE));
+    }
+
+    @Test
+    public void testDoubleRange() throws IOException {
+        // 所有10的整数次幂、2的整数次幂及其相邻值
+        for (int e = -325; e <= 309; e++) {
+            double d = Double.parseDouble("1e" + e);
+            checkDouble(d);
+            checkDouble(Math.nextUp(d));
+            checkDouble(Math.nextDown(d));
+        }
+        for (int e = -1074; e <= 1023; e++) {
+            double d = Math.scalb(1.0, e);
+            checkDouble(d);
+            checkDouble(Math.nextUp(d));
+            checkDouble(Math.nextDown(d));
+        }
+        // 所有整数值
+        for (int i = 0; i < 200_000; i++) {
+            checkDouble(i);
+        }
+        // 随机位模式
+        for (int i = 0; i < 1_000_000; i++) {
+            checkDouble(Double.longBitsToDouble(random.nextLong()));
+        }
+        // 短小数
+        for (int i = 0; i < 200_000; i++) {
+            checkDouble(random.nextInt(1_000_000) / 1000.0);
+        }
+    }
+
+    @Test
+    public void testFloatRange() throws IOException {
+        float[] values = new float[] { 0.0f, -0.0f, 1.0f, 0.1f, 1.0E7f, 1.0E-3f, Float.MIN_VALUE, Float.MIN_NORMAL, Float.MAX_VALUE, Float.NaN,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 1.234567f, 1.23f, 1.2345f };
+        for (float f : values) {
+            checkFloat(f);
+        }
+        assertEquals("1.4E-45", encode(Float.MIN_VALUE));
+        assertEquals("3.4028235E38", encode(Float.MAX_VALUE));
+        for (int e = -149; e <= 127; e++) {
+            float f = Math.scalb(1.0f, e);
+            checkFloat(f);
+            checkFloat(Math.nextUp(f));
+            checkFloat(Math.nextDown(f));
+        }
+        // 每隔固定步长遍历全部 float 位模式
+        for (long bits = 0; bits <= 0xFFFFFFFFL; bits += 997) {
+            checkFloat(Float.intBitsToFloat((int)bits));
+        }
+    }
+
+    /**
+     * jdk 19 之前的 Double.toString 并不保证输出最短表示, 因此与 jdk 结果不一致时, 校验编码结果可以精确还原、
+     * 有效数字不多于 jdk 的结果, 且在同样长度的表示中最接近原值
+     */
+    private void checkDouble(double d) throws IOException {
+        String expect = Double.toString(d);
+        String actual = encode(d);
+        if (expect.equals(actual)) {
+            return;
+        }
+        String msg = "double bits:" + Long.toHexString(Double.doubleToRawLongBits(d)) + " expect:" + expect + " actual:" + actual;
+        assertEquals(msg, Double.doubleToLongBits(d), Double.doubleToLongBits(Double.parseDouble(actual)));
+        assertFormat(msg, actual, Math.abs(d) >= 1.0E-3 && Math.abs(d) < 1.0E7);
+        checkShortest(msg, new BigDecimal(d), new BigDecimal(expect), new BigDecimal(actual));
+        // 不存在更短的可还原表示(仅有1位有效数字时允许选择2位中最接近的值)
+        int n = significantDigits(new BigDecimal(actual)) - 1;
+        if (n >= 2) {
+            BigDecimal shorter = new BigDecimal(d).round(new MathContext(n, RoundingMode.HALF_EVEN));
+            assertTrue(msg + " shorter:" + shorter, Double.parseDouble(shorter.toString()) != d);
+        }
+    }
+
+    private void checkFloat(float f) throws IOException {
+        String expect = Float.toString(f);
+        String actual = encode(f);
+        if (expect.equals(actual)) {
+            return;
+        }
+        String msg = "float bits:" + Integer.toHexString(Float.floatToRawIntBits(f)) + " expect:" + expect + " actual:" + actual;
+        assertEquals(msg, Float.floatToIntBits(f), Float.floatToIntBits(Float.parseFloat(actual)));
+        assertFormat(msg, actual, Math.abs(f) >= 1.0E-3f && Math.abs(f) < 1.0E7f);
+        checkShortest(msg, new BigDecimal(f), new BigDecimal(expect), new BigDecimal(actual));
+        // 不存在更短的可还原表示(仅有1位有效数字时允许选择2位中最接近的值)
+        int n = significantDigits(new BigDecimal(actual)) - 1;
+        if (n >= 2) {
+            BigDecimal shorter = new BigDecimal(f).round(new MathContext(n, RoundingMode.HALF_EVEN));
+            assertTrue(msg + " shorter:" + shorter, Float.parseFloat(shorter.toString()) != f);
+        }
+    }
+
+    private static void checkShortest(String msg, BigDecimal value, BigDecimal expect, BigDecimal actual) {
+        int ed = significantDigits(expect);
+        int ad = significantDigits(actual);
+        // 最短表示只有1位有效数字时, 会在1位与2位的表示中选择最接近原值的一个
+        assertTrue(msg, ad <= Math.max(ed, 2));
+        if (ad >= ed) {
+            assertTrue(msg, actual.subtract(value).abs().compareTo(expect.subtract(value).abs()) <= 0);
+        }
+    }
+
+    private static int significantDigits(BigDecimal d) {
+        BigDecimal s = d.stripTrailingZeros();
+        return s.signum() == 0 ? 1 : s.precision();
+    }
+
+    private static void assertFormat(String msg, String s, boolean plain) {
+        if (plain) {
+            assertTrue(msg, s.matches("-?\\d+\\.\\d+"));
+        } else {
+            assertTrue(msg, s.matches("-?\\d\\.\\d+E-?\\d+"));
+        }
+    }
+}